@@ -0,0 +1,49 @@
+package com.fishinspace;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * AllocationTest.java
+ *
+ * The steady-state tick allocates nothing: once the JIT has compiled it, a
+ * seeded world played the way HeadlessRunner plays it (spinning and firing,
+ * restarting after each game over) allocates no bytes on the stepping thread
+ * and never grows an entity pool.
+ *
+ * The warm-up steps a second world through the same method as the measured
+ * run, so the measured ticks run the compiled code. Interpreted and C1 code
+ * does not scalar-replace, which is why the warm-up is long.
+ */
+class AllocationTest {
+    private static final long SEED = 5;
+    private static final long WARMUP_TICKS = HeadlessRunner.ALLOC_WARMUP_TICKS;
+    private static final long MEASURED_TICKS = 100_000;
+
+    @Test
+    void steadyStateTickAllocatesNothing() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        play(new World(SEED), WARMUP_TICKS);
+        World world = new World(SEED);
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        play(world, MEASURED_TICKS);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(0, allocated, "bytes allocated over " + MEASURED_TICKS + " ticks");
+        assertEquals(0, world.bullets.grows(), "bullet pool grows");
+        assertEquals(0, world.asteroids.grows(), "asteroid pool grows");
+        assertEquals(0, world.powerUps.grows(), "power-up pool grows");
+    }
+
+    private static void play(World world, long ticks) {
+        for (long t = 0; t < ticks; t++) {
+            world.step(World.INPUT_LEFT | World.INPUT_FIRE);
+            if (world.isGameOver()) world.reset();
+        }
+    }
+}
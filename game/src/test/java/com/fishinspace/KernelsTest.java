@@ -0,0 +1,172 @@
+package com.fishinspace;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * KernelsTest.java
+ *
+ * The vector kernels give bit for bit what the scalar ones give, on ranges
+ * above and below their MIN_BATCH cut-over and with points sitting exactly on
+ * the wrap thresholds, and a crowded world played on each ends up the same.
+ * Skipped where the vector kernels are not available (the tests are run with
+ * --add-modules jdk.incubator.vector; see game/pom.xml).
+ */
+class KernelsTest {
+    private static final int[] SIZES = {0, 1, 7, 31, 32, 33, 100, 257};
+    private static final double WIDTH = World.WIDTH;
+    private static final double HEIGHT = World.HEIGHT;
+
+    @Test
+    void moveMatches() {
+        Kernels vector = vector();
+        for (int n : SIZES) {
+            double[][] s = columns(n, 1);
+            double[][] v = columns(n, 1);
+            Kernels.SCALAR.move(s[0], s[1], s[2], s[3], 0, n, 0.75);
+            vector.move(v[0], v[1], v[2], v[3], 0, n, 0.75);
+            assertArrayEquals(s[0], v[0], "x, n=" + n);
+            assertArrayEquals(s[1], v[1], "y, n=" + n);
+        }
+    }
+
+    @Test
+    void moveWrapMatches() {
+        Kernels vector = vector();
+        for (int n : SIZES) {
+            double[][] s = columns(n, 2);
+            double[][] v = columns(n, 2);
+            Kernels.SCALAR.moveWrap(s[0], s[1], s[2], s[3], 0, n, 40, WIDTH, HEIGHT);
+            vector.moveWrap(v[0], v[1], v[2], v[3], 0, n, 40, WIDTH, HEIGHT);
+            assertArrayEquals(s[0], v[0], "x, n=" + n);
+            assertArrayEquals(s[1], v[1], "y, n=" + n);
+        }
+    }
+
+    @Test
+    void flagOutsideMatches() {
+        Kernels vector = vector();
+        for (int n : SIZES) {
+            double[][] c = columns(n, 3);
+            boolean[] s = new boolean[n];
+            boolean[] v = new boolean[n];
+            assertEquals(Kernels.SCALAR.flagOutside(c[0], c[1], 0, n, WIDTH, HEIGHT, s),
+                    vector.flagOutside(c[0], c[1], 0, n, WIDTH, HEIGHT, v), "count, n=" + n);
+            assertArrayEquals(s, v, "flags, n=" + n);
+        }
+    }
+
+    @Test
+    void wrappedDistancesMatch() {
+        Kernels vector = vector();
+        for (int n : SIZES) {
+            double[][] c = columns(n, 4);
+            double[] s = new double[n];
+            double[] v = new double[n];
+            Kernels.SCALAR.distancesSquared(WIDTH / 2, HEIGHT / 3, c[0], c[1], 0, n, WIDTH, HEIGHT, s);
+            vector.distancesSquared(WIDTH / 2, HEIGHT / 3, c[0], c[1], 0, n, WIDTH, HEIGHT, v);
+            assertArrayEquals(s, v, "n=" + n);
+        }
+    }
+
+    @Test
+    void wrappedDistancesTakeTheShorterWay() {
+        double[] x = {0, WIDTH, WIDTH / 2, 10};
+        double[] y = {0, HEIGHT, HEIGHT / 2, HEIGHT - 10};
+        double[] out = new double[4];
+        Kernels.SCALAR.distancesSquared(0, 0, x, y, 0, 4, WIDTH, HEIGHT, out);
+        assertArrayEquals(new double[] {0, 0, WIDTH * WIDTH / 4 + HEIGHT * HEIGHT / 4, 200}, out);
+    }
+
+    @Test
+    void gatheredDistancesMatch() {
+        Kernels vector = vector();
+        java.util.Random random = new java.util.Random(5);
+        double[][] c = columns(500, 5);
+        for (int n : SIZES) {
+            int[] ids = new int[n];
+            for (int k = 0; k < n; k++) ids[k] = random.nextInt(500);
+            double[] s = new double[n];
+            double[] v = new double[n];
+            Kernels.SCALAR.distancesSquared(100, 200, c[0], c[1], ids, n, s);
+            vector.distancesSquared(100, 200, c[0], c[1], ids, n, v);
+            assertArrayEquals(s, v, "n=" + n);
+        }
+    }
+
+    /**
+     * Thousands of asteroids and bullets, so grid queries hand the narrow
+     * phase batches above MIN_BATCH; the ship respawns, so it keeps being hit.
+     */
+    @Test
+    void crowdedWorldPlaysTheSame() {
+        vector();
+        World scalar = crowdedWorld(false);
+        World vectorized = crowdedWorld(true);
+        for (int t = 0; t < 300; t++) {
+            int inputs = World.INPUT_LEFT | World.INPUT_FIRE | (t % 50 < 10 ? World.INPUT_THRUST : 0);
+            scalar.step(inputs);
+            vectorized.step(inputs);
+        }
+        assertEquals(scalar.getScore(), vectorized.getScore(), "score");
+        assertEquals(scalar.asteroids.count, vectorized.asteroids.count, "asteroids");
+        assertEquals(scalar.bullets.count, vectorized.bullets.count, "bullets");
+        assertArrayEquals(java.util.Arrays.copyOf(scalar.asteroids.x, scalar.asteroids.count),
+                java.util.Arrays.copyOf(vectorized.asteroids.x, vectorized.asteroids.count), "asteroid x");
+        assertArrayEquals(java.util.Arrays.copyOf(scalar.asteroids.y, scalar.asteroids.count),
+                java.util.Arrays.copyOf(vectorized.asteroids.y, vectorized.asteroids.count), "asteroid y");
+    }
+
+    private static Kernels vector() {
+        Kernels vector = Kernels.vector();
+        assumeTrue(vector != null, "vector kernels not available");
+        return vector;
+    }
+
+    /**
+     * x, y, dx, dy columns of {@code n} points drawn from {@code seed}, some
+     * well outside the field and every eighth exactly on an edge or on a
+     * half-field gap from the middle, where the wraps decide.
+     */
+    private static double[][] columns(int n, long seed) {
+        java.util.Random random = new java.util.Random(seed);
+        double[][] c = new double[4][n];
+        double[] edgesX = {0, WIDTH, WIDTH / 2};
+        double[] edgesY = {HEIGHT, 0, HEIGHT / 3 + HEIGHT / 2, HEIGHT / 3 - HEIGHT / 2};
+        for (int i = 0; i < n; i++) {
+            if (i % 8 == 0) {
+                c[0][i] = edgesX[(i / 8) % edgesX.length];
+                c[1][i] = edgesY[(i / 8) % edgesY.length];
+            } else {
+                c[0][i] = random.nextDouble() * WIDTH * 1.5 - WIDTH / 4;
+                c[1][i] = random.nextDouble() * HEIGHT * 1.5 - HEIGHT / 4;
+            }
+            c[2][i] = random.nextDouble() * 4 - 2;
+            c[3][i] = random.nextDouble() * 4 - 2;
+        }
+        return c;
+    }
+
+    private static World crowdedWorld(boolean vectorized) {
+        World world = new World(9);
+        world.setVectorized(vectorized);
+        world.respawnShips = true;
+        world.asteroids.clear();
+        java.util.Random random = new java.util.Random(9);
+        int[] sizes = {World.ASTEROID_SIZE_LARGE, World.ASTEROID_SIZE_MEDIUM, World.ASTEROID_SIZE_SMALL};
+        for (int i = 0; i < 4000; i++) {
+            world.asteroids.add(random.nextDouble() * World.WIDTH, random.nextDouble() * World.HEIGHT,
+                    random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1, sizes[i % sizes.length], 0);
+        }
+        for (int i = 0; i < 1000; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            world.bullets.add(random.nextDouble() * World.WIDTH, random.nextDouble() * World.HEIGHT,
+                    Math.cos(angle) * World.BULLET_SPEED, Math.sin(angle) * World.BULLET_SPEED, 0, 0);
+        }
+        world.stateReplaced();
+        return world;
+    }
+}
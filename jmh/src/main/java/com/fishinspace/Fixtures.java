@@ -0,0 +1,62 @@
+package com.fishinspace;
+
+/**
+ * Fixtures.java
+ *
+ * Worlds for the benchmarks. Everything is drawn from SEED, the world
+ * included, so two runs (or a run before and after a change) measure the
+ * same asteroids.
+ */
+final class Fixtures {
+    static final long SEED = 42L;
+
+    private Fixtures() {}
+
+    /**
+     * A world of seed SEED holding {@code count} asteroids of mixed sizes,
+     * count/4 bullets and a few power-ups, ticking on {@code threads} threads
+     * with the vector kernels on or off.
+     */
+    static World populatedWorld(int count, int threads, boolean vectorized) {
+        World world = new World(SEED);
+        world.setParallelism(threads);
+        world.setVectorized(vectorized);
+        world.asteroids.clear();
+        world.bullets.clear();
+        world.powerUps.clear();
+        java.util.Random random = new java.util.Random(SEED);
+        int[] sizes = {World.ASTEROID_SIZE_LARGE, World.ASTEROID_SIZE_MEDIUM, World.ASTEROID_SIZE_SMALL};
+        for (int i = 0; i < count; i++) {
+            world.asteroids.add(random.nextDouble() * World.WIDTH, random.nextDouble() * World.HEIGHT,
+                    random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1, sizes[i % sizes.length], 0);
+        }
+        for (int i = 0; i < count / 4; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            world.bullets.add(random.nextDouble() * World.WIDTH, random.nextDouble() * World.HEIGHT,
+                    Math.cos(angle) * World.BULLET_SPEED, Math.sin(angle) * World.BULLET_SPEED, 0, 0);
+        }
+        for (int i = 0; i < Math.min(count / 10, 50); i++) {
+            world.powerUps.add(random.nextDouble() * World.WIDTH, random.nextDouble() * World.HEIGHT,
+                    0, 0, 0, 1 + random.nextInt(4));
+        }
+        world.stateReplaced();
+        return world;
+    }
+
+    /** Puts {@code template}'s entities and ship position back into {@code world}. */
+    static void restore(World world, World template) {
+        world.asteroids.copyFrom(template.asteroids);
+        world.bullets.copyFrom(template.bullets);
+        world.powerUps.copyFrom(template.powerUps);
+        world.ship.x = template.ship.x;
+        world.ship.y = template.ship.y;
+        world.inGame = true;
+        world.stateReplaced();
+    }
+
+    /** "on" or "off", as the simd parameter is given. */
+    static boolean parseSimd(String simd) {
+        if (!simd.equals("on") && !simd.equals("off")) throw new IllegalArgumentException("simd must be on or off: " + simd);
+        return simd.equals("on");
+    }
+}
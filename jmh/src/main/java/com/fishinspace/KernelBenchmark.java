@@ -0,0 +1,59 @@
+package com.fishinspace;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * KernelBenchmark.java
+ *
+ * The distance kernels on their own, over the asteroid columns of a
+ * populated world: across the wrapped field for a whole range, as the
+ * observation scan does, and gathered through shuffled ids, as the collision
+ * narrow phase does after a grid query. The vector kernels where the forked
+ * JVM has the Vector API (it is started with it), or the scalar ones with
+ * -p simd=off.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Djava.awt.headless=true"})
+@State(Scope.Thread)
+public class KernelBenchmark {
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int count;
+
+    @Param({"on"})
+    public String simd;
+
+    private Kernels kernels;
+    private Entities asteroids;
+    private int[] ids;
+    private double[] out;
+
+    @Setup(Level.Trial)
+    public void build() {
+        kernels = Fixtures.parseSimd(simd) && Kernels.vector() != null ? Kernels.vector() : Kernels.SCALAR;
+        asteroids = Fixtures.populatedWorld(count, 1, true).asteroids;
+        out = new double[Math.max(count, 1)];
+        ids = new int[count];
+        java.util.Random random = new java.util.Random(Fixtures.SEED);
+        for (int i = 0; i < count; i++) {
+            int j = random.nextInt(i + 1);
+            ids[i] = ids[j];
+            ids[j] = i;
+        }
+    }
+
+    @Benchmark
+    public double[] wrappedDistances() {
+        kernels.distancesSquared(World.WIDTH / 2.0, World.HEIGHT / 2.0, asteroids.x, asteroids.y, 0, asteroids.count,
+                World.WIDTH, World.HEIGHT, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] gatheredDistances() {
+        kernels.distancesSquared(World.WIDTH / 2.0, World.HEIGHT / 2.0, asteroids.x, asteroids.y, ids, ids.length, out);
+        return out;
+    }
+}
@@ -0,0 +1,42 @@
+package com.fishinspace;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * PaintBenchmark.java
+ *
+ * Drawing one frame of a populated world into an offscreen image, the way
+ * the game loop draws into the window's buffer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Djava.awt.headless=true"})
+@State(Scope.Thread)
+public class PaintBenchmark {
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int count;
+
+    private AsteroidDestroyer panel;
+    private java.awt.image.BufferedImage image;
+
+    @Setup(Level.Trial)
+    public void build() {
+        World world = Fixtures.populatedWorld(count, 1, true);
+        panel = new AsteroidDestroyer(world);
+        panel.setSize(panel.getPreferredSize());
+        Fixtures.restore(world, Fixtures.populatedWorld(count, 1, true)); // the panel constructor resets the world
+        panel.keyPressed(new java.awt.event.KeyEvent(panel, java.awt.event.KeyEvent.KEY_PRESSED, 0, 0,
+                java.awt.event.KeyEvent.VK_ENTER, '\n'));
+        image = new java.awt.image.BufferedImage(World.WIDTH, World.HEIGHT, java.awt.image.BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Benchmark
+    public java.awt.image.BufferedImage paint() {
+        java.awt.Graphics2D g2d = image.createGraphics();
+        panel.paint(g2d);
+        g2d.dispose();
+        return image;
+    }
+}
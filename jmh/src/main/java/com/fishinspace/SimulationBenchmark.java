@@ -0,0 +1,131 @@
+package com.fishinspace;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * SimulationBenchmark.java
+ *
+ * The phases of a tick at asteroid counts from a handful to a swarm.
+ *
+ * A collision pass removes what it hits and a tick moves everything on, so
+ * those cases get their world restored from a template before every
+ * invocation (Level.Invocation setup, outside the measured time). Moving
+ * asteroids only wraps them around the field, so that case keeps one world
+ * for the whole trial.
+ *
+ * -p threads=N runs them with a parallel tick (World#setParallelism) and
+ * -p simd=off on the scalar kernels (World#setVectorized).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Djava.awt.headless=true"})
+public class SimulationBenchmark {
+
+    /** Options shared by every case. */
+    @State(Scope.Benchmark)
+    public static class Config {
+        @Param({"10", "100", "1000", "10000", "100000"})
+        public int count;
+
+        @Param({"1"})
+        public int threads;
+
+        @Param({"on"})
+        public String simd;
+    }
+
+    /** A populated world, put back the way it was before every invocation. */
+    @State(Scope.Thread)
+    public static class Restored {
+        World template;
+        World world;
+
+        @Setup(Level.Trial)
+        public void build(Config config) {
+            boolean vectorized = Fixtures.parseSimd(config.simd);
+            template = Fixtures.populatedWorld(config.count, 1, vectorized);
+            world = Fixtures.populatedWorld(0, config.threads, vectorized);
+        }
+
+        @Setup(Level.Invocation)
+        public void restore() {
+            Fixtures.restore(world, template);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            world.setParallelism(1);
+        }
+    }
+
+    /** A populated world left to run on across invocations. */
+    @State(Scope.Thread)
+    public static class Running {
+        World world;
+
+        @Setup(Level.Trial)
+        public void build(Config config) {
+            world = Fixtures.populatedWorld(config.count, config.threads, Fixtures.parseSimd(config.simd));
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            world.setParallelism(1);
+        }
+    }
+
+    /** Large asteroids only, refilled before every invocation. */
+    @State(Scope.Thread)
+    public static class Splittable {
+        World world;
+        int count;
+
+        @Setup(Level.Trial)
+        public void build(Config config) {
+            count = config.count;
+            world = Fixtures.populatedWorld(0, 1, Fixtures.parseSimd(config.simd));
+        }
+
+        @Setup(Level.Invocation)
+        public void refill() {
+            world.asteroids.clear();
+            world.powerUps.clear();
+            java.util.Random random = new java.util.Random(Fixtures.SEED);
+            for (int i = 0; i < count; i++) {
+                world.asteroids.add(random.nextDouble() * World.WIDTH, random.nextDouble() * World.HEIGHT,
+                        0, 0, World.ASTEROID_SIZE_LARGE, 0);
+            }
+        }
+    }
+
+    @Benchmark
+    public int checkCollisions(Restored state) {
+        state.world.checkCollisions();
+        return state.world.asteroids.count;
+    }
+
+    @Benchmark
+    public int tick(Restored state) {
+        state.world.updateGame();
+        return state.world.asteroids.count;
+    }
+
+    @Benchmark
+    public double[] moveAsteroids(Running state) {
+        World world = state.world;
+        world.moveAsteroids(0, world.asteroids.count);
+        return world.asteroids.x;
+    }
+
+    /** Splits every large asteroid down to nothing: 7 splits each. */
+    @Benchmark
+    public int splitCascade(Splittable state) {
+        World world = state.world;
+        while (world.asteroids.count > 0) {
+            world.splitAsteroid(world.asteroids.count - 1);
+        }
+        return world.powerUps.count;
+    }
+}
@@ -0,0 +1,130 @@
+package com.fishinspace;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorKernels.java
+ *
+ * {@link Kernels} on the Vector API, at the widest double vector the CPU
+ * offers (4 lanes with AVX2, 8 with AVX-512). Wrapping is done with lane
+ * masks and blends instead of branches, so it costs the same however many
+ * entities wrap. The ragged end of each range is left to the scalar kernels,
+ * and so are ranges shorter than MIN_BATCH, on which setting up the vectors
+ * costs more than it saves (the classic field holds a handful of entities).
+ *
+ * The only class that uses jdk.incubator.vector, so it lives in a source
+ * root of its own, src-vector/, which the build compiles separately with
+ * {@code --add-modules jdk.incubator.vector}; src/ compiles without the flag
+ * and without this class. Run with the same flag to use it. It is loaded by
+ * name from {@link Kernels#vector()}, so the game runs without the module,
+ * or without this class, just on the scalar kernels.
+ */
+final class VectorKernels implements Kernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int MIN_BATCH = 32;
+
+    /** Whether this CPU has double vectors at all; asked by Kernels before constructing one. */
+    static boolean available() {
+        return SPECIES.length() >= 2;
+    }
+
+    @Override
+    public void move(double[] x, double[] y, double[] dx, double[] dy, int from, int to, double dt) {
+        if (to - from < MIN_BATCH) {
+            SCALAR.move(x, y, dx, dy, from, to, dt);
+            return;
+        }
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, x, i).add(DoubleVector.fromArray(SPECIES, dx, i).mul(dt)).intoArray(x, i);
+            DoubleVector.fromArray(SPECIES, y, i).add(DoubleVector.fromArray(SPECIES, dy, i).mul(dt)).intoArray(y, i);
+        }
+        SCALAR.move(x, y, dx, dy, i, to, dt);
+    }
+
+    @Override
+    public void moveWrap(double[] x, double[] y, double[] dx, double[] dy, int from, int to, double dt,
+                         double width, double height) {
+        if (to - from < MIN_BATCH) {
+            SCALAR.moveWrap(x, y, dx, dy, from, to, dt, width, height);
+            return;
+        }
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            wrap(DoubleVector.fromArray(SPECIES, x, i).add(DoubleVector.fromArray(SPECIES, dx, i).mul(dt)), width)
+                    .intoArray(x, i);
+            wrap(DoubleVector.fromArray(SPECIES, y, i).add(DoubleVector.fromArray(SPECIES, dy, i).mul(dt)), height)
+                    .intoArray(y, i);
+        }
+        SCALAR.moveWrap(x, y, dx, dy, i, to, dt, width, height);
+    }
+
+    /** Below 0 becomes {@code limit}, above it 0, as the scalar if/else-if does. */
+    private static DoubleVector wrap(DoubleVector v, double limit) {
+        VectorMask<Double> below = v.compare(VectorOperators.LT, 0.0);
+        VectorMask<Double> above = v.compare(VectorOperators.GT, limit);
+        return v.blend(0.0, above).blend(limit, below);
+    }
+
+    @Override
+    public int flagOutside(double[] x, double[] y, int from, int to, double width, double height, boolean[] outside) {
+        if (to - from < MIN_BATCH) {
+            return SCALAR.flagOutside(x, y, from, to, width, height, outside);
+        }
+        int n = 0;
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, x, i);
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, y, i);
+            VectorMask<Double> out = vx.compare(VectorOperators.LT, 0.0)
+                    .or(vx.compare(VectorOperators.GT, width))
+                    .or(vy.compare(VectorOperators.LT, 0.0))
+                    .or(vy.compare(VectorOperators.GT, height));
+            out.intoArray(outside, i);
+            n += out.trueCount();
+        }
+        return n + SCALAR.flagOutside(x, y, i, to, width, height, outside);
+    }
+
+    @Override
+    public void distancesSquared(double px, double py, double[] x, double[] y, int from, int to,
+                                 double width, double height, double[] out) {
+        if (to - from < MIN_BATCH) {
+            SCALAR.distancesSquared(px, py, x, y, from, to, width, height, out);
+            return;
+        }
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            DoubleVector dx = shorter(DoubleVector.broadcast(SPECIES, px).sub(DoubleVector.fromArray(SPECIES, x, i)), width);
+            DoubleVector dy = shorter(DoubleVector.broadcast(SPECIES, py).sub(DoubleVector.fromArray(SPECIES, y, i)), height);
+            dx.mul(dx).add(dy.mul(dy)).intoArray(out, i);
+        }
+        SCALAR.distancesSquared(px, py, x, y, i, to, width, height, out);
+    }
+
+    /** A gap over half of {@code size} either way taken across the edge, as the scalar if/else-if does. */
+    private static DoubleVector shorter(DoubleVector gap, double size) {
+        VectorMask<Double> over = gap.compare(VectorOperators.GT, size / 2.0);
+        VectorMask<Double> under = gap.compare(VectorOperators.LT, -size / 2.0);
+        return gap.sub(size, over).add(size, under);
+    }
+
+    /**
+     * Left to the scalar loop. A vector gather through the ids crashes C2 on
+     * JDK 17 with AVX-512 (a SIGSEGV in the compiled caller, about one run in
+     * eight of KernelsTest), and even where it works it saves little: grid
+     * queries rarely hand over MIN_BATCH ids.
+     */
+    @Override
+    public void distancesSquared(double px, double py, double[] x, double[] y, int[] ids, int count, double[] out) {
+        SCALAR.distancesSquared(px, py, x, y, ids, count, out);
+    }
+
+    @Override
+    public String name() {
+        return "vector(" + SPECIES.length() + "x double)";
+    }
+}
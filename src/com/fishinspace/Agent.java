@@ -0,0 +1,68 @@
+package com.fishinspace;
+
+/**
+ * Agent.java
+ *
+ * Flies a ship from {@link Observation}s rather than from the keyboard,
+ * answering with the same INPUT_* masks the keys produce. An agent sees only
+ * the observation, never the world, so the same agent can be evaluated in a
+ * {@link WorldBatch} of many lockstep worlds or plugged into a single game
+ * through {@link #policy(Agent)}.
+ *
+ * Observations arrive packed back to back in one float array,
+ * {@link Observation#SIZE} floats apiece. Agents that can decide for a whole
+ * batch at once (a network evaluated as one matrix product, say) override
+ * {@link #actAll}; the rest only implement {@link #act}.
+ */
+interface Agent {
+
+    /** The INPUT_* mask for the observation at {@code observations[offset]}. */
+    int act(float[] observations, int offset);
+
+    /** Fills actions[0, count) for the first {@code count} packed observations. */
+    default void actAll(float[] observations, int count, int[] actions) {
+        for (int i = 0; i < count; i++) {
+            actions[i] = act(observations, i * Observation.SIZE);
+        }
+    }
+
+    /** Drives ship 0 of whichever world the policy is asked about. */
+    static InputPolicy policy(Agent agent) {
+        Observation encoder = new Observation();
+        float[] observation = new float[Observation.SIZE];
+        return world -> {
+            encoder.write(world, 0, observation, 0);
+            return agent.act(observation, 0);
+        };
+    }
+
+    /** A fresh random mix of rotate, thrust and brake every step, always firing; ignores the observation. */
+    static Agent random(long seed) {
+        Rng rng = new Rng(seed);
+        return (observations, offset) -> rng.nextInt(World.INPUT_FIRE) | World.INPUT_FIRE;
+    }
+
+    /**
+     * Turns towards the nearest asteroid and fires once roughly facing it,
+     * backing off with thrust away when one gets close. A baseline that plays
+     * a passable game.
+     */
+    static Agent aimAtNearest() {
+        return (observations, offset) -> {
+            int a = offset + Observation.ASTEROIDS_OFFSET;
+            if (observations[a] == 0f) return World.INPUT_LEFT; // nothing in range: scan
+            float dx = observations[a + 1];
+            float dy = observations[a + 2];
+            float cos = observations[offset + 4];
+            float sin = observations[offset + 5];
+            // Heading x target: positive when the target is clockwise (screen y points down)
+            float cross = cos * dy - sin * dx;
+            float dot = cos * dx + sin * dy;
+            float distance = (float) Math.sqrt(dx * dx + dy * dy);
+            int inputs = cross > 0 ? World.INPUT_RIGHT : World.INPUT_LEFT;
+            if (dot > 0 && Math.abs(cross) < 0.15f * distance) inputs |= World.INPUT_FIRE;
+            if (distance < 0.2f && dot < 0) inputs |= World.INPUT_THRUST; // it is behind: get away
+            return inputs;
+        };
+    }
+}
@@ -0,0 +1,63 @@
+package com.fishinspace;
+
+/**
+ * AgentRunner.java
+ *
+ * Evaluates a built-in {@link Agent} on a {@link WorldBatch} and reports the
+ * throughput in agent steps (one world, one tick) per second, with the mean
+ * score of the episodes finished. A harness for measuring the batch and a
+ * template for driving it from training code.
+ *
+ * Run: java -Djava.awt.headless=true com.fishinspace.AgentRunner
+ *          [--worlds=N] [--steps=N] [--threads=N] [--seed=N] [--tick-rate=Hz]
+ *          [--max-episode=ticks] [--agent=aim|random]
+ */
+public class AgentRunner {
+    public static void main(String[] args) {
+        int worlds = 256;
+        long steps = 2_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1L;
+        int tickRate = World.BASE_TICK_RATE;
+        long maxEpisode = 60L * 60 * 5; // five minutes of game time at 60 Hz
+        String agentName = "aim";
+        for (String arg : args) {
+            if (arg.startsWith("--worlds=")) worlds = Integer.parseInt(arg.substring("--worlds=".length()));
+            else if (arg.startsWith("--steps=")) steps = Long.parseLong(arg.substring("--steps=".length()));
+            else if (arg.startsWith("--threads=")) threads = Integer.parseInt(arg.substring("--threads=".length()));
+            else if (arg.startsWith("--seed=")) seed = Long.parseLong(arg.substring("--seed=".length()));
+            else if (arg.startsWith("--tick-rate=")) tickRate = Integer.parseInt(arg.substring("--tick-rate=".length()));
+            else if (arg.startsWith("--max-episode=")) maxEpisode = Long.parseLong(arg.substring("--max-episode=".length()));
+            else if (arg.startsWith("--agent=")) agentName = arg.substring("--agent=".length());
+        }
+
+        Agent agent = agentName.equals("random") ? Agent.random(seed) : Agent.aimAtNearest();
+        WorldBatch batch = new WorldBatch(worlds, seed, tickRate, maxEpisode, threads);
+        int[] actions = new int[worlds];
+
+        // Let the JIT settle before timing
+        for (long s = 0; s < Math.min(steps / 10, 200); s++) {
+            batch.step(agent, actions);
+        }
+        long episodesBefore = batch.episodes();
+        long scoreBefore = batch.episodeScore();
+
+        long start = System.nanoTime();
+        double reward = 0;
+        for (long s = 0; s < steps; s++) {
+            batch.step(agent, actions);
+            float[] rewards = batch.rewards();
+            for (int i = 0; i < worlds; i++) reward += rewards[i];
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        batch.shutdown();
+
+        long episodes = batch.episodes() - episodesBefore;
+        long agentSteps = steps * worlds;
+        System.out.printf("agent=%s worlds=%d threads=%d steps=%d time=%.3fs rate=%.0f steps/s%n",
+                agentName, worlds, threads, agentSteps, seconds, agentSteps / seconds);
+        System.out.printf("episodes=%d meanScore=%.1f reward/step=%.3f observation=%d floats%n",
+                episodes, episodes > 0 ? (double) (batch.episodeScore() - scoreBefore) / episodes : 0.0,
+                reward / agentSteps, Observation.SIZE);
+    }
+}
@@ -1,11 +1,10 @@
 package com.fishinspace;
 
-import java.util.Vector;
-
 /**
  * AsteroidDestroyer.java
  *
  * A complete, Asteroid Destroyer game created with Java Swing.
+ * This panel only renders and collects input; the simulation lives in World.
  *
  * --- CONTROLS ---
  * Arrow Up:    Thrust
@@ -14,319 +13,492 @@ import java.util.Vector;
  * Arrow Right: Rotate Right
  * Spacebar:    Fire Bullet
  * R Key:       Restart Game (after Game Over)
+ * F3:          Toggle timing overlay
+ * - / =:       Zoom out / in (worlds larger than the window)
+ * F5 / F9:     Quicksave / quickload
+ * Backspace:   Rewind while held
+ *
+ * In a world larger than the panel the view is a camera centred on the
+ * ship, wrapping around the field edges. Only what falls inside the view is
+ * drawn, and asteroids too small on screen to show their outline are drawn
+ * as filled squares or single pixels, so the cost of a frame follows what is
+ * visible rather than how many asteroids the world holds.
+ *
+ * A frame is composed of three layers: the cleared background, the entities
+ * and their particle effects (see {@link Particles}), drawn every frame, and
+ * the HUD, a cached image redrawn only when the score
+ * or power-up changes. While nothing moves (the start, pause and game-over
+ * screens) frames are skipped altogether until something changes.
+ *
+ * Connected to a {@link GameServer}, the panel draws the state the server
+ * sends; its own ship is predicted locally from the keys held so it answers
+ * without waiting a round trip, and is corrected when the server's view of
+ * it arrives. Pause, restart, rewind and recording are local-only.
+ *
+ * In endless space (a world with a {@link SectorStreamer}) the camera never
+ * shows the field edges, and quicksave, rewind and recording are off, since
+ * a snapshot does not hold the sectors out of range.
  *
- * Compile: javac AsteroidDestroyer.java
- * Run:     java AsteroidDestroyer
+ * Compile: mvn -B package
+ *          (or javac -d out src/com/fishinspace/*.java, without the vector kernels)
+ * Run:     java --add-modules jdk.incubator.vector -jar game/target/fish-in-space.jar [options]
+ *          (or java -cp out com.fishinspace.Main [options])
  */
-public class AsteroidDestroyer extends javax.swing.JPanel implements java.awt.event.ActionListener, java.awt.event.KeyListener {
-
-    // --- Game Constants ---
-    private static final int PANEL_WIDTH = 800;
-    private static final int PANEL_HEIGHT = 600;
-    private static final int SHIP_SIZE = 20;
-    private static final double SHIP_TURN_SPEED = 0.05; // radians
-    private static final double SHIP_THRUST_POWER = 0.1;
-    private static final double SHIP_DRAG = 0.98; // friction
-    private static final int BULLET_SPEED = 7;
-    private static final int BULLET_COOLDOWN = 15; // frames
-    private static final int ASTEROID_INIT_COUNT = 5;
-    private static final int ASTEROID_MAX_SPEED = 2;
-    private static final int ASTEROID_SIZE_LARGE = 60;
-    private static final int ASTEROID_SIZE_MEDIUM = 30;
-    private static final int ASTEROID_SIZE_SMALL = 15;
-    private static final int SCORE_LARGE_ASTEROID = 20;
-    private static final int SCORE_MEDIUM_ASTEROID = 50;
-    private static final int SCORE_SMALL_ASTEROID = 100;
-
-    // --- PowerUp Constants ---
-    private static final int POWERUP_SIZE = 20;
-    private static final int POWERUP_DURATION = 1200; // 20s @ 60fps
-    private static final int POWERUP_DROP_MIN = 5;
-    private static final int POWERUP_DROP_MAX = 10;
-    
-    // PowerUp types as int constants
-    private static final int POWERUP_NONE = 0;
-    private static final int POWERUP_AIM_BEAM = 1;
-    private static final int POWERUP_DOUBLE_SHOT = 2;
-    private static final int POWERUP_BOOSTER = 3;
-    private static final int POWERUP_RAPID_FIRE = 4;
+public class AsteroidDestroyer extends javax.swing.JPanel implements java.awt.event.KeyListener {
+
+    private static final long serialVersionUID = 1L; // Swing makes it Serializable; it is never serialized
+
+    private static final int PANEL_WIDTH = World.WIDTH;
+    private static final int PANEL_HEIGHT = World.HEIGHT;
+
+    // --- Camera ---
+    private static final double MIN_ZOOM = 0.125;
+    private static final double ZOOM_STEP = 2.0;
+    private static final double LOD_POINT_SIZE = 2.0; // on-screen diameters at or below this are one pixel
+    private static final double LOD_RECT_SIZE = 6.0;  // ...and at or below this a filled square
 
     // --- Game State ---
-    private javax.swing.Timer gameTimer;
-    private java.util.Random random;
-    private boolean inGame;
-    private int score;
-    // Added start & pause state
-    private boolean started; // false until user presses ENTER
-    private boolean paused;  // toggled by P key
-
-    private Vector powerUps;
-    private int asteroidsDestroyedSinceLastPowerUp;
-    private int asteroidsUntilNextPowerUp;
-    private int activePowerUp;
-    private int powerUpTimeRemaining;
-
-    // --- Ship ---
-    private double shipX, shipY;
-    private double shipVelX, shipVelY;
-    private double shipAngle;
-
-    // --- Input Flags ---
-    private boolean rotatingLeft;
-    private boolean rotatingRight;
-    private boolean thrusting;
-    private boolean braking;
-
-    // --- Objects ---
-    private Vector bullets;
-    private Vector asteroids;
-    private int bulletCooldownTimer;
+    private GameLoop gameLoop;
+    private World world;
+    // Added start & pause state; written on the EDT, read by the loop thread
+    private volatile boolean started; // false until user presses ENTER
+    private volatile boolean paused;  // toggled by P key
+    private volatile boolean restartRequested; // R key, handled by the next tick
+    private volatile boolean showStats; // F3 timing overlay
+    private volatile boolean quicksaveRequested; // F5, handled by the next tick
+    private volatile boolean quickloadRequested; // F9, handled by the next tick
+    private volatile boolean rewinding;          // Backspace held
+
+    // --- Input ---
+    // Key events from the EDT; the loop thread turns them into held keys each tick
+    private final InputQueue inputQueue = new InputQueue(InputQueue.DEFAULT_CAPACITY);
+    private final int[] inputEvents = new int[InputQueue.DEFAULT_CAPACITY];
+    private final long[] inputTimes = new long[InputQueue.DEFAULT_CAPACITY];
+    private int heldInputs; // loop thread only
+    private volatile int keysDown; // game keys down as the EDT last saw them
+    private long seenInputDrops; // loop thread only
+
+    // Fraction of a tick elapsed since the last step, for interpolation
+    private double alpha = 1.0;
+
+    // Bumped by anything that can change a still frame; see hasNewFrame()
+    private final java.util.concurrent.atomic.AtomicInteger changes = new java.util.concurrent.atomic.AtomicInteger();
+    private int renderedChanges = -1; // loop thread only
+
+    // Screen pixels per world unit; changed with -/= on the EDT
+    private volatile double zoom = 1.0;
+    // The view for the frame being drawn: the world point at the panel centre,
+    // and on which axes it follows the ship (the world is larger than the view)
+    private double frameZoom = 1.0;
+    private double viewCenterX, viewCenterY;
+    private boolean followX, followY;
+    private int asteroidsDrawn; // after culling, for the stats overlay
+    private final SpatialGrid.Results viewResults = new SpatialGrid.Results();
+    private final int localShip; // the ship slot the camera and HUD follow
+
+    // Set when playing on a server instead of a local world
+    private final NetClient net;
+    // False for a server's world and for views; see initGame()
+    private final boolean ownsWorld;
+
+    // Input recording, when enabled (--record)
+    private ReplayRecorder recorder;
+    // Frame capture, when enabled (--capture); frames are taken by the loop thread
+    private FrameCapture capture;
+    // Gameplay telemetry, when enabled (--telemetry); fed by the loop thread
+    private Telemetry telemetry;
+    // Where finished games are kept, when enabled (--scores), and whose they are
+    private ScoreStore scores;
+    private String player;
+
+    // Debris and exhaust, fed from the world's event log; loop thread only
+    private final Particles particles = new Particles();
+    private long eventCursor;
+    private long sectorX, sectorY; // the streamer's, when particles were last moved with it
+    private final Particles.View particleView = new Particles.View() {
+        @Override
+        public double screenX(double worldX) {
+            return AsteroidDestroyer.this.screenX(worldX);
+        }
+
+        @Override
+        public double screenY(double worldY) {
+            return AsteroidDestroyer.this.screenY(worldY);
+        }
+
+        @Override
+        public int width() {
+            return PANEL_WIDTH;
+        }
+
+        @Override
+        public int height() {
+            return PANEL_HEIGHT;
+        }
+    };
+
+    // How much detail frames get; adapted by the loop thread unless fixed
+    private final QualityGovernor quality = new QualityGovernor();
+
+    // Fonts, strokes, sprites and static screens; built on first render
+    private RenderCache cache;
+
+    // Quicksave slot and rewind history; only touched by the loop thread
+    private java.nio.ByteBuffer quicksave;
+    private boolean hasQuicksave;
+    private SnapshotRing history;
 
     public AsteroidDestroyer() {
+        this(new World());
+    }
+
+    public AsteroidDestroyer(World world) {
+        this(world, null, true);
+    }
+
+    /** Plays on a server through {@code client}, whose world replaces the local one. */
+    AsteroidDestroyer(NetClient client) {
+        this(client.world(), client, false);
+    }
+
+    /**
+     * A panel that only draws {@code world}, as it stands, for rendering
+     * frames offscreen with {@link #render}. It never resets or steps it.
+     */
+    static AsteroidDestroyer viewOf(World world) {
+        AsteroidDestroyer view = new AsteroidDestroyer(world, null, false);
+        view.started = true;
+        return view;
+    }
+
+    private AsteroidDestroyer(World world, NetClient net, boolean ownsWorld) {
         setPreferredSize(new java.awt.Dimension(PANEL_WIDTH, PANEL_HEIGHT));
         setBackground(java.awt.Color.BLACK);
         setFocusable(true);
         addKeyListener(this);
 
-        random = new java.util.Random();
-        bullets = new Vector();
-        asteroids = new Vector();
-        powerUps = new Vector();
+        this.world = world;
+        this.net = net;
+        this.ownsWorld = ownsWorld;
+        localShip = net != null ? net.slot() : 0;
 
         initGame();
-        gameTimer = new javax.swing.Timer(16, this); // ~60 FPS
-        gameTimer.start();
     }
 
-    private void initGame() {
-        shipX = PANEL_WIDTH / 2.0;
-        shipY = PANEL_HEIGHT / 2.0;
-        shipVelX = 0;
-        shipVelY = 0;
-        shipAngle = -Math.PI / 2; // up
-
-        rotatingLeft = false;
-        rotatingRight = false;
-        thrusting = false;
-        braking = false;
+    /**
+     * Keeps the last {@code seconds} of play for rewinding (off by default).
+     * Call before {@link #start}.
+     */
+    public void enableRewind(int seconds, int tickRate) {
+        if (net != null || world.streamer() != null) return;
+        history = seconds > 0 ? new SnapshotRing(seconds * tickRate + 1) : null;
+        if (history != null) history.push(world);
+    }
 
-        bullets.clear();
-        asteroids.clear();
-        powerUps.clear();
+    /**
+     * Pins the drawing quality to a {@link QualityGovernor} tier, or -1 to
+     * let it follow the measured frame times (the default). Call before
+     * {@link #start}.
+     */
+    public void setQuality(int tier) {
+        if (tier >= 0) quality.fix(tier);
+    }
 
-        for (int i = 0; i < ASTEROID_INIT_COUNT; i++) {
-            spawnAsteroid(ASTEROID_SIZE_LARGE);
-        }
+    QualityGovernor quality() {
+        return quality;
+    }
 
-        score = 0;
-        inGame = true;
-        started = false; // show start screen initially
-        paused = false;
-        bulletCooldownTimer = 0;
+    /**
+     * Starts the loop thread. Call once the panel is in a visible window,
+     * since frames are drawn into that window's BufferStrategy.
+     */
+    public void start(int tickRate, int renderRate, int pacing) {
+        world.setTickRate(tickRate);
+        world.getStats().register();
+        setIgnoreRepaint(true);
+        gameLoop = new GameLoop(this, tickRate, renderRate, pacing, capture);
+        gameLoop.start();
+    }
 
-        asteroidsDestroyedSinceLastPowerUp = 0;
-        asteroidsUntilNextPowerUp = POWERUP_DROP_MIN + random.nextInt(POWERUP_DROP_MAX - POWERUP_DROP_MIN + 1);
-        activePowerUp = POWERUP_NONE;
-        powerUpTimeRemaining = 0;
+    /**
+     * Writes every frame drawn from here on into {@code directory} as
+     * numbered images, in the {@link FrameCapture} format given. Frames the
+     * encoders cannot keep up with are dropped rather than stalling the game.
+     * Call before {@link #start}.
+     */
+    public void startCapture(java.nio.file.Path directory, int format) throws java.io.IOException {
+        capture = new FrameCapture(directory, PANEL_WIDTH, PANEL_HEIGHT, format, FrameCapture.DEFAULT_ENCODERS,
+                FrameCapture.DEFAULT_QUEUE_DEPTH, true);
+    }
 
-        if (gameTimer != null && !gameTimer.isRunning()) {
-            gameTimer.start();
+    public void stopCapture() {
+        if (capture == null) return;
+        try {
+            capture.close();
+            System.err.printf("Captured %d frames (%d dropped)%n", capture.written(), capture.dropped());
+        } catch (java.io.IOException e) {
+            System.err.printf("Could not write %d of the captured frames: %s%n", capture.failed(), e);
         }
     }
 
-    private void spawnAsteroid(int size) {
-        double x, y;
-        double angle = random.nextDouble() * 2 * Math.PI;
-        double speed = (random.nextDouble() * (ASTEROID_MAX_SPEED - 1)) + 1;
+    /**
+     * Records every tick from here on into a replay file. Call before
+     * {@link #start}; the recording begins with a fresh game.
+     */
+    public void startRecording(java.nio.file.Path path) throws java.io.IOException {
+        if (net != null) throw new IllegalStateException("cannot record a network game");
+        if (world.streamer() != null) throw new IllegalStateException("cannot record a game in endless space");
+        recorder = ReplayRecorder.start(path, world);
+    }
 
-        int edge = random.nextInt(4);
-        if (edge == 0) { // top
-            x = random.nextDouble() * PANEL_WIDTH;
-            y = -size / 2.0;
-        } else if (edge == 1) { // right
-            x = PANEL_WIDTH + size / 2.0;
-            y = random.nextDouble() * PANEL_HEIGHT;
-        } else if (edge == 2) { // bottom
-            x = random.nextDouble() * PANEL_WIDTH;
-            y = PANEL_HEIGHT + size / 2.0;
-        } else { // left
-            x = -size / 2.0;
-            y = random.nextDouble() * PANEL_HEIGHT;
+    public void stopRecording() {
+        if (recorder == null) return;
+        try {
+            recorder.close();
+        } catch (java.io.IOException e) {
+            System.err.println("Could not finish replay file: " + e);
         }
+    }
 
-        double dx = Math.cos(angle) * speed;
-        double dy = Math.sin(angle) * speed;
-        asteroids.add(new Asteroid(x, y, dx, dy, size));
+    /**
+     * Saves every game that ends from here on into {@code store} under
+     * {@code player}'s name, and shows its high score table on the game over
+     * screen. Saving happens on the store's own thread. Call before
+     * {@link #start}.
+     */
+    public void setScoreStore(ScoreStore store, String player) {
+        if (net != null) return; // the server's game, not ours
+        this.scores = store;
+        this.player = player;
     }
 
-    @Override
-    public void actionPerformed(java.awt.event.ActionEvent e) {
-        // Only update when game started and not paused
-        if (inGame && started && !paused) {
-            updateGame();
-        }
-        repaint();
+    /**
+     * Logs every tick and game event from here on into a {@link Telemetry}
+     * file. Call before {@link #start}.
+     */
+    public void startTelemetry(java.nio.file.Path path) throws java.io.IOException {
+        if (net != null) throw new IllegalStateException("cannot log a network game");
+        telemetry = Telemetry.open(path, world);
     }
 
-    private void updateGame() {
-        updateShip();
-        updateBullets();
-        updateAsteroids();
-        updatePowerUps();
-        checkCollisions();
+    public void stopTelemetry() {
+        if (telemetry == null) return;
+        try {
+            telemetry.close();
+            System.err.printf("Logged %d telemetry records (%d dropped)%n", telemetry.written(), telemetry.dropped());
+        } catch (java.io.IOException e) {
+            System.err.println("Could not finish telemetry file: " + e);
+        }
+    }
 
-        if (asteroids.isEmpty()) {
-            spawnAsteroid(ASTEROID_SIZE_LARGE);
-            spawnAsteroid(ASTEROID_SIZE_LARGE);
+    private void initGame() {
+        if (recorder != null) recorder.reset();
+        if (ownsWorld) world.reset();
+        particles.clear();
+        eventCursor = world.events.end();
+        SectorStreamer streamer = world.streamer();
+        if (streamer != null) {
+            sectorX = streamer.sectorX();
+            sectorY = streamer.sectorY();
         }
 
-        if (bulletCooldownTimer > 0) bulletCooldownTimer--;
+        heldInputs = 0;
 
-        if (powerUpTimeRemaining > 0) {
-            powerUpTimeRemaining--;
-            if (powerUpTimeRemaining == 0) {
-                activePowerUp = POWERUP_NONE;
-            }
+        started = false; // show start screen initially
+        paused = false;
+        rewinding = false;
+        if (history != null) {
+            history.clear();
+            history.push(world);
         }
     }
 
-    private void updateShip() {
-        if (rotatingLeft) shipAngle -= SHIP_TURN_SPEED;
-        if (rotatingRight) shipAngle += SHIP_TURN_SPEED;
-
-        double thrustPower = SHIP_THRUST_POWER;
-        if (activePowerUp == POWERUP_BOOSTER) {
-            thrustPower *= 1.5;
+    /** One fixed simulation step; called from the loop thread. */
+    void tick() {
+        // Drained every tick, so held keys stay right through pauses and rewinds
+        int inputs = drainInputs();
+        if (net != null) {
+            // The server owns the game; before ENTER the client only listens
+            net.tick(started ? inputs : 0);
+            if (started) updateEffects();
+            return;
         }
-        if (thrusting) {
-            shipVelX += Math.cos(shipAngle) * thrustPower;
-            shipVelY += Math.sin(shipAngle) * thrustPower;
+        if (restartRequested) {
+            restartRequested = false;
+            initGame();
+            changed();
         }
-        if (braking && activePowerUp == POWERUP_BOOSTER) {
-            shipVelX *= 0.9;
-            shipVelY *= 0.9;
+        if (quicksaveRequested) {
+            quicksaveRequested = false;
+            quicksave = Snapshot.ensureCapacity(quicksave, Snapshot.size(world));
+            Snapshot.write(world, quicksave);
+            hasQuicksave = true;
         }
-        shipVelX *= SHIP_DRAG;
-        shipVelY *= SHIP_DRAG;
-
-        shipX += shipVelX;
-        shipY += shipVelY;
-
-        // Wrap coordinates
-        if (shipX < 0) shipX = PANEL_WIDTH; 
-        else if (shipX > PANEL_WIDTH) shipX = 0;
-        if (shipY < 0) shipY = PANEL_HEIGHT; 
-        else if (shipY > PANEL_HEIGHT) shipY = 0;
-    }
-
-    private void updateBullets() {
-        for (int i = bullets.size() - 1; i >= 0; i--) {
-            Bullet b = (Bullet) bullets.get(i);
-            b.move();
-            if (b.x < 0 || b.x > PANEL_WIDTH || b.y < 0 || b.y > PANEL_HEIGHT) {
-                bullets.remove(i);
+        if (quickloadRequested) {
+            quickloadRequested = false;
+            if (hasQuicksave) {
+                Snapshot.read(quicksave, world);
+                changed();
+                // The history belongs to the timeline just abandoned
+                if (history != null) {
+                    history.clear();
+                    history.push(world);
+                }
             }
         }
-    }
-
-    private void updateAsteroids() {
-        for (int i = 0; i < asteroids.size(); i++) {
-            Asteroid a = (Asteroid) asteroids.get(i);
-            a.move();
-            // Wrap coordinates
-            if (a.x < 0) a.x = PANEL_WIDTH; 
-            else if (a.x > PANEL_WIDTH) a.x = 0;
-            if (a.y < 0) a.y = PANEL_HEIGHT; 
-            else if (a.y > PANEL_HEIGHT) a.y = 0;
+        // Rewinding replaces stepping; it stops at the oldest state held
+        if (rewinding && started && !paused && history != null) {
+            if (history.rewind(world, 1)) changed();
+            if (telemetry != null) telemetry.update(world, -1);
+            return;
         }
+        // Only update when game started and not paused
+        if (world.inGame && started && !paused) {
+            if (recorder != null) recorder.tick(inputs);
+            long stepStart = telemetry != null ? System.nanoTime() : 0;
+            world.step(inputs);
+            if (telemetry != null) telemetry.update(world, System.nanoTime() - stepStart);
+            if (!world.inGame && scores != null) scores.submit(ScoreStore.Session.of(world, player));
+            if (history != null) history.push(world);
+            changed();
+        } else if (telemetry != null) {
+            telemetry.update(world, -1); // keeps flushing, and answers close(), while nothing steps
+        }
+        // Debris keeps flying on the game over screen
+        if (started && !paused) updateEffects();
     }
 
-    private void updatePowerUps() {
-        for (int i = powerUps.size() - 1; i >= 0; i--) {
-            PowerUp p = (PowerUp) powerUps.get(i);
-            p.update();
-            double dist = Math.sqrt(Math.pow(shipX - p.x, 2) + Math.pow(shipY - p.y, 2));
-            if (dist < (SHIP_SIZE + POWERUP_SIZE) / 2.0) {
-                activePowerUp = p.type;
-                powerUpTimeRemaining = POWERUP_DURATION;
-                powerUps.remove(i);
+    /**
+     * Turns the world's new events into particle bursts, puffs exhaust behind
+     * thrusting ships and moves the particles on by a tick. Called after each
+     * tick; also by offscreen renderers that step the world themselves.
+     */
+    void updateEffects() {
+        EventLog events = world.events;
+        long end = events.end();
+        for (long e = Math.max(eventCursor, events.start()); e < end; e++) {
+            int type = events.type(e);
+            if (type == EventLog.ASTEROID_SPLIT) {
+                particles.asteroidSplit(events.x(e), events.y(e), events.value(e));
+            } else if (type == EventLog.SHIP_DESTROYED) {
+                particles.shipDestroyed(events.x(e), events.y(e));
             }
         }
-    }
-
-    private void fireBullet() {
-        int cooldown = BULLET_COOLDOWN;
-        if (activePowerUp == POWERUP_RAPID_FIRE) {
-            cooldown = (int) (BULLET_COOLDOWN / 1.5);
+        eventCursor = end;
+        // The streamer moved the world back a sector; the debris goes with it
+        SectorStreamer streamer = world.streamer();
+        if (streamer != null && (streamer.sectorX() != sectorX || streamer.sectorY() != sectorY)) {
+            particles.translate((sectorX - streamer.sectorX()) * (double) streamer.sectorWidth,
+                    (sectorY - streamer.sectorY()) * (double) streamer.sectorHeight);
+            sectorX = streamer.sectorX();
+            sectorY = streamer.sectorY();
         }
-        if (bulletCooldownTimer <= 0) {
-            double dx = Math.cos(shipAngle) * BULLET_SPEED;
-            double dy = Math.sin(shipAngle) * BULLET_SPEED;
-            if (activePowerUp == POWERUP_DOUBLE_SHOT) {
-                double offsetAngle = Math.PI / 16;
-                double leftAngle = shipAngle - offsetAngle;
-                double rightAngle = shipAngle + offsetAngle;
-                bullets.add(new Bullet(shipX, shipY, Math.cos(leftAngle) * BULLET_SPEED, Math.sin(leftAngle) * BULLET_SPEED));
-                bullets.add(new Bullet(shipX, shipY, Math.cos(rightAngle) * BULLET_SPEED, Math.sin(rightAngle) * BULLET_SPEED));
-            } else {
-                bullets.add(new Bullet(shipX, shipY, dx, dy));
+        if (world.inGame) {
+            for (Ship sh : world.ships) {
+                if (sh.active && sh.alive && sh.thrusting) particles.exhaust(sh, world.dt);
             }
-            bulletCooldownTimer = cooldown;
         }
+        particles.setLimit(quality.particleLimit());
+        particles.update(world.dt);
+        if (particles.alive() > 0) changed();
     }
 
-    private void checkCollisions() {
-        for (int i = bullets.size() - 1; i >= 0; i--) {
-            Bullet b = (Bullet) bullets.get(i);
-            for (int j = asteroids.size() - 1; j >= 0; j--) {
-                Asteroid a = (Asteroid) asteroids.get(j);
-                double dist = Math.sqrt(Math.pow(b.x - a.x, 2) + Math.pow(b.y - a.y, 2));
-                if (dist < a.size / 2.0) {
-                    bullets.remove(i);
-                    splitAsteroid(j);
-                    break;
-                }
+    private void changed() {
+        changes.incrementAndGet();
+    }
+
+    /**
+     * Whether a frame drawn now could differ from the last one: always while
+     * the game moves, otherwise only after something changed. Called by the
+     * loop thread before each frame.
+     */
+    boolean hasNewFrame() {
+        if (showStats || net != null || (world.inGame && started && !paused)) return true;
+        int current = changes.get();
+        if (current == renderedChanges) return false;
+        renderedChanges = current;
+        return true;
+    }
+
+    /**
+     * Applies the key events queued since the last tick and returns this
+     * tick's inputs: the keys held now, plus any pressed since the last tick
+     * even if already released. Fire only counts when pressed.
+     */
+    private int drainInputs() {
+        int n = inputQueue.drain(inputEvents, inputTimes);
+        int pressed = 0;
+        TickStats stats = world.getStats();
+        long now = stats.isEnabled() ? System.nanoTime() : 0;
+        for (int i = 0; i < n; i++) {
+            int event = inputEvents[i];
+            int keys = event & ~InputQueue.RELEASED;
+            if ((event & InputQueue.RELEASED) != 0) {
+                heldInputs &= ~keys;
+            } else {
+                heldInputs |= keys;
+                pressed |= keys;
             }
+            if (now != 0) stats.record(TickStats.PHASE_INPUT, now - inputTimes[i]);
         }
-        for (int i = asteroids.size() - 1; i >= 0; i--) {
-            Asteroid a = (Asteroid) asteroids.get(i);
-            double dist = Math.sqrt(Math.pow(shipX - a.x, 2) + Math.pow(shipY - a.y, 2));
-            if (dist < (a.size / 2.0) + (SHIP_SIZE / 2.0)) {
-                inGame = false;
-                gameTimer.stop();
-                break;
-            }
+        // A dropped release would leave its key stuck; after any drop take the
+        // held keys from the EDT, which by now has seen every event drained
+        long drops = inputQueue.dropped();
+        if (drops != seenInputDrops) {
+            seenInputDrops = drops;
+            heldInputs = keysDown;
         }
+        stats.updateInputDrops(drops);
+        return ((heldInputs | pressed) & ~World.INPUT_FIRE) | (pressed & World.INPUT_FIRE);
     }
 
-    private void splitAsteroid(int asteroidIndex) {
-        Asteroid a = (Asteroid) asteroids.remove(asteroidIndex);
-        if (a.size == ASTEROID_SIZE_LARGE) {
-            score += SCORE_LARGE_ASTEROID;
-            asteroids.add(new Asteroid(a.x, a.y, random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1, ASTEROID_SIZE_MEDIUM));
-            asteroids.add(new Asteroid(a.x, a.y, random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1, ASTEROID_SIZE_MEDIUM));
-        } else if (a.size == ASTEROID_SIZE_MEDIUM) {
-            score += SCORE_MEDIUM_ASTEROID;
-            asteroids.add(new Asteroid(a.x, a.y, random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1, ASTEROID_SIZE_SMALL));
-            asteroids.add(new Asteroid(a.x, a.y, random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1, ASTEROID_SIZE_SMALL));
-        } else {
-            score += SCORE_SMALL_ASTEROID;
-        }
-        asteroidsDestroyedSinceLastPowerUp++;
-        if (asteroidsDestroyedSinceLastPowerUp >= asteroidsUntilNextPowerUp) {
-            int[] types = {POWERUP_AIM_BEAM, POWERUP_DOUBLE_SHOT, POWERUP_BOOSTER, POWERUP_RAPID_FIRE};
-            int randomType = types[random.nextInt(types.length)];
-            powerUps.add(new PowerUp(a.x, a.y, randomType));
-            asteroidsDestroyedSinceLastPowerUp = 0;
-            asteroidsUntilNextPowerUp = POWERUP_DROP_MIN + random.nextInt(POWERUP_DROP_MAX - POWERUP_DROP_MIN + 1);
-        }
+    // The INPUT_* bit a key drives, or 0
+    private static int inputFor(int key) {
+        if (key == java.awt.event.KeyEvent.VK_LEFT)  return World.INPUT_LEFT;
+        if (key == java.awt.event.KeyEvent.VK_RIGHT) return World.INPUT_RIGHT;
+        if (key == java.awt.event.KeyEvent.VK_UP)    return World.INPUT_THRUST;
+        if (key == java.awt.event.KeyEvent.VK_DOWN)  return World.INPUT_BRAKE;
+        if (key == java.awt.event.KeyEvent.VK_SPACE) return World.INPUT_FIRE;
+        return 0;
     }
 
     @Override
     protected void paintComponent(java.awt.Graphics g) {
         super.paintComponent(g);
-        java.awt.Graphics2D g2d = (java.awt.Graphics2D) g;
-        g2d.setRenderingHint(java.awt.RenderingHints.KEY_ANTIALIASING, java.awt.RenderingHints.VALUE_ANTIALIAS_ON);
+        // Once the loop thread runs it owns the world and draws every frame itself
+        if (gameLoop == null) {
+            render((java.awt.Graphics2D) g, 1.0);
+        }
+    }
+
+    /**
+     * Draws one frame. {@code alpha} is how far (0..1) the clock has moved
+     * from the last simulation step towards the next one.
+     */
+    void render(java.awt.Graphics2D g2d, double alpha) {
+        TickStats stats = world.getStats();
+        long start = stats.start();
+        renderFrame(g2d, alpha);
+        if (start != 0) {
+            stats.lap(TickStats.PHASE_PAINT, start);
+        }
+        if (showStats) {
+            drawStatsOverlay(g2d);
+        }
+    }
+
+    private void renderFrame(java.awt.Graphics2D g2d, double alpha) {
+        // The state only moves while the simulation is running
+        this.alpha = (world.inGame && started && (net != null || !paused && !rewinding)) ? alpha : 1.0;
+        // Particles also move on the game over screen
+        double effectsAlpha = started && (net != null || !paused && !rewinding) ? alpha : 1.0;
+        java.awt.GraphicsConfiguration config = g2d.getDeviceConfiguration();
+        if (cache == null || !cache.isFor(config)) {
+            cache = new RenderCache(config, PANEL_WIDTH, PANEL_HEIGHT);
+        }
+        g2d.setRenderingHint(java.awt.RenderingHints.KEY_ANTIALIASING, quality.antialiasing()
+                ? java.awt.RenderingHints.VALUE_ANTIALIAS_ON : java.awt.RenderingHints.VALUE_ANTIALIAS_OFF);
+        updateCamera();
 
         // Start screen
         if (!started) {
@@ -334,182 +506,278 @@ public class AsteroidDestroyer extends javax.swing.JPanel implements java.awt.ev
             return;
         }
 
-        if (inGame) {
+        if (world.inGame) {
             drawAimBeam(g2d);
-            drawShip(g2d);
+            drawShips(g2d);
             drawBullets(g2d);
             drawAsteroids(g2d);
             drawPowerUps(g2d);
-            drawScore(g2d);
-            drawActivePowerUp(g2d);
+            particles.draw(g2d, particleView, effectsAlpha, world.dt, frameZoom);
+            drawHud(g2d);
             if (paused) {
                 drawPausedOverlay(g2d);
             }
         } else {
             drawGameOver(g2d);
+            particles.draw(g2d, particleView, effectsAlpha, world.dt, frameZoom);
         }
     }
 
+    // --- Interpolation ---
+
+    private double shipX(Ship sh) {
+        return lerpWrapped(sh.prevX, sh.x, world.width);
+    }
+
+    private double shipY(Ship sh) {
+        return lerpWrapped(sh.prevY, sh.y, world.height);
+    }
+
+    private double shipAngle(Ship sh) {
+        return sh.prevAngle + (sh.angle - sh.prevAngle) * alpha;
+    }
+
+    // Snaps instead of sweeping across the screen when the ship wrapped
+    private double lerpWrapped(double prev, double cur, double extent) {
+        if (Math.abs(cur - prev) > extent / 2) return cur;
+        return prev + (cur - prev) * alpha;
+    }
+
+    // Bullets and asteroids move in straight lines, so the previous position is
+    // just one step of velocity back along the path
+    private double lerp(double pos, double vel) {
+        return pos - vel * world.dt * (1.0 - alpha);
+    }
+
+    // --- Camera ---
+
+    private void updateCamera() {
+        frameZoom = zoom;
+        followX = world.width * frameZoom > PANEL_WIDTH;
+        followY = world.height * frameZoom > PANEL_HEIGHT;
+        Ship sh = world.ships[localShip];
+        viewCenterX = followX ? shipX(sh) : world.width / 2.0;
+        viewCenterY = followY ? shipY(sh) : world.height / 2.0;
+    }
+
+    // World to panel coordinates. When following, positions are taken from
+    // whichever copy of the wrapped field is nearest the ship.
+    private double screenX(double x) {
+        double d = x - viewCenterX;
+        if (followX) {
+            if (d < -world.width / 2.0) d += world.width;
+            else if (d >= world.width / 2.0) d -= world.width;
+        }
+        return d * frameZoom + PANEL_WIDTH / 2.0;
+    }
+
+    private double screenY(double y) {
+        double d = y - viewCenterY;
+        if (followY) {
+            if (d < -world.height / 2.0) d += world.height;
+            else if (d >= world.height / 2.0) d -= world.height;
+        }
+        return d * frameZoom + PANEL_HEIGHT / 2.0;
+    }
+
+    // Whether anything within {@code radius} screen pixels of (sx, sy) is on the panel
+    private static boolean visible(double sx, double sy, double radius) {
+        return sx + radius >= 0 && sx - radius < PANEL_WIDTH && sy + radius >= 0 && sy - radius < PANEL_HEIGHT;
+    }
+
+    // Zooming out stops once the whole field fits in the panel
+    private double minZoom() {
+        double fit = Math.min((double) PANEL_WIDTH / world.width, (double) PANEL_HEIGHT / world.height);
+        return Math.min(1.0, Math.max(MIN_ZOOM, fit));
+    }
+
     // Start screen with instructions
     private void drawStartScreen(java.awt.Graphics2D g2d) {
-        String title = "Space Invaders";
-        String msg = "Press ENTER to Start";
-        String controls = "Arrows: Move  |  SPACE: Shoot  |  P: Pause  |  R: Restart";
-
-        g2d.setColor(java.awt.Color.WHITE);
-        java.awt.Font largeFont = new java.awt.Font("Monospaced", java.awt.Font.BOLD, 75);
-        java.awt.Font mediumFont = new java.awt.Font("Monospaced", java.awt.Font.PLAIN, 30);
-        java.awt.Font smallFont = new java.awt.Font("Monospaced", java.awt.Font.PLAIN, 16);
-        java.awt.FontMetrics metricsLarge = g2d.getFontMetrics(largeFont);
-        java.awt.FontMetrics metricsMedium = g2d.getFontMetrics(mediumFont);
-        g2d.setFont(largeFont);
-        g2d.drawString(title, (PANEL_WIDTH - metricsLarge.stringWidth(title)) / 2, PANEL_HEIGHT / 2 - 40);
-        g2d.setFont(mediumFont);
-        g2d.drawString(msg, (PANEL_WIDTH - metricsMedium.stringWidth(msg)) / 2, PANEL_HEIGHT / 2 + 10);
-        g2d.setFont(smallFont);
-        java.awt.FontMetrics metricsSmall = g2d.getFontMetrics(smallFont);
-        g2d.drawString(controls, (PANEL_WIDTH - metricsSmall.stringWidth(controls)) / 2, PANEL_HEIGHT / 2 + 50);
+        g2d.drawImage(cache.startScreen(), 0, 0, null);
     }
 
     // Pause overlay
     private void drawPausedOverlay(java.awt.Graphics2D g2d) {
-        String msg = "PAUSED";
-        java.awt.Font font = new java.awt.Font("Monospaced", java.awt.Font.BOLD, 40);
-        java.awt.FontMetrics m = g2d.getFontMetrics(font);
-        g2d.setColor(new java.awt.Color(0,0,0,150));
-        g2d.fillRect(0,0,PANEL_WIDTH,PANEL_HEIGHT);
-        g2d.setColor(java.awt.Color.YELLOW);
-        g2d.setFont(font);
-        g2d.drawString(msg, (PANEL_WIDTH - m.stringWidth(msg)) / 2, PANEL_HEIGHT / 2);
+        g2d.drawImage(cache.pausedOverlay(), 0, 0, null);
     }
 
     private void drawAimBeam(java.awt.Graphics2D g2d) {
-        if (activePowerUp == POWERUP_AIM_BEAM) {
+        Ship sh = world.ships[localShip];
+        if (sh.alive && sh.activePowerUp == World.POWERUP_AIM_BEAM) {
             g2d.setColor(java.awt.Color.GREEN);
-            java.awt.Stroke dashed = new java.awt.BasicStroke(1, java.awt.BasicStroke.CAP_BUTT, java.awt.BasicStroke.JOIN_BEVEL, 0, new float[]{5}, 0);
-            g2d.setStroke(dashed);
-            double endX = shipX + Math.cos(shipAngle) * 1000;
-            double endY = shipY + Math.sin(shipAngle) * 1000;
-            g2d.drawLine((int) shipX, (int) shipY, (int) endX, (int) endY);
-            g2d.setStroke(new java.awt.BasicStroke());
+            double sx = screenX(shipX(sh)), sy = screenY(shipY(sh)), angle = shipAngle(sh);
+            double endX = sx + Math.cos(angle) * 1000;
+            double endY = sy + Math.sin(angle) * 1000;
+            // A solid line skips the dash pattern, which is costly to stroke
+            if (quality.simpleAimBeam()) {
+                g2d.drawLine((int) sx, (int) sy, (int) endX, (int) endY);
+                return;
+            }
+            g2d.setStroke(RenderCache.AIM_BEAM_STROKE);
+            g2d.drawLine((int) sx, (int) sy, (int) endX, (int) endY);
+            g2d.setStroke(RenderCache.DEFAULT_STROKE);
         }
     }
 
-    private void drawShip(java.awt.Graphics2D g2d) {
-        java.awt.Polygon shipShape = new java.awt.Polygon();
-        shipShape.addPoint(SHIP_SIZE / 2, 0);
-        shipShape.addPoint(-SHIP_SIZE / 2, -SHIP_SIZE / 3);
-        shipShape.addPoint(-SHIP_SIZE / 2, SHIP_SIZE / 3);
+    // Our own ship in cyan, other players' in pink
+    private void drawShips(java.awt.Graphics2D g2d) {
+        for (int i = 0; i < world.ships.length; i++) {
+            Ship sh = world.ships[i];
+            if (!sh.active || !sh.alive) continue;
+            double sx = screenX(shipX(sh)), sy = screenY(shipY(sh));
+            if (!visible(sx, sy, World.SHIP_SIZE * frameZoom)) continue;
+            drawShip(g2d, sh, sx, sy, i == localShip ? java.awt.Color.CYAN : java.awt.Color.PINK);
+        }
+    }
+
+    private void drawShip(java.awt.Graphics2D g2d, Ship sh, double sx, double sy, java.awt.Color color) {
         java.awt.geom.AffineTransform oldTransform = g2d.getTransform();
-        g2d.translate(shipX, shipY);
-        g2d.rotate(shipAngle);
-        if (thrusting) {
+        g2d.translate(sx, sy);
+        if (frameZoom != 1.0) g2d.scale(frameZoom, frameZoom);
+        g2d.rotate(shipAngle(sh));
+        if (sh.thrusting) {
             g2d.setColor(java.awt.Color.ORANGE);
-            g2d.fillPolygon(new int[]{-SHIP_SIZE / 2, -SHIP_SIZE, -SHIP_SIZE / 2}, new int[]{-SHIP_SIZE / 4, 0, SHIP_SIZE / 4}, 3);
+            g2d.fillPolygon(RenderCache.FLAME_SHAPE);
         }
-        g2d.setColor(java.awt.Color.CYAN);
-        g2d.draw(shipShape);
+        g2d.setColor(color);
+        g2d.draw(RenderCache.SHIP_SHAPE);
         g2d.setTransform(oldTransform);
     }
 
     private void drawBullets(java.awt.Graphics2D g2d) {
         g2d.setColor(java.awt.Color.YELLOW);
-        for (int i = 0; i < bullets.size(); i++) {
-            Bullet b = (Bullet) bullets.get(i);
-            g2d.fillOval((int) b.x - 2, (int) b.y - 2, 4, 4);
+        Entities b = world.bullets;
+        boolean full = frameZoom >= 1.0;
+        for (int i = 0; i < b.count; i++) {
+            double sx = screenX(lerp(b.x[i], b.dx[i]));
+            double sy = screenY(lerp(b.y[i], b.dy[i]));
+            if (!visible(sx, sy, 2)) continue;
+            if (full) {
+                g2d.fillOval((int) sx - 2, (int) sy - 2, 4, 4);
+            } else {
+                g2d.fillRect((int) sx - 1, (int) sy - 1, 2, 2);
+            }
         }
     }
 
     private void drawAsteroids(java.awt.Graphics2D g2d) {
         g2d.setColor(java.awt.Color.GRAY);
-        for (int i = 0; i < asteroids.size(); i++) {
-            Asteroid a = (Asteroid) asteroids.get(i);
-            g2d.drawOval((int) (a.x - a.size / 2.0), (int) (a.y - a.size / 2.0), a.size, a.size);
+        // Only look at the grid cells around the view: the largest asteroid
+        // and one step of interpolation may reach in from outside it
+        double reach = Math.max(PANEL_WIDTH, PANEL_HEIGHT) / 2.0 / frameZoom
+                + World.ASTEROID_SIZE_LARGE / 2.0 + (world.asteroidMaxSpeed + 2) * world.dt;
+        int found = world.asteroidsNear(viewCenterX, viewCenterY, reach, viewResults);
+        int drawn = 0;
+        if (found < 0) {
+            for (int i = 0; i < world.asteroids.count; i++) {
+                if (drawAsteroid(g2d, i)) drawn++;
+            }
+        } else {
+            int[] ids = viewResults.ids;
+            for (int k = 0; k < found; k++) {
+                if (drawAsteroid(g2d, ids[k])) drawn++;
+            }
+        }
+        asteroidsDrawn = drawn;
+    }
+
+    // Returns false if the asteroid is out of view
+    private boolean drawAsteroid(java.awt.Graphics2D g2d, int i) {
+        Entities a = world.asteroids;
+        double x = screenX(lerp(a.x[i], a.dx[i]));
+        double y = screenY(lerp(a.y[i], a.dy[i]));
+        double diameter = a.size[i] * frameZoom;
+        if (!visible(x, y, diameter / 2 + 1)) return false;
+        // Level of detail by on-screen size
+        if (diameter <= LOD_POINT_SIZE) {
+            g2d.fillRect((int) x, (int) y, 1, 1);
+            return true;
         }
+        int d = (int) diameter;
+        int left = (int) (x - diameter / 2.0);
+        int top = (int) (y - diameter / 2.0);
+        int outline = quality.asteroidOutline();
+        java.awt.image.BufferedImage sprite = frameZoom == 1.0 && outline == 0 ? cache.asteroidSprite(a.size[i]) : null;
+        if (diameter <= LOD_RECT_SIZE) {
+            g2d.fillRect(left, top, d, d);
+        } else if (outline == 2) {
+            g2d.drawRect(left, top, d, d);
+        } else if (sprite != null) {
+            g2d.drawImage(sprite, left - RenderCache.ASTEROID_SPRITE_PAD, top - RenderCache.ASTEROID_SPRITE_PAD, null);
+        } else {
+            g2d.drawOval(left, top, d, d);
+        }
+        return true;
     }
 
     private void drawPowerUps(java.awt.Graphics2D g2d) {
-        for (int i = 0; i < powerUps.size(); i++) {
-            PowerUp p = (PowerUp) powerUps.get(i);
-            java.awt.Color color;
-            String label;
-            if (p.type == POWERUP_AIM_BEAM) {
-                color = java.awt.Color.GREEN; 
-                label = "A";
-            } else if (p.type == POWERUP_DOUBLE_SHOT) {
-                color = java.awt.Color.BLUE; 
-                label = "D";
-            } else if (p.type == POWERUP_BOOSTER) {
-                color = java.awt.Color.ORANGE; 
-                label = "B";
-            } else if (p.type == POWERUP_RAPID_FIRE) {
-                color = java.awt.Color.RED; 
-                label = "R";
+        Entities p = world.powerUps;
+        int s = (int) Math.max(1, World.POWERUP_SIZE * frameZoom);
+        for (int i = 0; i < p.count; i++) {
+            double sx = screenX(p.x[i]);
+            double sy = screenY(p.y[i]);
+            if (!visible(sx, sy, s / 2.0)) continue;
+            java.awt.image.BufferedImage sprite = cache.powerUpSprite(p.type[i]);
+            if (frameZoom == 1.0) {
+                g2d.drawImage(sprite, (int) (sx - World.POWERUP_SIZE / 2), (int) (sy - World.POWERUP_SIZE / 2), null);
             } else {
-                color = java.awt.Color.WHITE; 
-                label = "?";
+                g2d.drawImage(sprite, (int) (sx - s / 2.0), (int) (sy - s / 2.0), s, s, null);
             }
-            g2d.setColor(color);
-            g2d.fillRect((int) (p.x - POWERUP_SIZE / 2), (int) (p.y - POWERUP_SIZE / 2), POWERUP_SIZE, POWERUP_SIZE);
-            g2d.setColor(java.awt.Color.BLACK);
-            g2d.drawString(label, (int) p.x - 4, (int) p.y + 5);
-        }
-    }
-
-    private void drawScore(java.awt.Graphics2D g2d) {
-        g2d.setColor(java.awt.Color.WHITE);
-        g2d.setFont(new java.awt.Font("Monospaced", java.awt.Font.BOLD, 20));
-        g2d.drawString("Score: " + score, 10, 25);
-        // Controls hint (pause / restart) in top-right
-        String ctrl = "P: Pause | R: Restart";
-        java.awt.FontMetrics fm = g2d.getFontMetrics();
-        int w = fm.stringWidth(ctrl);
-        g2d.drawString(ctrl, PANEL_WIDTH - w - 10, 25);
-    }
-
-    private void drawActivePowerUp(java.awt.Graphics2D g2d) {
-        if (activePowerUp != POWERUP_NONE && powerUpTimeRemaining > 0) {
-            g2d.setColor(java.awt.Color.WHITE);
-            g2d.setFont(new java.awt.Font("Monospaced", java.awt.Font.PLAIN, 16));
-            String name;
-            if (activePowerUp == POWERUP_AIM_BEAM) {
-                name = "AIM BEAM";
-            } else if (activePowerUp == POWERUP_DOUBLE_SHOT) {
-                name = "DOUBLE SHOT";
-            } else if (activePowerUp == POWERUP_BOOSTER) {
-                name = "BOOSTER";
-            } else if (activePowerUp == POWERUP_RAPID_FIRE) {
-                name = "RAPID FIRE";
-            } else {
-                name = "";
-            }
-            int timeLeft = powerUpTimeRemaining / 60;
-            g2d.drawString("PowerUp: " + name + " (" + timeLeft + "s)", 10, 50);
         }
     }
 
+    // Score, controls hint and active power-up, from the cached HUD layer
+    private void drawHud(java.awt.Graphics2D g2d) {
+        Ship sh = world.ships[localShip];
+        int score = net != null ? sh.score : world.score;
+        int powerUp = World.POWERUP_NONE;
+        int timeLeft = 0;
+        if (sh.activePowerUp != World.POWERUP_NONE && sh.powerUpTimeRemaining > 0) {
+            powerUp = sh.activePowerUp;
+            timeLeft = (int) (sh.powerUpTimeRemaining / World.BASE_TICK_RATE);
+        }
+        cache.drawHud(g2d, score, powerUp, timeLeft);
+    }
+
     private void drawGameOver(java.awt.Graphics2D g2d) {
-        String msg = "Game Over";
-        String scoreMsg = "Final Score: " + score;
-        String restartMsg = "Press 'R' to Restart";
-        String quitMsg = "Press 'Q' to Quit";
-        java.awt.Font largeFont = new java.awt.Font("Monospaced", java.awt.Font.BOLD, 75);
-        java.awt.Font mediumFont = new java.awt.Font("Monospaced", java.awt.Font.BOLD, 30);
-        java.awt.FontMetrics metricsLarge = g2d.getFontMetrics(largeFont);
-        g2d.setColor(java.awt.Color.RED);
-        g2d.setFont(largeFont);
-        g2d.drawString(msg, (PANEL_WIDTH - metricsLarge.stringWidth(msg)) / 2, PANEL_HEIGHT / 2 - 50);
-        g2d.setColor(java.awt.Color.WHITE);
-        g2d.setFont(mediumFont);
-        java.awt.FontMetrics metricsMedium = g2d.getFontMetrics(mediumFont);
-        g2d.drawString(scoreMsg, (PANEL_WIDTH - metricsMedium.stringWidth(scoreMsg)) / 2, PANEL_HEIGHT / 2 + 20);
-        g2d.drawString(restartMsg, (PANEL_WIDTH - metricsMedium.stringWidth(restartMsg)) / 2, PANEL_HEIGHT / 2 + 60);
-        g2d.drawString(quitMsg, (PANEL_WIDTH - metricsMedium.stringWidth(quitMsg)) / 2, PANEL_HEIGHT / 2 + 100);
+        g2d.drawImage(cache.gameOverScreen(world.score, scores != null ? scores.top() : null), 0, 0, null);
+    }
+
+    // Debug overlay: per-phase p50/p99/max in microseconds and entity counts
+    private void drawStatsOverlay(java.awt.Graphics2D g2d) {
+        TickStats stats = world.getStats();
+        g2d.setFont(RenderCache.HUD_FONT);
+        g2d.setColor(java.awt.Color.GREEN);
+        SectorStreamer streamer = world.streamer();
+        int y = PANEL_HEIGHT - 20 * (TickStats.PHASE_COUNT + (streamer != null ? 4 : 3)) - 10;
+        g2d.drawString(String.format("%-10s %8s %8s %8s", "phase(us)", "p50", "p99", "max"), 10, y);
+        for (int phase = 0; phase < TickStats.PHASE_COUNT; phase++) {
+            y += 20;
+            g2d.drawString(String.format("%-10s %8.1f %8.1f %8.1f", TickStats.PHASE_NAMES[phase],
+                    stats.percentile(phase, 0.50) / 1000.0,
+                    stats.percentile(phase, 0.99) / 1000.0,
+                    stats.max(phase) / 1000.0), 10, y);
+        }
+        y += 20;
+        g2d.drawString("bullets " + stats.getBulletCount() + "  asteroids " + stats.getAsteroidCount()
+                + " (" + asteroidsDrawn + " drawn)  powerUps " + stats.getPowerUpCount(), 10, y);
+        y += 20;
+        g2d.drawString("particles " + particles.alive() + " (" + particles.drawn() + " drawn, limit "
+                + particles.drawLimit() + ")", 10, y);
+        y += 20;
+        g2d.drawString(String.format("quality %s%s  load %.0f%%  tick %.2fms  frame %.2fms",
+                QualityGovernor.TIER_NAMES[quality.tier()], quality.isAdaptive() ? " (auto)" : "",
+                quality.load() * 100, quality.averageTickNanos() / 1e6, quality.averageFrameNanos() / 1e6), 10, y);
+        if (streamer != null) {
+            y += 20;
+            g2d.drawString(streamer.report(), 10, y);
+        }
     }
 
     @Override
     public void keyPressed(java.awt.event.KeyEvent e) {
         int key = e.getKeyCode();
+        changed(); // start, pause, zoom and the rest may all change a still frame
 
         // Start screen handling
         if (!started) {
@@ -520,81 +788,60 @@ public class AsteroidDestroyer extends javax.swing.JPanel implements java.awt.ev
         }
 
         // Restart anytime
-        if (key == java.awt.event.KeyEvent.VK_R) { initGame(); return; }
+        if (key == java.awt.event.KeyEvent.VK_R && net == null) { restartRequested = true; return; }
+
+        // Timing overlay; turning it on also starts collecting
+        if (key == java.awt.event.KeyEvent.VK_F3) {
+            showStats = !showStats;
+            world.getStats().setEnabled(showStats);
+            return;
+        }
 
         // Quit on Q (after start)
         if (key == java.awt.event.KeyEvent.VK_Q) { System.exit(0); }
 
+        // Zoom, for worlds larger than the panel
+        if (key == java.awt.event.KeyEvent.VK_MINUS || key == java.awt.event.KeyEvent.VK_SUBTRACT) {
+            zoom = Math.max(minZoom(), zoom / ZOOM_STEP);
+            return;
+        }
+        if (key == java.awt.event.KeyEvent.VK_EQUALS || key == java.awt.event.KeyEvent.VK_ADD) {
+            zoom = Math.min(1.0, zoom * ZOOM_STEP);
+            return;
+        }
+
+        // Quicksave, quickload and rewind. A replay only holds inputs, so
+        // they are off while recording.
+        if (recorder == null && net == null && world.streamer() == null) {
+            if (key == java.awt.event.KeyEvent.VK_F5) { quicksaveRequested = true; return; }
+            if (key == java.awt.event.KeyEvent.VK_F9) { quickloadRequested = true; return; }
+            if (key == java.awt.event.KeyEvent.VK_BACK_SPACE) { rewinding = true; return; }
+        }
+
         // Pause toggle
-        if (key == java.awt.event.KeyEvent.VK_P && inGame) { paused = !paused; return; }
-        if (!inGame || paused) { return; }
+        if (key == java.awt.event.KeyEvent.VK_P && world.inGame && net == null) { paused = !paused; return; }
 
-        if (key == java.awt.event.KeyEvent.VK_LEFT)  rotatingLeft = true;
-        if (key == java.awt.event.KeyEvent.VK_RIGHT) rotatingRight = true;
-        if (key == java.awt.event.KeyEvent.VK_UP)    thrusting = true;
-        if (key == java.awt.event.KeyEvent.VK_DOWN)  braking = true;
-        if (key == java.awt.event.KeyEvent.VK_SPACE) fireBullet();
+        // Game keys go to the loop thread, which decides what they do
+        int input = inputFor(key);
+        if (input != 0) {
+            keysDown |= input;
+            inputQueue.offer(input, System.nanoTime());
+        }
     }
 
     @Override
     public void keyReleased(java.awt.event.KeyEvent e) {
-        if (!inGame || !started || paused) return;
         int key = e.getKeyCode();
-        if (key == java.awt.event.KeyEvent.VK_LEFT)  rotatingLeft = false;
-        if (key == java.awt.event.KeyEvent.VK_RIGHT) rotatingRight = false;
-        if (key == java.awt.event.KeyEvent.VK_UP)    thrusting = false;
-        if (key == java.awt.event.KeyEvent.VK_DOWN)  braking = false;
+        if (key == java.awt.event.KeyEvent.VK_BACK_SPACE) rewinding = false;
+        // Releases are not filtered like presses, so a key cannot stay held;
+        // if the queue drops one, the loop thread resyncs from keysDown
+        int input = inputFor(key);
+        if (input != 0) {
+            keysDown &= ~input;
+            inputQueue.offer(input | InputQueue.RELEASED, System.nanoTime());
+        }
     }
 
     @Override
     public void keyTyped(java.awt.event.KeyEvent e) {}
 }
-
-class Asteroid {
-    public double x, y, dx, dy;
-    public int size;
-
-    public Asteroid(double x, double y, double dx, double dy, int size) {
-        this.x = x;
-        this.y = y;
-        this.dx = dx;
-        this.dy = dy;
-        this.size = size;
-    }
-
-    public void move() {
-        x += dx;
-        y += dy;
-    }
-}
-
-class Bullet {
-    public double x, y, dx, dy;
-
-    public Bullet(double x, double y, double dx, double dy) {
-        this.x = x;
-        this.y = y;
-        this.dx = dx;
-        this.dy = dy;
-    }
-
-    public void move() {
-        x += dx;
-        y += dy;
-    }
-}
-
-class PowerUp {
-    public double x, y;
-    public int type;
-
-    public PowerUp(double x, double y, int type) {
-        this.x = x;
-        this.y = y;
-        this.type = type;
-    }
-
-    public void update() {
-    }
-}
-
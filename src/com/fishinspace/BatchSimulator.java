@@ -0,0 +1,185 @@
+package com.fishinspace;
+
+/**
+ * BatchSimulator.java
+ *
+ * Plays many independent, seeded games in parallel and summarises them, for
+ * balancing the power-up drop rate, asteroid speed and score values. Each
+ * game owns its world and policy, so games share nothing and throughput
+ * scales with the number of cores. Game i is seeded from the base seed, so a
+ * batch can be repeated exactly and any single game replayed on its own.
+ *
+ * Run: java -Djava.awt.headless=true com.fishinspace.BatchSimulator
+ *          [--games=N] [--seed=N] [--threads=N] [--max-ticks=N] [--tick-rate=Hz]
+ *          [--policy=random|aim|script:LF*30,TF*10] [--drop-min=N] [--drop-max=N]
+ *          [--max-speed=N] [--score=large,medium,small] [--collisions=swept|discrete]
+ *
+ * Collisions are swept (see World#setSweptCollisions), so a low --tick-rate
+ * plays the same game in fewer ticks; --collisions=discrete restores the
+ * end-position tests for comparison.
+ */
+public class BatchSimulator {
+
+    /** Outcome of one game. */
+    static final class GameResult {
+        long seed;
+        int score;
+        long ticks;
+        boolean died;
+        int asteroidsDestroyed;
+        int powerUpsDropped;
+        int[] powerUpsCollected;
+    }
+
+    /** Balancing overrides applied to every world in the batch. */
+    static final class Tuning {
+        int dropMin = World.POWERUP_DROP_MIN;
+        int dropMax = World.POWERUP_DROP_MAX;
+        int maxSpeed = World.ASTEROID_MAX_SPEED;
+        int scoreLarge = World.SCORE_LARGE_ASTEROID;
+        int scoreMedium = World.SCORE_MEDIUM_ASTEROID;
+        int scoreSmall = World.SCORE_SMALL_ASTEROID;
+        boolean sweptCollisions = true;
+
+        void applyTo(World world) {
+            world.setSweptCollisions(sweptCollisions);
+            world.powerUpDropMin = dropMin;
+            world.powerUpDropMax = dropMax;
+            world.asteroidMaxSpeed = maxSpeed;
+            world.scoreLargeAsteroid = scoreLarge;
+            world.scoreMediumAsteroid = scoreMedium;
+            world.scoreSmallAsteroid = scoreSmall;
+            world.reset(); // respawn with the new settings
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int games = 10_000;
+        long baseSeed = 1L;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long maxTicks = 60L * 60 * 10; // ten minutes of game time at 60 Hz
+        int tickRate = World.BASE_TICK_RATE;
+        String policy = "random";
+        Tuning tuning = new Tuning();
+        for (String arg : args) {
+            if (arg.startsWith("--games=")) games = Integer.parseInt(value(arg));
+            else if (arg.startsWith("--seed=")) baseSeed = Long.parseLong(value(arg));
+            else if (arg.startsWith("--threads=")) threads = Integer.parseInt(value(arg));
+            else if (arg.startsWith("--max-ticks=")) maxTicks = Long.parseLong(value(arg));
+            else if (arg.startsWith("--tick-rate=")) tickRate = Integer.parseInt(value(arg));
+            else if (arg.startsWith("--policy=")) policy = value(arg);
+            else if (arg.startsWith("--drop-min=")) tuning.dropMin = Integer.parseInt(value(arg));
+            else if (arg.startsWith("--drop-max=")) tuning.dropMax = Integer.parseInt(value(arg));
+            else if (arg.startsWith("--max-speed=")) tuning.maxSpeed = Integer.parseInt(value(arg));
+            else if (arg.startsWith("--collisions=")) tuning.sweptCollisions = !value(arg).equals("discrete");
+            else if (arg.startsWith("--score=")) {
+                String[] s = value(arg).split(",");
+                tuning.scoreLarge = Integer.parseInt(s[0]);
+                tuning.scoreMedium = Integer.parseInt(s[1]);
+                tuning.scoreSmall = Integer.parseInt(s[2]);
+            }
+        }
+        if (games < 1 || threads < 1) {
+            System.err.println("--games and --threads must be at least 1");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        GameResult[] results = run(games, baseSeed, threads, maxTicks, tickRate, policy, tuning);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.print(summary(results, seconds, threads));
+    }
+
+    /** Plays {@code games} games on a pool of {@code threads} workers; results are in game order. */
+    static GameResult[] run(int games, long baseSeed, int threads, long maxTicks, int tickRate,
+                            String policy, Tuning tuning) throws Exception {
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(threads);
+        try {
+            return pool.submit(() -> java.util.stream.IntStream.range(0, games)
+                    .parallel()
+                    .mapToObj(i -> play(gameSeed(baseSeed, i), maxTicks, tickRate, policy, tuning))
+                    .toArray(GameResult[]::new)).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static GameResult play(long seed, long maxTicks, int tickRate, String policyName, Tuning tuning) {
+        World world = new World(seed);
+        world.setTickRate(tickRate);
+        tuning.applyTo(world);
+        InputPolicy policy = policyName.startsWith("script:")
+                ? InputPolicy.scripted(policyName.substring("script:".length()))
+                : policyName.equals("aim") ? Agent.policy(Agent.aimAtNearest())
+                : InputPolicy.random(~seed);
+
+        while (!world.isGameOver() && world.getTick() < maxTicks) {
+            world.step(policy.inputs(world));
+        }
+
+        GameResult result = new GameResult();
+        result.seed = seed;
+        result.score = world.getScore();
+        result.ticks = world.getTick();
+        result.died = world.isGameOver();
+        result.asteroidsDestroyed = world.asteroidsDestroyed;
+        result.powerUpsDropped = world.powerUpsDropped;
+        result.powerUpsCollected = world.powerUpsCollected.clone();
+        return result;
+    }
+
+    // Spreads consecutive game numbers over the seed space (SplitMix64 finaliser),
+    // since nearby seeds give correlated first draws from the LCG
+    static long gameSeed(long baseSeed, int game) {
+        long z = baseSeed + (game + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    static String summary(GameResult[] results, double seconds, int threads) {
+        int n = results.length;
+        int[] scores = new int[n];
+        long[] ticks = new long[n];
+        long totalTicks = 0;
+        long totalScore = 0;
+        int deaths = 0;
+        long destroyed = 0;
+        long dropped = 0;
+        long[] collected = new long[World.POWERUP_RAPID_FIRE + 1];
+        for (int i = 0; i < n; i++) {
+            GameResult r = results[i];
+            scores[i] = r.score;
+            ticks[i] = r.ticks;
+            totalTicks += r.ticks;
+            totalScore += r.score;
+            if (r.died) deaths++;
+            destroyed += r.asteroidsDestroyed;
+            dropped += r.powerUpsDropped;
+            for (int t = 0; t < collected.length; t++) collected[t] += r.powerUpsCollected[t];
+        }
+        java.util.Arrays.sort(scores);
+        java.util.Arrays.sort(ticks);
+
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("games=%d threads=%d time=%.2fs  %.0f games/s  %.0f ticks/s%n",
+                n, threads, seconds, n / seconds, totalTicks / seconds));
+        out.append(String.format("score     mean=%.1f p10=%d p50=%d p90=%d max=%d%n",
+                (double) totalScore / n, scores[n / 10], scores[n / 2], scores[n * 9 / 10], scores[n - 1]));
+        out.append(String.format("survival  mean=%.0f p10=%d p50=%d p90=%d ticks, died in %.1f%% of games%n",
+                (double) totalTicks / n, ticks[n / 10], ticks[n / 2], ticks[n * 9 / 10], 100.0 * deaths / n));
+        out.append(String.format("asteroids destroyed/game=%.2f%n", (double) destroyed / n));
+        long totalCollected = 0;
+        for (long c : collected) totalCollected += c;
+        out.append(String.format("power-ups dropped/game=%.2f collected/game=%.2f (%.1f%% picked up)%n",
+                (double) dropped / n, (double) totalCollected / n, dropped == 0 ? 0 : 100.0 * totalCollected / dropped));
+        for (int t = World.POWERUP_AIM_BEAM; t < collected.length; t++) {
+            out.append(String.format("  %-12s collected/game=%.2f%n", World.POWERUP_NAMES[t], (double) collected[t] / n));
+        }
+        return out.toString();
+    }
+
+    private static String value(String arg) {
+        return arg.substring(arg.indexOf('=') + 1);
+    }
+}
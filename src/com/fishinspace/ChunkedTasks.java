@@ -0,0 +1,87 @@
+package com.fishinspace;
+
+/**
+ * ChunkedTasks.java
+ *
+ * Runs one job over a range [0, n) cut into a fixed number of contiguous
+ * chunks, one per thread of a pool of its own, and returns once every chunk
+ * is done. The chunk tasks are created once and reinitialised for every run,
+ * so handing work to the pool builds no task objects; callers keep their
+ * {@link Body} in a field for the same reason. With a single chunk there is
+ * no pool and the job runs on the calling thread.
+ *
+ * Used by {@link ParallelTick} for the asteroid-heavy parts of a tick and by
+ * {@link WorldBatch} for stepping many worlds at once.
+ */
+final class ChunkedTasks {
+    /** The job, run once per chunk on [from, to); {@code chunk} indexes per-chunk scratch. */
+    interface Body {
+        void run(int chunk, int from, int to);
+    }
+
+    private final java.util.concurrent.ForkJoinPool pool; // null for a single chunk
+    private final Chunk[] chunks;
+    private final Root root = new Root();
+    private Body body;
+
+    ChunkedTasks(int parts) {
+        if (parts < 1) throw new IllegalArgumentException("need at least one chunk: " + parts);
+        pool = parts > 1 ? new java.util.concurrent.ForkJoinPool(parts) : null;
+        chunks = new Chunk[parts];
+        for (int c = 0; c < parts; c++) {
+            chunks[c] = new Chunk(c);
+        }
+    }
+
+    int parts() {
+        return chunks.length;
+    }
+
+    /** Runs {@code job} over [0, n) in parts() even chunks and waits for all of them. */
+    void run(int n, Body job) {
+        int parts = chunks.length;
+        if (pool == null) {
+            job.run(0, 0, n);
+            return;
+        }
+        body = job;
+        for (int c = 0; c < parts; c++) {
+            Chunk chunk = chunks[c];
+            chunk.reinitialize();
+            chunk.from = (int) ((long) n * c / parts);
+            chunk.to = (int) ((long) n * (c + 1) / parts);
+        }
+        root.reinitialize();
+        pool.invoke(root);
+        body = null;
+    }
+
+    void shutdown() {
+        if (pool != null) pool.shutdown();
+    }
+
+    private final class Root extends java.util.concurrent.RecursiveAction {
+        private static final long serialVersionUID = 1L; // never serialized
+
+        @Override
+        protected void compute() {
+            invokeAll(chunks);
+        }
+    }
+
+    private final class Chunk extends java.util.concurrent.RecursiveAction {
+        private static final long serialVersionUID = 1L; // never serialized
+        final int index;
+        int from;
+        int to;
+
+        Chunk(int index) {
+            this.index = index;
+        }
+
+        @Override
+        protected void compute() {
+            body.run(index, from, to);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.fishinspace;
+
+/**
+ * Entities.java
+ *
+ * Structure-of-arrays storage for one kind of entity (bullets, asteroids or
+ * power-ups). Entity i is the i-th slot of every array; only the first
+ * {@code count} slots are live. Removal swaps the last live entity into the
+ * hole, so it is O(1) but does not preserve order: loops that remove while
+ * iterating must walk from the end.
+ *
+ * Not every kind uses every column: asteroids use {@code size}, power-ups
+ * use {@code type}, and power-ups never move.
+ *
+ * The arrays double as the entity pool: a removed slot is simply reused by
+ * the next add, and the arrays only grow (and allocate) when more entities
+ * are live at once than ever before. {@link #peak()} and {@link #grows()}
+ * expose the occupancy so callers can size the pool to avoid that.
+ */
+class Entities {
+    double[] x, y, dx, dy;
+    int[] size;
+    int[] type;
+    int count;
+    private int peak;
+    private int grows;
+
+    Entities(int initialCapacity) {
+        x = new double[initialCapacity];
+        y = new double[initialCapacity];
+        dx = new double[initialCapacity];
+        dy = new double[initialCapacity];
+        size = new int[initialCapacity];
+        type = new int[initialCapacity];
+    }
+
+    /** Appends an entity and returns its index. */
+    int add(double x, double y, double dx, double dy, int size, int type) {
+        if (count == this.x.length) grow();
+        int i = count++;
+        if (count > peak) peak = count;
+        this.x[i] = x;
+        this.y[i] = y;
+        this.dx[i] = dx;
+        this.dy[i] = dy;
+        this.size[i] = size;
+        this.type[i] = type;
+        return i;
+    }
+
+    /** Removes entity i by moving the last live entity into its slot. */
+    void remove(int i) {
+        int last = --count;
+        if (i != last) {
+            x[i] = x[last];
+            y[i] = y[last];
+            dx[i] = dx[last];
+            dy[i] = dy[last];
+            size[i] = size[last];
+            type[i] = type[last];
+        }
+    }
+
+    /** Makes exactly the first n slots live, for callers that fill the columns themselves. */
+    void setCount(int n) {
+        while (x.length < n) grow();
+        count = n;
+        if (count > peak) peak = count;
+    }
+
+    void clear() {
+        count = 0;
+    }
+
+    /** Makes this store an exact copy of {@code src}'s live entities. */
+    void copyFrom(Entities src) {
+        while (x.length < src.count) grow();
+        System.arraycopy(src.x, 0, x, 0, src.count);
+        System.arraycopy(src.y, 0, y, 0, src.count);
+        System.arraycopy(src.dx, 0, dx, 0, src.count);
+        System.arraycopy(src.dy, 0, dy, 0, src.count);
+        System.arraycopy(src.size, 0, size, 0, src.count);
+        System.arraycopy(src.type, 0, type, 0, src.count);
+        count = src.count;
+        if (count > peak) peak = count;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    /** Number of slots currently allocated. */
+    int capacity() {
+        return x.length;
+    }
+
+    /** Highest number of entities that were live at the same time. */
+    int peak() {
+        return peak;
+    }
+
+    /** How many times the pool had to grow past its capacity. */
+    int grows() {
+        return grows;
+    }
+
+    private void grow() {
+        int capacity = x.length * 2;
+        grows++;
+        x = java.util.Arrays.copyOf(x, capacity);
+        y = java.util.Arrays.copyOf(y, capacity);
+        dx = java.util.Arrays.copyOf(dx, capacity);
+        dy = java.util.Arrays.copyOf(dy, capacity);
+        size = java.util.Arrays.copyOf(size, capacity);
+        type = java.util.Arrays.copyOf(type, capacity);
+    }
+}
@@ -0,0 +1,85 @@
+package com.fishinspace;
+
+/**
+ * EventLog.java
+ *
+ * A fixed-size ring of the things that happened in a {@link World} that are
+ * worth showing or logging but leave nothing behind in its state: asteroids
+ * breaking up, shots, power-ups coming and going, ships being destroyed and
+ * the game ending. The world only appends; readers keep their own
+ * cursor (a sequence number) and catch up whenever they like, so the world
+ * neither knows nor cares whether anyone is listening. A reader that falls
+ * more than a ring behind simply misses the oldest events.
+ *
+ * Nothing here feeds back into the simulation, and it is not part of a
+ * {@link Snapshot}.
+ */
+final class EventLog {
+    // Each event has a ship slot, a position and a value whose meaning depends on the type
+    static final int ASTEROID_SPLIT = 0;    // slot credited, value: the asteroid's size
+    static final int SHIP_DESTROYED = 1;    // value unused
+    static final int BULLET_FIRED = 2;      // value: bullets in the shot
+    static final int POWERUP_COLLECTED = 3; // value: POWERUP_* type
+    static final int POWERUP_EXPIRED = 4;   // value: POWERUP_* type
+    static final int GAME_OVER = 5;         // slot whose loss ended it, value: final score
+    static final int TYPE_COUNT = 6;
+
+    private final int[] type;
+    private final int[] slot;
+    private final double[] x;
+    private final double[] y;
+    private final int[] value;
+    private final int mask;
+    private long end; // sequence number of the next event
+
+    /** {@code capacity} must be a power of two. */
+    EventLog(int capacity) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("capacity must be a power of two");
+        type = new int[capacity];
+        slot = new int[capacity];
+        x = new double[capacity];
+        y = new double[capacity];
+        value = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    void add(int eventType, int eventSlot, double ex, double ey, int eventValue) {
+        int i = (int) (end & mask);
+        type[i] = eventType;
+        slot[i] = eventSlot;
+        x[i] = ex;
+        y[i] = ey;
+        value[i] = eventValue;
+        end++;
+    }
+
+    /** The sequence number the next event will get. */
+    long end() {
+        return end;
+    }
+
+    /** The oldest sequence number still held. */
+    long start() {
+        return Math.max(0, end - type.length);
+    }
+
+    int type(long seq) {
+        return type[(int) (seq & mask)];
+    }
+
+    int slot(long seq) {
+        return slot[(int) (seq & mask)];
+    }
+
+    double x(long seq) {
+        return x[(int) (seq & mask)];
+    }
+
+    double y(long seq) {
+        return y[(int) (seq & mask)];
+    }
+
+    int value(long seq) {
+        return value[(int) (seq & mask)];
+    }
+}
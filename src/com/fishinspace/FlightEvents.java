@@ -0,0 +1,124 @@
+package com.fishinspace;
+
+/**
+ * FlightEvents.java
+ *
+ * Java Flight Recorder events for the simulation, so a recording of a
+ * stuttering game shows what was happening in the game next to the GC
+ * pauses, compilations and thread states around it. They are committed
+ * straight from {@link World} at the moment things happen: one Tick event
+ * spanning each step, and instant events for splits, shots, power-ups and
+ * the end of the game. All are in the "Fish in Space" category.
+ *
+ * Record with, for example:
+ *   java -XX:StartFlightRecording=filename=game.jfr,settings=profile com.fishinspace.Main
+ * and open game.jfr in JDK Mission Control, or print the events with
+ *   jfr print --categories "Fish in Space" game.jfr
+ *
+ * World asks {@link #enabled} before creating an event, so while nothing is
+ * recording the simulation allocates nothing for them (an Event allocated
+ * just to ask isEnabled() is not reliably optimised away) and JFR is not
+ * even started. Even in a busy game the cooldown keeps shots to a few per
+ * second per ship, so all of them are on by default.
+ */
+final class FlightEvents {
+    // --- Kinds, for enabled() ---
+    static final int TICK = 0;
+    static final int ASTEROID_SPLIT = 1;
+    static final int BULLET_FIRED = 2;
+    static final int POWER_UP = 3;
+    static final int GAME_OVER = 4;
+
+    private FlightEvents() {}
+
+    /** Whether a recording currently wants events of {@code kind}. */
+    static boolean enabled(int kind) {
+        return jdk.jfr.FlightRecorder.isInitialized() && Types.ALL[kind].isEnabled();
+    }
+
+    // Looked up only once there is a recorder, since registering a type starts JFR
+    private static final class Types {
+        static final jdk.jfr.EventType[] ALL = {
+            jdk.jfr.EventType.getEventType(Tick.class),
+            jdk.jfr.EventType.getEventType(AsteroidSplit.class),
+            jdk.jfr.EventType.getEventType(BulletFired.class),
+            jdk.jfr.EventType.getEventType(PowerUp.class),
+            jdk.jfr.EventType.getEventType(GameOver.class),
+        };
+    }
+
+    @jdk.jfr.Name("com.fishinspace.Tick")
+    @jdk.jfr.Label("Tick")
+    @jdk.jfr.Description("One step of the simulation")
+    @jdk.jfr.Category("Fish in Space")
+    @jdk.jfr.Threshold("0 ms")
+    static final class Tick extends jdk.jfr.Event {
+        @jdk.jfr.Label("Tick")
+        long tick;
+        @jdk.jfr.Label("Asteroids")
+        int asteroids;
+        @jdk.jfr.Label("Bullets")
+        int bullets;
+        @jdk.jfr.Label("Power-ups")
+        int powerUps;
+        @jdk.jfr.Label("Score")
+        int score;
+    }
+
+    @jdk.jfr.Name("com.fishinspace.AsteroidSplit")
+    @jdk.jfr.Label("Asteroid Split")
+    @jdk.jfr.Description("An asteroid was destroyed, splitting in two unless it was small")
+    @jdk.jfr.Category("Fish in Space")
+    static final class AsteroidSplit extends jdk.jfr.Event {
+        @jdk.jfr.Label("Tick")
+        long tick;
+        @jdk.jfr.Label("Size")
+        int size;
+        @jdk.jfr.Label("Ship Slot")
+        int slot;
+        @jdk.jfr.Label("X")
+        float x;
+        @jdk.jfr.Label("Y")
+        float y;
+    }
+
+    @jdk.jfr.Name("com.fishinspace.BulletFired")
+    @jdk.jfr.Label("Bullet Fired")
+    @jdk.jfr.Category("Fish in Space")
+    static final class BulletFired extends jdk.jfr.Event {
+        @jdk.jfr.Label("Tick")
+        long tick;
+        @jdk.jfr.Label("Ship Slot")
+        int slot;
+        @jdk.jfr.Label("Bullets")
+        int bullets;
+    }
+
+    @jdk.jfr.Name("com.fishinspace.PowerUp")
+    @jdk.jfr.Label("Power-up")
+    @jdk.jfr.Description("A ship collected a power-up, or one ran out")
+    @jdk.jfr.Category("Fish in Space")
+    static final class PowerUp extends jdk.jfr.Event {
+        @jdk.jfr.Label("Tick")
+        long tick;
+        @jdk.jfr.Label("Ship Slot")
+        int slot;
+        @jdk.jfr.Label("Power-up")
+        String powerUp;
+        @jdk.jfr.Label("Collected")
+        @jdk.jfr.Description("True when collected, false when it expired")
+        boolean collected;
+    }
+
+    @jdk.jfr.Name("com.fishinspace.GameOver")
+    @jdk.jfr.Label("Game Over")
+    @jdk.jfr.Category("Fish in Space")
+    static final class GameOver extends jdk.jfr.Event {
+        @jdk.jfr.Label("Tick")
+        long tick;
+        @jdk.jfr.Label("Score")
+        int score;
+        @jdk.jfr.Label("Asteroids Destroyed")
+        int asteroidsDestroyed;
+    }
+}
@@ -0,0 +1,235 @@
+package com.fishinspace;
+
+/**
+ * FrameCapture.java
+ *
+ * Writes rendered frames to numbered image files on background threads, so
+ * that capturing costs the game loop little more than drawing the frame.
+ *
+ * Frames are drawn into images from a fixed pool. A filled frame goes on a
+ * bounded queue, and a pool of encoder threads writes it out and returns its
+ * image to the pool. When every image is in use the encoders are behind, and
+ * the capture either waits for one (for offline rendering, where every frame
+ * matters) or drops the frame and counts it (for live play, where the game
+ * must not stall).
+ *
+ * A frame that cannot be written, whatever the reason, is counted as failed
+ * and its image still goes back to the pool, so a bad frame neither stops an
+ * encoder nor leaves the capture waiting for an image that never returns.
+ * The first failure is thrown again from {@link #close}.
+ *
+ * Files are frame-NNNNNN.png, or frame-NNNNNN.ppm for FORMAT_RAW: a binary
+ * PPM, an uncompressed RGB dump that is several times quicker to write than
+ * a PNG and that any video tool reads. Frames are numbered in the order they
+ * were captured; dropped frames leave no gap.
+ */
+class FrameCapture implements java.io.Closeable {
+    static final int FORMAT_PNG = 0;
+    static final int FORMAT_RAW = 1;
+
+    static final int DEFAULT_ENCODERS = 2;
+    static final int DEFAULT_QUEUE_DEPTH = 8;
+    private static final float PNG_COMPRESSION_QUALITY = 0.9f; // deflate level 1 in the JDK writer
+
+    /** A pooled image and the number it will be written under. */
+    static final class Frame {
+        final java.awt.image.BufferedImage image;
+        long index;
+
+        Frame(java.awt.image.BufferedImage image) {
+            this.image = image;
+        }
+    }
+
+    private static final Frame END = new Frame(null); // tells an encoder to stop
+
+    private final java.nio.file.Path directory;
+    private final int format;
+    private final boolean dropWhenBusy;
+    private final int width;
+    private final int height;
+    private final java.util.concurrent.ArrayBlockingQueue<Frame> free;
+    private final java.util.concurrent.ArrayBlockingQueue<Frame> pending;
+    private final Thread[] encoders;
+    private long nextIndex; // producer only
+    private volatile long dropped;
+    private final java.util.concurrent.atomic.AtomicLong written = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong failed = new java.util.concurrent.atomic.AtomicLong();
+    private volatile java.io.IOException failure;
+    private boolean closed;
+
+    /**
+     * Starts {@code encoderCount} encoder threads writing {@code width} x
+     * {@code height} frames into {@code directory}, which is created if
+     * needed. Up to {@code queueDepth} frames may wait for an encoder.
+     */
+    FrameCapture(java.nio.file.Path directory, int width, int height, int format, int encoderCount, int queueDepth,
+                 boolean dropWhenBusy) throws java.io.IOException {
+        java.nio.file.Files.createDirectories(directory);
+        this.directory = directory;
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.dropWhenBusy = dropWhenBusy;
+        // Enough images for a full queue, one per encoder and the one being drawn
+        int poolSize = queueDepth + encoderCount + 1;
+        free = new java.util.concurrent.ArrayBlockingQueue<>(poolSize);
+        pending = new java.util.concurrent.ArrayBlockingQueue<>(poolSize + encoderCount);
+        for (int i = 0; i < poolSize; i++) {
+            free.add(new Frame(new java.awt.image.BufferedImage(width, height, java.awt.image.BufferedImage.TYPE_INT_RGB)));
+        }
+        encoders = new Thread[encoderCount];
+        for (int i = 0; i < encoderCount; i++) {
+            encoders[i] = new Thread(this::encode, "frame-encoder-" + i);
+            encoders[i].setDaemon(true);
+            encoders[i].start();
+        }
+    }
+
+    static int parseFormat(String name) {
+        if (name.equalsIgnoreCase("png")) return FORMAT_PNG;
+        if (name.equalsIgnoreCase("raw") || name.equalsIgnoreCase("ppm")) return FORMAT_RAW;
+        throw new IllegalArgumentException("unknown frame format " + name + " (png or raw)");
+    }
+
+    /**
+     * A free frame to draw into, or null if the frame is dropped. Waits for
+     * one instead when not dropping. Producer thread only.
+     */
+    Frame acquire() {
+        if (closed) return null;
+        if (dropWhenBusy) {
+            Frame frame = free.poll();
+            if (frame == null) dropped = dropped + 1; // single writer
+            return frame;
+        }
+        try {
+            return free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /** Queues a frame from {@link #acquire} for writing. Never blocks: the queue holds the whole pool. */
+    void submit(Frame frame) {
+        frame.index = nextIndex++;
+        pending.add(frame);
+    }
+
+    int width() {
+        return width;
+    }
+
+    int height() {
+        return height;
+    }
+
+    long captured() {
+        return nextIndex;
+    }
+
+    long dropped() {
+        return dropped;
+    }
+
+    long written() {
+        return written.get();
+    }
+
+    long failed() {
+        return failed.get();
+    }
+
+    /** Waits for every queued frame to be written, then stops the encoders. */
+    @Override
+    public void close() throws java.io.IOException {
+        if (closed) return;
+        closed = true;
+        for (int i = 0; i < encoders.length; i++) {
+            pending.add(END);
+        }
+        try {
+            for (Thread encoder : encoders) {
+                encoder.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) throw failure;
+    }
+
+    private void encode() {
+        // One row of pixels and its RGB bytes, reused for every raw frame
+        int[] row = new int[width];
+        byte[] rgb = new byte[width * 3];
+        // Frames are mostly flat black, so the fastest deflate level still
+        // compresses them well, at a fraction of the default level's cost
+        javax.imageio.ImageWriter png = javax.imageio.ImageIO.getImageWritersByFormatName("png").next();
+        javax.imageio.ImageWriteParam pngParam = png.getDefaultWriteParam();
+        pngParam.setCompressionMode(javax.imageio.ImageWriteParam.MODE_EXPLICIT);
+        pngParam.setCompressionQuality(PNG_COMPRESSION_QUALITY);
+        while (true) {
+            Frame frame;
+            try {
+                frame = pending.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (frame == END) {
+                png.dispose();
+                return;
+            }
+            try {
+                if (format == FORMAT_PNG) {
+                    writePng(png, pngParam, frame.image, directory.resolve(fileName(frame.index, "png")));
+                } else {
+                    writeRaw(frame.image, directory.resolve(fileName(frame.index, "ppm")), row, rgb);
+                }
+                written.incrementAndGet();
+            } catch (java.io.IOException e) {
+                fail(e);
+            } catch (RuntimeException e) { // e.g. from inside ImageIO; the encoder carries on
+                fail(new java.io.IOException("could not encode frame " + frame.index, e));
+            } finally {
+                free.add(frame);
+            }
+        }
+    }
+
+    private void fail(java.io.IOException e) {
+        failed.incrementAndGet();
+        if (failure == null) failure = e;
+    }
+
+    private static void writePng(javax.imageio.ImageWriter png, javax.imageio.ImageWriteParam param,
+                                 java.awt.image.BufferedImage image, java.nio.file.Path path) throws java.io.IOException {
+        try (javax.imageio.stream.ImageOutputStream out = new javax.imageio.stream.FileImageOutputStream(path.toFile())) {
+            png.setOutput(out);
+            png.write(null, new javax.imageio.IIOImage(image, null, null), param);
+        }
+    }
+
+    private void writeRaw(java.awt.image.BufferedImage image, java.nio.file.Path path, int[] row, byte[] rgb)
+            throws java.io.IOException {
+        try (java.io.OutputStream out = new java.io.BufferedOutputStream(java.nio.file.Files.newOutputStream(path), 64 * 1024)) {
+            out.write(("P6\n" + width + " " + height + "\n255\n").getBytes(java.nio.charset.StandardCharsets.US_ASCII));
+            java.awt.image.WritableRaster raster = image.getRaster();
+            for (int y = 0; y < height; y++) {
+                // getDataElements leaves the image managed, unlike grabbing its DataBuffer
+                raster.getDataElements(0, y, width, 1, row);
+                for (int x = 0, i = 0; x < width; x++) {
+                    int p = row[x];
+                    rgb[i++] = (byte) (p >> 16);
+                    rgb[i++] = (byte) (p >> 8);
+                    rgb[i++] = (byte) p;
+                }
+                out.write(rgb);
+            }
+        }
+    }
+
+    private static String fileName(long index, String extension) {
+        return String.format("frame-%06d.%s", index, extension);
+    }
+}
@@ -0,0 +1,187 @@
+package com.fishinspace;
+
+/**
+ * GameLoop.java
+ *
+ * Dedicated game loop thread. The simulation advances in fixed steps of
+ * 1/tickRate seconds out of an accumulator, so physics is deterministic and
+ * independent of how often frames are drawn. Each frame is then drawn by
+ * active rendering into the window's BufferStrategy, with the leftover
+ * fraction of a tick passed along so the renderer can interpolate between the
+ * previous and the current state. The EDT only delivers key events.
+ *
+ * A frame that would look the same as the last one (see
+ * AsteroidDestroyer#hasNewFrame) is not drawn, except for a periodic refresh
+ * in case the window's contents were damaged.
+ *
+ * With a FrameCapture attached, each frame is drawn once into one of the
+ * capture's pooled images, which is copied to the window and then handed to
+ * the capture's encoders. If none is free the frame is drawn straight to the
+ * window as usual and the capture drops it.
+ *
+ * When pacing, each pass reports the time spent ticking and drawing to the
+ * panel's QualityGovernor, and frames are spaced by its render divisor: at
+ * the lower tiers only every second or third frame is drawn, while the ticks
+ * keep coming at the full rate. Uncapped pacing is busy by design, so it
+ * reports nothing and the tier stays where it is.
+ *
+ * The loop ends on {@link #stop}, or when its thread is interrupted; the
+ * interrupt status is kept for whoever owns the thread.
+ *
+ * Pacing modes:
+ *   PACING_SLEEP_SPIN  render at most renderRate frames per second; sleep for
+ *                      the bulk of the wait, then spin for the last stretch
+ *                      so the wake-up is not at the mercy of timer slack
+ *   PACING_UNCAPPED    render as fast as possible
+ */
+class GameLoop implements Runnable {
+    static final int PACING_SLEEP_SPIN = 0;
+    static final int PACING_UNCAPPED = 1;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long SPIN_THRESHOLD_NANOS = 2_000_000L; // spin the last 2ms
+    private static final long MAX_FRAME_NANOS = 250_000_000L;    // clamp after stalls
+    private static final long REFRESH_NANOS = 250_000_000L;      // redraw a still frame this often
+
+    private final AsteroidDestroyer panel;
+    private final long tickNanos;
+    private final long frameNanos;
+    private final int pacing;
+    private final FrameCapture capture; // null when not capturing
+    private final QualityGovernor quality;
+    private volatile boolean running;
+    private Thread thread;
+    private java.awt.image.BufferStrategy strategy;
+
+    GameLoop(AsteroidDestroyer panel, int tickRate, int renderRate, int pacing, FrameCapture capture) {
+        this.panel = panel;
+        this.capture = capture;
+        this.quality = panel.quality();
+        this.tickNanos = NANOS_PER_SECOND / tickRate;
+        this.frameNanos = renderRate > 0 ? NANOS_PER_SECOND / renderRate : 0;
+        this.pacing = pacing;
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this, "game-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        long previous = System.nanoTime();
+        long accumulator = 0;
+        long nextFrame = previous;
+        long lastRender = previous - REFRESH_NANOS;
+
+        while (running && !Thread.currentThread().isInterrupted()) {
+            long now = System.nanoTime();
+            accumulator += Math.min(now - previous, MAX_FRAME_NANOS);
+            previous = now;
+
+            int ticks = 0;
+            while (accumulator >= tickNanos) {
+                panel.tick();
+                accumulator -= tickNanos;
+                ticks++;
+            }
+            long ticked = System.nanoTime();
+
+            long rendered = ticked;
+            if (panel.hasNewFrame() || now - lastRender >= REFRESH_NANOS) {
+                render((double) accumulator / tickNanos);
+                lastRender = now;
+                rendered = System.nanoTime();
+            } else if (pacing == PACING_UNCAPPED) {
+                waitUntil(now + tickNanos - accumulator); // nothing to draw before the next tick
+                continue;
+            }
+
+            if (pacing == PACING_SLEEP_SPIN && frameNanos > 0) {
+                quality.record(ticks, ticked - now, rendered - ticked, rendered);
+                long interval = frameNanos * quality.renderDivisor();
+                nextFrame += interval;
+                long late = System.nanoTime() - nextFrame;
+                if (late > interval) {
+                    nextFrame = System.nanoTime(); // fell behind; don't try to catch up
+                } else {
+                    waitUntil(nextFrame);
+                }
+            }
+        }
+    }
+
+    private void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > SPIN_THRESHOLD_NANOS) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                // Asked to stop: leave the flag set and end the loop
+                Thread.currentThread().interrupt();
+                running = false;
+                return;
+            }
+        }
+        while (deadline - System.nanoTime() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private void render(double alpha) {
+        java.awt.Window window = javax.swing.SwingUtilities.getWindowAncestor(panel);
+        if (window == null || !window.isDisplayable()) return;
+        if (strategy == null) {
+            window.createBufferStrategy(2);
+            strategy = window.getBufferStrategy();
+        }
+
+        FrameCapture.Frame frame = capture != null ? capture.acquire() : null;
+        if (frame != null) {
+            java.awt.Graphics2D g2d = frame.image.createGraphics();
+            try {
+                draw(g2d, alpha);
+            } finally {
+                g2d.dispose();
+            }
+        }
+
+        java.awt.Point origin = javax.swing.SwingUtilities.convertPoint(panel, 0, 0, window);
+        do {
+            do {
+                java.awt.Graphics2D g2d = (java.awt.Graphics2D) strategy.getDrawGraphics();
+                try {
+                    g2d.translate(origin.x, origin.y);
+                    g2d.clipRect(0, 0, panel.getWidth(), panel.getHeight());
+                    if (frame != null) {
+                        g2d.drawImage(frame.image, 0, 0, null);
+                    } else {
+                        draw(g2d, alpha);
+                    }
+                } finally {
+                    g2d.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        java.awt.Toolkit.getDefaultToolkit().sync();
+
+        // Only once it is on screen, as the encoders may start on it at once
+        if (frame != null) capture.submit(frame);
+    }
+
+    private void draw(java.awt.Graphics2D g2d, double alpha) {
+        g2d.setColor(panel.getBackground());
+        g2d.fillRect(0, 0, panel.getWidth(), panel.getHeight());
+        panel.render(g2d, alpha);
+    }
+}
@@ -0,0 +1,361 @@
+package com.fishinspace;
+
+/**
+ * GameServer.java
+ *
+ * A headless, authoritative multiplayer server. One {@link World} with a
+ * ship slot per player is stepped at a fixed rate on a single thread; players
+ * only send inputs, and every few ticks each of them is sent the state of the
+ * world as a delta against the last state they confirmed holding (see
+ * {@link NetProtocol}).
+ *
+ * All networking is one non-blocking UDP channel waited on with a Selector,
+ * so the thread sleeps between ticks until a packet or the next tick is due.
+ * A player's inputs are queued and applied one per tick; when the queue runs
+ * dry the last held keys carry on, without firing. Destroyed ships respawn,
+ * so the game never ends. A player that sends nothing for five seconds is
+ * dropped.
+ *
+ * Every five seconds a line of stats is printed: players, tick time and
+ * traffic.
+ *
+ * Run: java -Djava.awt.headless=true com.fishinspace.GameServer [--port=N]
+ *          [--tick-rate=Hz] [--world=WxH] [--asteroids=N] [--max-players=N (1-255)]
+ *          [--snapshot-every=N] [--seed=N]
+ */
+public class GameServer implements java.io.Closeable {
+
+    // --- Defaults ---
+    static final int DEFAULT_MAX_PLAYERS = 8;
+    static final int DEFAULT_SNAPSHOT_INTERVAL = 2; // ticks between states sent
+
+    private static final int INPUT_BACKLOG = 8; // queued inputs per player before the oldest are dropped
+    private static final long STATS_INTERVAL_NANOS = 5_000_000_000L;
+
+    /** One connected player. */
+    private static final class Client {
+        final java.net.SocketAddress address;
+        final int slot;
+        long lastHeard;
+        final int[] queue = new int[INPUT_BACKLOG];
+        final int[] queueSeq = new int[INPUT_BACKLOG];
+        int queueHead, queueCount;
+        int newestSeq;     // newest input received
+        int appliedSeq;    // newest input applied to the world
+        int heldInputs;    // repeated when the queue is empty
+        int ackedTick = -1; // newest frame the player holds
+
+        Client(java.net.SocketAddress address, int slot) {
+            this.address = address;
+            this.slot = slot;
+        }
+
+        void enqueue(int seq, int inputs) {
+            if (queueCount == INPUT_BACKLOG) {
+                queueHead = (queueHead + 1) % INPUT_BACKLOG;
+                queueCount--;
+            }
+            int i = (queueHead + queueCount) % INPUT_BACKLOG;
+            queue[i] = inputs;
+            queueSeq[i] = seq;
+            queueCount++;
+        }
+
+        int nextInputs() {
+            if (queueCount == 0) return heldInputs & ~World.INPUT_FIRE;
+            int inputs = queue[queueHead];
+            appliedSeq = queueSeq[queueHead];
+            queueHead = (queueHead + 1) % INPUT_BACKLOG;
+            queueCount--;
+            heldInputs = inputs;
+            return inputs;
+        }
+    }
+
+    private final World world;
+    private final int snapshotInterval;
+    private final java.nio.channels.DatagramChannel channel;
+    private final java.nio.channels.Selector selector;
+    private final Client[] clients; // by ship slot
+    private final java.util.HashMap<java.net.SocketAddress, Client> byAddress = new java.util.HashMap<>();
+    private final int[] inputs;
+    private int playerCount;
+
+    private final java.nio.ByteBuffer in = java.nio.ByteBuffer.allocate(NetProtocol.MAX_PACKET);
+    private final java.nio.ByteBuffer out = java.nio.ByteBuffer.allocate(NetProtocol.MAX_PACKET);
+    private final NetProtocol.Frames frames = new NetProtocol.Frames();
+    // Deltas of the current frame by base slot (0 for none), shared by players on the same base
+    private final java.nio.ByteBuffer[] deltas = new java.nio.ByteBuffer[NetProtocol.FRAME_HISTORY + 1];
+    private final int[] deltaLengths = new int[NetProtocol.FRAME_HISTORY + 1];
+    private final int[] deltaTicks = new int[NetProtocol.FRAME_HISTORY + 1];
+
+    private volatile boolean running;
+
+    // --- Stats (since the last report) ---
+    private long statTicks, statTickNanos, statMaxTickNanos;
+    private long statPacketsIn, statStatesOut, statBytesOut, statOversized;
+    private long statFrames, statFrameBytes;
+
+    GameServer(World world, int port, int snapshotInterval) throws java.io.IOException {
+        if (world.ships.length > NetProtocol.MAX_SHIPS) {
+            throw new IllegalArgumentException("at most " + NetProtocol.MAX_SHIPS + " ship slots, not " + world.ships.length);
+        }
+        this.world = world;
+        this.snapshotInterval = snapshotInterval;
+        clients = new Client[world.ships.length];
+        inputs = new int[world.ships.length];
+        java.util.Arrays.fill(deltaTicks, -1);
+        channel = java.nio.channels.DatagramChannel.open();
+        channel.bind(new java.net.InetSocketAddress(port));
+        channel.configureBlocking(false);
+        selector = java.nio.channels.Selector.open();
+        channel.register(selector, java.nio.channels.SelectionKey.OP_READ);
+    }
+
+    public static void main(String[] args) throws java.io.IOException {
+        int port = NetProtocol.DEFAULT_PORT;
+        int tickRate = World.BASE_TICK_RATE;
+        int worldWidth = World.WIDTH;
+        int worldHeight = World.HEIGHT;
+        int asteroids = World.ASTEROID_INIT_COUNT;
+        int maxPlayers = DEFAULT_MAX_PLAYERS;
+        int snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+        Long seed = null;
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) port = Integer.parseInt(arg.substring("--port=".length()));
+            else if (arg.startsWith("--tick-rate=")) tickRate = Integer.parseInt(arg.substring("--tick-rate=".length()));
+            else if (arg.startsWith("--world=")) {
+                String[] size = arg.substring("--world=".length()).split("x");
+                worldWidth = Integer.parseInt(size[0]);
+                worldHeight = Integer.parseInt(size[1]);
+            }
+            else if (arg.startsWith("--asteroids=")) asteroids = Integer.parseInt(arg.substring("--asteroids=".length()));
+            else if (arg.startsWith("--max-players=")) maxPlayers = Integer.parseInt(arg.substring("--max-players=".length()));
+            else if (arg.startsWith("--snapshot-every=")) snapshotInterval = Integer.parseInt(arg.substring("--snapshot-every=".length()));
+            else if (arg.startsWith("--seed=")) seed = Long.parseLong(arg.substring("--seed=".length()));
+        }
+
+        if (maxPlayers < 1 || maxPlayers > NetProtocol.MAX_SHIPS) {
+            System.err.println("--max-players must be from 1 to " + NetProtocol.MAX_SHIPS);
+            System.exit(1);
+        }
+        World world = new World(seed != null ? seed : World.randomSeed(), worldWidth, worldHeight, maxPlayers);
+        world.setTickRate(tickRate);
+        world.asteroidInitCount = asteroids;
+        world.respawnShips = true;
+        world.reset();
+        world.removeShip(0); // slots are filled as players join
+
+        GameServer server = new GameServer(world, port, snapshotInterval);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("Listening on UDP port " + port + ": " + worldWidth + "x" + worldHeight + " field, "
+                + maxPlayers + " players, " + tickRate + " Hz, a state every " + snapshotInterval + " ticks");
+        server.run();
+    }
+
+    /** Runs the tick loop on this thread until {@link #close}. */
+    void run() throws java.io.IOException {
+        running = true;
+        long tickNanos = 1_000_000_000L / world.getTickRate();
+        long nextTick = System.nanoTime();
+        long nextStats = nextTick + STATS_INTERVAL_NANOS;
+        try {
+            while (running) {
+                long wait = nextTick - System.nanoTime();
+                if (wait > 0) {
+                    // Sleep until a packet arrives or the tick is due
+                    selector.select(Math.max(1, wait / 1_000_000));
+                    selector.selectedKeys().clear();
+                    receive();
+                    continue;
+                }
+                receive();
+                long start = System.nanoTime();
+                tick(start);
+                long elapsed = System.nanoTime() - start;
+                statTicks++;
+                statTickNanos += elapsed;
+                statMaxTickNanos = Math.max(statMaxTickNanos, elapsed);
+
+                nextTick += tickNanos;
+                // After a long stall, carry on from now rather than racing to catch up
+                if (System.nanoTime() - nextTick > 1_000_000_000L) nextTick = System.nanoTime();
+                if (start >= nextStats) {
+                    printStats();
+                    nextStats = start + STATS_INTERVAL_NANOS;
+                }
+            }
+        } finally {
+            for (Client c : clients) {
+                if (c != null) sendBye(c.address);
+            }
+            selector.close();
+            channel.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    int playerCount() {
+        return playerCount;
+    }
+
+    private void tick(long now) throws java.io.IOException {
+        for (Client c : clients) {
+            if (c != null && now - c.lastHeard > NetProtocol.TIMEOUT_NANOS) disconnect(c);
+        }
+        for (int s = 0; s < clients.length; s++) {
+            inputs[s] = clients[s] != null ? clients[s].nextInputs() : 0;
+        }
+        world.step(inputs);
+        if (world.tick % snapshotInterval == 0 && playerCount > 0) sendStates();
+    }
+
+    private void sendStates() throws java.io.IOException {
+        int tick = (int) world.tick;
+        java.nio.ByteBuffer frame = frames.claim(NetProtocol.frameSize(world));
+        int length = NetProtocol.writeFrame(world, frame);
+        frames.commit(tick, length);
+        statFrames++;
+        statFrameBytes += length;
+
+        for (Client c : clients) {
+            if (c == null) continue;
+            int baseSlot = c.ackedTick >= 0 ? frames.find(c.ackedTick) : -1;
+            int key = baseSlot + 1;
+            if (deltaTicks[key] != tick) {
+                java.nio.ByteBuffer base = baseSlot >= 0 ? frames.buffer(baseSlot) : null;
+                int baseLength = baseSlot >= 0 ? frames.length(baseSlot) : 0;
+                deltas[key] = Snapshot.ensureCapacity(deltas[key], Snapshot.maxDeltaSize(length));
+                deltaLengths[key] = Snapshot.encodeDelta(base, baseLength, frame, length, deltas[key]);
+                deltaTicks[key] = tick;
+            }
+            if (NetProtocol.STATE_HEADER_SIZE + deltaLengths[key] > NetProtocol.MAX_PACKET) {
+                statOversized++;
+                continue;
+            }
+            out.clear();
+            out.put(NetProtocol.PACKET_STATE)
+                    .putInt(tick)
+                    .putInt(baseSlot >= 0 ? c.ackedTick : -1)
+                    .putInt(c.appliedSeq)
+                    .put(deltas[key].array(), 0, deltaLengths[key]);
+            out.flip();
+            statBytesOut += out.remaining();
+            statStatesOut++;
+            channel.send(out, c.address);
+        }
+    }
+
+    private void receive() throws java.io.IOException {
+        while (true) {
+            in.clear();
+            java.net.SocketAddress from = channel.receive(in);
+            if (from == null) return;
+            in.flip();
+            statPacketsIn++;
+            Client c = byAddress.get(from);
+            try {
+                byte type = in.get();
+                if (type == NetProtocol.PACKET_HELLO) {
+                    c = hello(from, c, in.get());
+                } else if (c != null && type == NetProtocol.PACKET_INPUT) {
+                    input(c);
+                } else if (c != null && type == NetProtocol.PACKET_BYE) {
+                    disconnect(c);
+                    continue;
+                }
+            } catch (java.nio.BufferUnderflowException e) {
+                continue; // truncated packet; ignore it
+            }
+            if (c != null) c.lastHeard = System.nanoTime();
+        }
+    }
+
+    private Client hello(java.net.SocketAddress from, Client c, int version) throws java.io.IOException {
+        if (version != NetProtocol.VERSION) {
+            reject(from, NetProtocol.REJECT_VERSION);
+            return null;
+        }
+        if (c == null) {
+            int slot = world.addShip();
+            if (slot < 0) {
+                reject(from, NetProtocol.REJECT_FULL);
+                return null;
+            }
+            c = new Client(from, slot);
+            clients[slot] = c;
+            byAddress.put(from, c);
+            playerCount++;
+            System.out.println("Player " + slot + " joined from " + from);
+        }
+        // A repeated HELLO means our WELCOME was lost; send it again
+        out.clear();
+        out.put(NetProtocol.PACKET_WELCOME)
+                .put((byte) c.slot)
+                .putShort((short) world.getTickRate())
+                .putInt(world.width)
+                .putInt(world.height)
+                .put((byte) world.ships.length)
+                .put((byte) snapshotInterval);
+        out.flip();
+        channel.send(out, from);
+        return c;
+    }
+
+    private void input(Client c) {
+        int ackedTick = in.getInt();
+        int newestSeq = in.getInt();
+        int n = in.get();
+        if (ackedTick > c.ackedTick) c.ackedTick = ackedTick;
+        for (int k = 0; k < n; k++) {
+            int seq = newestSeq - n + 1 + k;
+            int mask = in.get() & (2 * World.INPUT_FIRE - 1); // ignore unknown bits
+            if (seq > c.newestSeq) {
+                c.enqueue(seq, mask);
+                c.newestSeq = seq;
+            }
+        }
+    }
+
+    private void disconnect(Client c) throws java.io.IOException {
+        world.removeShip(c.slot);
+        clients[c.slot] = null;
+        byAddress.remove(c.address);
+        playerCount--;
+        System.out.println("Player " + c.slot + " left");
+    }
+
+    private void reject(java.net.SocketAddress to, byte reason) throws java.io.IOException {
+        out.clear();
+        out.put(NetProtocol.PACKET_REJECT).put(reason);
+        out.flip();
+        channel.send(out, to);
+    }
+
+    private void sendBye(java.net.SocketAddress to) throws java.io.IOException {
+        out.clear();
+        out.put(NetProtocol.PACKET_BYE);
+        out.flip();
+        channel.send(out, to);
+    }
+
+    private void printStats() {
+        double seconds = STATS_INTERVAL_NANOS / 1e9;
+        System.out.printf("tick=%d players=%d tick(us) mean=%.1f max=%.1f  in=%.0f pkt/s  out=%.0f states/s %.1f KB/s"
+                        + " (%.0f B/state, %.0f B/frame)%s%n",
+                world.tick, playerCount,
+                statTicks > 0 ? statTickNanos / 1e3 / statTicks : 0.0, statMaxTickNanos / 1e3,
+                statPacketsIn / seconds, statStatesOut / seconds, statBytesOut / 1024.0 / seconds,
+                statStatesOut > 0 ? (double) statBytesOut / statStatesOut : 0.0,
+                statFrames > 0 ? (double) statFrameBytes / statFrames : 0.0,
+                statOversized > 0 ? "  " + statOversized + " states too large to send" : "");
+        statTicks = statTickNanos = statMaxTickNanos = 0;
+        statPacketsIn = statStatesOut = statBytesOut = statOversized = 0;
+        statFrames = statFrameBytes = 0;
+    }
+}
@@ -0,0 +1,129 @@
+package com.fishinspace;
+
+/**
+ * HeadlessRunner.java
+ *
+ * Steps a {@link World} without any display, as fast as the CPU allows, and
+ * reports the achieved tick rate. Useful for balancing and regression runs on
+ * machines without an X server.
+ *
+ * With --alloc-check a second world set up the same way is first stepped
+ * for ALLOC_WARMUP_TICKS, so the JIT has compiled every path the run takes
+ * (game overs and resets included) before anything is counted; then the
+ * bytes allocated by this thread over the whole run are reported. A non-zero
+ * count fails the run with exit status 1, which is how the allocation-free
+ * tick is kept honest (AllocationTest checks the same under mvn test). The
+ * warm-up leaves the run itself unchanged, so the result does not depend on
+ * the tick count chosen.
+ *
+ * --threads spreads each tick over worker threads (see World#setParallelism)
+ * and --seed fixes the world, so runs at different thread counts can be
+ * compared; the reported total score must not change. Likewise --simd=off
+ * swaps the vector kernels for plain loops (see Kernels); they need the
+ * Maven-built jar and --add-modules jdk.incubator.vector on the java
+ * command line.
+ *
+ * --endless plays in endless space (see SectorStreamer) and, instead of
+ * spinning on the spot, flies straight on through it, turning now and then,
+ * so the run shows what streaming costs however far the ship gets. Frozen
+ * sectors are new records in the cache, so such a run does allocate.
+ *
+ * Run: java -Djava.awt.headless=true com.fishinspace.HeadlessRunner [ticks] [--alloc-check]
+ *          [--seed=N] [--threads=N] [--simd=on|off] [--endless] [--sector-cache=KB]
+ */
+public class HeadlessRunner {
+    // Enough for C2 to have compiled the tick; interpreted and C1 code does not scalar-replace
+    static final long ALLOC_WARMUP_TICKS = 1_000_000L;
+
+    public static void main(String[] args) {
+        long ticks = 1_000_000L;
+        boolean allocCheck = false;
+        Long seed = null;
+        int parallelism = 1;
+        boolean vectorized = true;
+        boolean endless = false;
+        long sectorCacheBytes = SectorStreamer.DEFAULT_CACHE_BYTES;
+        for (String arg : args) {
+            if (arg.equals("--alloc-check")) allocCheck = true;
+            else if (arg.startsWith("--seed=")) seed = Long.parseLong(arg.substring("--seed=".length()));
+            else if (arg.startsWith("--threads=")) parallelism = Integer.parseInt(arg.substring("--threads=".length()));
+            else if (arg.startsWith("--simd=")) vectorized = !arg.substring("--simd=".length()).equals("off");
+            else if (arg.equals("--endless")) endless = true;
+            else if (arg.startsWith("--sector-cache=")) sectorCacheBytes = Long.parseLong(arg.substring("--sector-cache=".length())) * 1024;
+            else ticks = Long.parseLong(arg);
+        }
+
+        long worldSeed = seed != null ? seed : World.randomSeed();
+        World world = newWorld(worldSeed, endless, sectorCacheBytes, parallelism, vectorized);
+        Tally tally = new Tally();
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        if (allocCheck) {
+            // The same method as the run below, so the run starts in compiled code
+            World warm = newWorld(worldSeed, endless, sectorCacheBytes, parallelism, vectorized);
+            run(warm, ALLOC_WARMUP_TICKS, endless, new Tally());
+            warm.setParallelism(1); // stops its workers
+        }
+
+        // The clock is read first: linking a native method on its first call allocates
+        long start = System.nanoTime();
+        long allocatedBefore = allocCheck ? threads.getThreadAllocatedBytes(threadId) : 0;
+        run(world, ticks, endless, tally);
+        long allocated = allocCheck ? threads.getThreadAllocatedBytes(threadId) - allocatedBefore : 0;
+        long elapsed = System.nanoTime() - start;
+        int games = tally.games + 1;
+        long totalScore = tally.score + world.getScore();
+
+        double seconds = elapsed / 1e9;
+        System.out.printf("ticks=%d games=%d totalScore=%d time=%.3fs rate=%.0f ticks/s%n",
+                ticks, games, totalScore, seconds, ticks / seconds);
+        System.out.println("pools: " + world.poolReport() + " kernels: " + world.getKernelName());
+        if (endless) System.out.println("streaming: " + world.streamer().report());
+        if (allocCheck) {
+            System.out.printf("allocated=%d bytes over %d ticks after %d warm-up ticks%n", allocated, ticks,
+                    ALLOC_WARMUP_TICKS);
+            if (allocated > 0) System.exit(1);
+        }
+    }
+
+    private static World newWorld(long seed, boolean endless, long sectorCacheBytes, int parallelism, boolean vectorized) {
+        World world = endless ? SectorStreamer.endlessWorld(seed, sectorCacheBytes) : new World(seed);
+        world.setParallelism(parallelism);
+        world.setVectorized(vectorized);
+        return world;
+    }
+
+    /** Games finished during a run and their total score. */
+    private static final class Tally {
+        int games;
+        long score;
+    }
+
+    /** Steps {@code world} for {@code ticks} ticks, adding the games finished to {@code tally}. */
+    static void run(World world, long ticks, boolean endless, Tally tally) {
+        for (long t = 0; t < ticks; t++) {
+            int finished = tick(world, t, endless);
+            if (finished >= 0) {
+                tally.score += finished;
+                tally.games++;
+            }
+        }
+    }
+
+    /**
+     * Steps tick {@code t} of the scripted player: spin and keep firing, or in
+     * endless space fly and fire, turning a little every ten seconds. Restarts
+     * the game once the ship is destroyed and returns its score, otherwise -1.
+     */
+    private static int tick(World world, long t, boolean endless) {
+        int inputs = endless ? World.INPUT_THRUST | World.INPUT_FIRE | (t % 600 < 30 ? World.INPUT_LEFT : 0)
+                : World.INPUT_LEFT | World.INPUT_FIRE;
+        world.step(inputs);
+        if (!world.isGameOver()) return -1;
+        int score = world.getScore();
+        world.reset();
+        return score;
+    }
+}
@@ -0,0 +1,40 @@
+package com.fishinspace;
+
+/**
+ * HighScores.java
+ *
+ * Prints what a {@link ScoreStore} holds: the best sessions of everyone, or
+ * with --player the most recent sessions of one player, with how long each
+ * game lasted and which power-ups it collected.
+ *
+ * Run: java com.fishinspace.HighScores [--scores=DIR] [--top=N] [--player=NAME]
+ */
+public class HighScores {
+    public static void main(String[] args) throws java.io.IOException {
+        String scoresPath = java.nio.file.Paths.get(System.getProperty("user.home"), ".fishinspace").toString();
+        int top = 10;
+        String player = null;
+        for (String arg : args) {
+            if (arg.startsWith("--scores=")) scoresPath = arg.substring("--scores=".length());
+            else if (arg.startsWith("--top=")) top = Integer.parseInt(arg.substring("--top=".length()));
+            else if (arg.startsWith("--player=")) player = arg.substring("--player=".length());
+        }
+
+        try (ScoreStore store = ScoreStore.open(java.nio.file.Paths.get(scoresPath))) {
+            java.util.List<ScoreStore.Session> sessions = player != null ? store.forPlayer(player, top) : store.top(top);
+            System.out.printf("%d sessions in %s; %s%n", store.size(), scoresPath,
+                    player != null ? "latest of " + player : "best " + top);
+            System.out.printf("%4s  %-16s %8s %8s %9s  %-19s %s%n", "#", "player", "score", "time", "asteroids",
+                    "ended", "power-ups (A/D/B/R)");
+            java.text.SimpleDateFormat date = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+            for (int i = 0; i < sessions.size(); i++) {
+                ScoreStore.Session s = sessions.get(i);
+                int[] p = s.powerUpsCollected;
+                System.out.printf("%4d  %-16s %8d %7.0fs %9d  %-19s %d/%d/%d/%d%n", i + 1, s.player, s.score,
+                        s.seconds(), s.asteroidsDestroyed, date.format(new java.util.Date(s.endedAt)),
+                        p[World.POWERUP_AIM_BEAM], p[World.POWERUP_DOUBLE_SHOT], p[World.POWERUP_BOOSTER],
+                        p[World.POWERUP_RAPID_FIRE]);
+            }
+        }
+    }
+}
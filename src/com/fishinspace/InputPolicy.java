@@ -0,0 +1,70 @@
+package com.fishinspace;
+
+/**
+ * InputPolicy.java
+ *
+ * Chooses the INPUT_* mask for the next tick of a world, in place of a
+ * player. Policies are stateful and belong to a single game; anything random
+ * must come from the policy's own seeded generator so runs stay reproducible.
+ */
+interface InputPolicy {
+
+    int inputs(World world);
+
+    /** Holds a random combination of inputs for a random number of ticks, firing whenever it can. */
+    static InputPolicy random(long seed) {
+        Rng rng = new Rng(seed);
+        return new InputPolicy() {
+            private int held;
+            private int remaining;
+
+            @Override
+            public int inputs(World world) {
+                if (remaining-- <= 0) {
+                    held = rng.nextInt(World.INPUT_FIRE); // any mix of rotate/thrust/brake
+                    remaining = 5 + rng.nextInt(40);
+                }
+                return held | World.INPUT_FIRE;
+            }
+        };
+    }
+
+    /**
+     * Cycles through a fixed script. Each step is a run of ticks written as
+     * letters for the held inputs (L, R, T, B, F) and an optional tick count,
+     * e.g. "LF*30,TF*10,F*5"; a step of "-" holds nothing.
+     */
+    static InputPolicy scripted(String script) {
+        String[] steps = script.split(",");
+        int[] masks = new int[steps.length];
+        int[] lengths = new int[steps.length];
+        for (int i = 0; i < steps.length; i++) {
+            String step = steps[i].trim();
+            int star = step.indexOf('*');
+            String keys = star >= 0 ? step.substring(0, star) : step;
+            lengths[i] = star >= 0 ? Integer.parseInt(step.substring(star + 1)) : 1;
+            for (char c : keys.toCharArray()) {
+                if (c == 'L') masks[i] |= World.INPUT_LEFT;
+                else if (c == 'R') masks[i] |= World.INPUT_RIGHT;
+                else if (c == 'T') masks[i] |= World.INPUT_THRUST;
+                else if (c == 'B') masks[i] |= World.INPUT_BRAKE;
+                else if (c == 'F') masks[i] |= World.INPUT_FIRE;
+                else if (c != '-') throw new IllegalArgumentException("unknown input '" + c + "' in " + step);
+            }
+        }
+        return new InputPolicy() {
+            private int index;
+            private int remaining = lengths[0];
+
+            @Override
+            public int inputs(World world) {
+                while (remaining <= 0) {
+                    index = (index + 1) % masks.length;
+                    remaining = lengths[index];
+                }
+                remaining--;
+                return masks[index];
+            }
+        };
+    }
+}
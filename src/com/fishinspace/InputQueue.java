@@ -0,0 +1,80 @@
+package com.fishinspace;
+
+/**
+ * InputQueue.java
+ *
+ * A bounded, lock-free single-producer/single-consumer ring of timestamped
+ * key events, carrying input from the EDT to the thread that steps the
+ * world. The EDT offers each key press and release as it happens; the loop
+ * drains the lot once per tick, so a key pressed and released between two
+ * ticks still reaches the simulation, and the time each event waited can be
+ * measured.
+ *
+ * An event is an INPUT_* mask, with {@link #RELEASED} set for a key release.
+ * The producer publishes a slot by advancing the tail with release
+ * semantics and the consumer frees slots the same way with the head, so
+ * neither side ever blocks. When the ring is full, new events are dropped
+ * and counted; at keyboard rates that takes a loop stalled for seconds. A
+ * dropped release would leave its key held, so a consumer that sees
+ * {@link #dropped()} move should re-read the held keys from the producer's
+ * side rather than trust the events alone.
+ */
+class InputQueue {
+    static final int RELEASED = 1 << 8;
+    static final int DEFAULT_CAPACITY = 256;
+
+    private final int[] events;
+    private final long[] times;
+    private final int mask;
+
+    private final java.util.concurrent.atomic.AtomicLong head = new java.util.concurrent.atomic.AtomicLong(); // next to read
+    private final java.util.concurrent.atomic.AtomicLong tail = new java.util.concurrent.atomic.AtomicLong(); // next to write
+    private long cachedHead; // the producer's last look at head
+    private volatile long dropped;
+
+    /** A queue holding {@code capacity} events, rounded up to a power of two. */
+    InputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        events = new int[size];
+        times = new long[size];
+        mask = size - 1;
+    }
+
+    /** Producer only. Returns false, dropping the event, if the queue is full. */
+    boolean offer(int event, long nanos) {
+        long t = tail.getPlain();
+        if (t - cachedHead >= events.length) {
+            cachedHead = head.getAcquire();
+            if (t - cachedHead >= events.length) {
+                dropped = dropped + 1; // single writer
+                return false;
+            }
+        }
+        int i = (int) t & mask;
+        events[i] = event;
+        times[i] = nanos;
+        tail.setRelease(t + 1);
+        return true;
+    }
+
+    /**
+     * Consumer only. Moves up to {@code outEvents.length} events, oldest
+     * first, into the given arrays and returns how many.
+     */
+    int drain(int[] outEvents, long[] outTimes) {
+        long h = head.getPlain();
+        int n = (int) Math.min(tail.getAcquire() - h, outEvents.length);
+        for (int k = 0; k < n; k++) {
+            int i = (int) (h + k) & mask;
+            outEvents[k] = events[i];
+            outTimes[k] = times[i];
+        }
+        head.setRelease(h + n);
+        return n;
+    }
+
+    /** Events dropped because the queue was full. */
+    long dropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,159 @@
+package com.fishinspace;
+
+/**
+ * Kernels.java
+ *
+ * Batch operations over the structure-of-arrays entity columns (see
+ * {@link Entities}): integrating positions, wrapping them around the field,
+ * flagging those that left it, and squared distances from a point. Each works
+ * on a range [from, to) of the columns, or on the ids a grid query found, in
+ * one call instead of entity by entity.
+ *
+ * {@link #SCALAR} is plain Java. {@code VectorKernels} (in src-vector/, built
+ * separately) does the same with the incubating Vector API, several entities
+ * per instruction; it is only available when it was built and the JVM was
+ * started with {@code --add-modules jdk.incubator.vector}, and
+ * {@link #preferred()} falls back to the scalar kernels otherwise. Both give
+ * bit-identical results (no fused multiply-adds), so the choice never changes
+ * a game.
+ *
+ * -Dfishinspace.simd=false forces the scalar kernels.
+ */
+interface Kernels {
+
+    /** x += dx * dt and y += dy * dt over [from, to). */
+    void move(double[] x, double[] y, double[] dx, double[] dy, int from, int to, double dt);
+
+    /**
+     * Moves as {@link #move} does, then wraps: a coordinate below 0 goes to
+     * the far edge and one past the far edge goes to 0.
+     */
+    void moveWrap(double[] x, double[] y, double[] dx, double[] dy, int from, int to, double dt,
+                  double width, double height);
+
+    /**
+     * Sets {@code outside[i]} for every i in [from, to) whose point lies
+     * outside [0, width] x [0, height], and clears it for the rest. Returns
+     * the number set.
+     */
+    int flagOutside(double[] x, double[] y, int from, int to, double width, double height, boolean[] outside);
+
+    /**
+     * {@code out[i]} = squared distance from (px, py) to point i over
+     * [from, to), measured the shorter way round a wrapped width x height
+     * field: an axis gap over half the field is taken across the edge.
+     */
+    void distancesSquared(double px, double py, double[] x, double[] y, int from, int to,
+                          double width, double height, double[] out);
+
+    /**
+     * {@code out[k]} = straight-line squared distance from (px, py) to point
+     * {@code ids[k]}, for k in [0, count): the narrow phase over the ids a
+     * {@link SpatialGrid} query found.
+     */
+    void distancesSquared(double px, double py, double[] x, double[] y, int[] ids, int count, double[] out);
+
+    String name();
+
+    Kernels SCALAR = new Kernels() {
+        @Override
+        public void move(double[] x, double[] y, double[] dx, double[] dy, int from, int to, double dt) {
+            for (int i = from; i < to; i++) {
+                x[i] += dx[i] * dt;
+                y[i] += dy[i] * dt;
+            }
+        }
+
+        @Override
+        public void moveWrap(double[] x, double[] y, double[] dx, double[] dy, int from, int to, double dt,
+                             double width, double height) {
+            for (int i = from; i < to; i++) {
+                x[i] += dx[i] * dt;
+                y[i] += dy[i] * dt;
+                // Wrap coordinates
+                if (x[i] < 0) x[i] = width;
+                else if (x[i] > width) x[i] = 0;
+                if (y[i] < 0) y[i] = height;
+                else if (y[i] > height) y[i] = 0;
+            }
+        }
+
+        @Override
+        public int flagOutside(double[] x, double[] y, int from, int to, double width, double height, boolean[] outside) {
+            int n = 0;
+            for (int i = from; i < to; i++) {
+                boolean out = x[i] < 0 || x[i] > width || y[i] < 0 || y[i] > height;
+                outside[i] = out;
+                if (out) n++;
+            }
+            return n;
+        }
+
+        @Override
+        public void distancesSquared(double px, double py, double[] x, double[] y, int from, int to,
+                                     double width, double height, double[] out) {
+            double halfWidth = width / 2.0;
+            double halfHeight = height / 2.0;
+            for (int i = from; i < to; i++) {
+                double dx = px - x[i];
+                double dy = py - y[i];
+                if (dx > halfWidth) dx -= width;
+                else if (dx < -halfWidth) dx += width;
+                if (dy > halfHeight) dy -= height;
+                else if (dy < -halfHeight) dy += height;
+                out[i] = dx * dx + dy * dy;
+            }
+        }
+
+        @Override
+        public void distancesSquared(double px, double py, double[] x, double[] y, int[] ids, int count, double[] out) {
+            for (int k = 0; k < count; k++) {
+                int i = ids[k];
+                double dx = px - x[i];
+                double dy = py - y[i];
+                out[k] = dx * dx + dy * dy;
+            }
+        }
+
+        @Override
+        public String name() {
+            return "scalar";
+        }
+    };
+
+    /** The vector kernels, or null if the Vector API is not available in this JVM. */
+    static Kernels vector() {
+        return Holder.VECTOR;
+    }
+
+    /** The vector kernels where available and not switched off, otherwise the scalar ones. */
+    static Kernels preferred() {
+        return Holder.PREFERRED;
+    }
+
+    /** Looks the vector kernels up once, on first use. */
+    final class Holder {
+        static final Kernels VECTOR = loadVector();
+        static final Kernels PREFERRED =
+                VECTOR != null && !"false".equals(System.getProperty("fishinspace.simd")) ? VECTOR : SCALAR;
+
+        private Holder() {
+        }
+
+        private static Kernels loadVector() {
+            Class<?> type;
+            try {
+                // By name, so nothing else links against jdk.incubator.vector
+                type = Class.forName("com.fishinspace.VectorKernels");
+            } catch (ClassNotFoundException | NoClassDefFoundError e) {
+                return null; // not built, or the module was not added
+            }
+            try {
+                if (!(Boolean) type.getDeclaredMethod("available").invoke(null)) return null; // no usable vector shape
+                return (Kernels) type.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("cannot set up the vector kernels", e); // a bug, not a missing feature
+            }
+        }
+    }
+}
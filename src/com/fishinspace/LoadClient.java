@@ -0,0 +1,83 @@
+package com.fishinspace;
+
+/**
+ * LoadClient.java
+ *
+ * Connects many headless players to a {@link GameServer} and drives them
+ * with random inputs, to see how a server copes with a full house. All of
+ * them share one thread and one Selector, the way the server itself works.
+ *
+ * At the end it reports, per player, the states received, the traffic, how
+ * many states could not be decoded, and how far prediction was off on
+ * average when the server's answer arrived.
+ *
+ * Run: java -Djava.awt.headless=true com.fishinspace.LoadClient
+ *          [--host=HOST] [--port=N] [--clients=N] [--seconds=N] [--seed=N]
+ */
+public class LoadClient {
+    public static void main(String[] args) throws java.io.IOException {
+        String host = "127.0.0.1";
+        int port = NetProtocol.DEFAULT_PORT;
+        int count = 8;
+        int seconds = 10;
+        long seed = 1L;
+        for (String arg : args) {
+            if (arg.startsWith("--host=")) host = arg.substring("--host=".length());
+            else if (arg.startsWith("--port=")) port = Integer.parseInt(arg.substring("--port=".length()));
+            else if (arg.startsWith("--clients=")) count = Integer.parseInt(arg.substring("--clients=".length()));
+            else if (arg.startsWith("--seconds=")) seconds = Integer.parseInt(arg.substring("--seconds=".length()));
+            else if (arg.startsWith("--seed=")) seed = Long.parseLong(arg.substring("--seed=".length()));
+        }
+
+        java.net.InetSocketAddress server = new java.net.InetSocketAddress(host, port);
+        NetClient[] clients = new NetClient[count];
+        InputPolicy[] policies = new InputPolicy[count];
+        java.nio.channels.Selector selector = java.nio.channels.Selector.open();
+        try {
+            for (int i = 0; i < count; i++) {
+                clients[i] = NetClient.connect(server, 5000);
+                clients[i].channel().register(selector, java.nio.channels.SelectionKey.OP_READ, clients[i]);
+                policies[i] = InputPolicy.random(seed + i);
+            }
+            System.out.println(count + " players connected to " + server);
+
+            int tickRate = clients[0].world().getTickRate();
+            long tickNanos = 1_000_000_000L / tickRate;
+            long ticks = (long) seconds * tickRate;
+            long start = System.nanoTime();
+            long nextTick = start;
+            for (long t = 0; t < ticks; t++) {
+                long wait = nextTick - System.nanoTime();
+                if (wait > 0) selector.select(Math.max(1, wait / 1_000_000));
+                else selector.selectNow();
+                for (java.nio.channels.SelectionKey key : selector.selectedKeys()) {
+                    ((NetClient) key.attachment()).poll();
+                }
+                selector.selectedKeys().clear();
+                for (int i = 0; i < count; i++) {
+                    clients[i].advance(policies[i].inputs(clients[i].world()));
+                }
+                nextTick += tickNanos;
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            long states = 0, bytes = 0, dropped = 0;
+            double correction = 0;
+            for (NetClient c : clients) {
+                states += c.statesReceived();
+                bytes += c.bytesReceived();
+                dropped += c.statesDropped();
+                correction += c.meanCorrection();
+            }
+            System.out.printf("players=%d time=%.1fs per player: states=%.1f/s %.2f KB/s (%.0f B/state)"
+                            + " undecodable=%d mean correction=%.3f units%n",
+                    count, elapsed, states / elapsed / count, bytes / 1024.0 / elapsed / count,
+                    states > 0 ? (double) bytes / states : 0.0, dropped, correction / count);
+        } finally {
+            for (NetClient c : clients) {
+                if (c != null) c.close();
+            }
+            selector.close();
+        }
+    }
+}
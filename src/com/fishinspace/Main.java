@@ -15,18 +15,171 @@ import javax.swing.*;
  * Spacebar:    Fire Bullet
  * R Key:       Restart Game (after Game Over)
  *
- * Compile: javac AsteroidDestroyer.java
- * Run:     java AsteroidDestroyer
+ * --- OPTIONS ---
+ * --tick-rate=N  Simulation steps per second (default 60)
+ * --fps=N        Frame cap for the sleep/spin pacer (default 60)
+ * --uncapped     Render as fast as possible instead of pacing frames
+ * --seed=N       Seed the game for a reproducible run
+ * --record=FILE  Record inputs to a replay file (play with ReplayPlayer)
+ * --world=WxH    Play field size (default 800x600); larger fields scroll
+ * --asteroids=N  Asteroids at the start of a game (default 5)
+ * --endless      Endless space streamed in sectors around the ship, instead of a wrapping field
+ * --sector-cache=KB  Memory for sectors out of range in endless space (default 1024)
+ * --threads=N    Worker threads for the tick in very large fields
+ * --rewind=S     Seconds of play kept for rewinding with Backspace (default 10, 0 for none)
+ * --connect=HOST:PORT  Play on a GameServer; the server decides the field and tick rate
+ * --capture=DIR  Write every frame drawn into DIR as numbered images
+ * --capture-format=png|raw  PNG (default) or uncompressed PPM, which keeps up more easily
+ * --scores=DIR   Where finished games and high scores are kept (default ~/.fishinspace, 'off' for nowhere)
+ * --player=NAME  The name games are saved under (default the user name)
+ * --telemetry=FILE  Log ticks and game events to FILE for lining stutters up with play
+ * --quality=auto|high|medium|low|minimal  Drawing detail; auto (default) lowers it while
+ *                frames run over budget and raises it again once they don't
+ *
+ * Compile: mvn -B package
+ *          (or javac -d out src/com/fishinspace/*.java, without the vector kernels)
+ * Run:     java --add-modules jdk.incubator.vector -jar game/target/fish-in-space.jar [options]
+ *          (or java -cp out com.fishinspace.Main [options])
  */
 public class Main {
     public static void main(String[] args) {
-        JFrame frame = new JFrame("Asteroid Destroyer");
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        frame.setResizable(false);
-        frame.add(new AsteroidDestroyer());
-        frame.pack();
-        frame.setLocationRelativeTo(null);
-        frame.setVisible(true);
+        int tickRate = World.BASE_TICK_RATE;
+        int renderRate = 60;
+        int pacing = GameLoop.PACING_SLEEP_SPIN;
+        Long seed = null;
+        String recordPath = null;
+        int worldWidth = World.WIDTH;
+        int worldHeight = World.HEIGHT;
+        int asteroids = World.ASTEROID_INIT_COUNT;
+        boolean endless = false;
+        long sectorCacheBytes = SectorStreamer.DEFAULT_CACHE_BYTES;
+        int parallelism = 1;
+        int rewindSeconds = 10;
+        String connect = null;
+        String capturePath = null;
+        int captureFormat = FrameCapture.FORMAT_PNG;
+        int quality = -1;
+        String telemetryPath = null;
+        String scoresPath = java.nio.file.Paths.get(System.getProperty("user.home"), ".fishinspace").toString();
+        String player = System.getProperty("user.name", "player");
+        for (String arg : args) {
+            if (arg.startsWith("--tick-rate=")) tickRate = Integer.parseInt(arg.substring("--tick-rate=".length()));
+            else if (arg.startsWith("--fps=")) renderRate = Integer.parseInt(arg.substring("--fps=".length()));
+            else if (arg.equals("--uncapped")) pacing = GameLoop.PACING_UNCAPPED;
+            else if (arg.startsWith("--seed=")) seed = Long.parseLong(arg.substring("--seed=".length()));
+            else if (arg.startsWith("--record=")) recordPath = arg.substring("--record=".length());
+            else if (arg.startsWith("--world=")) {
+                String[] size = arg.substring("--world=".length()).split("x");
+                worldWidth = Integer.parseInt(size[0]);
+                worldHeight = Integer.parseInt(size[1]);
+            }
+            else if (arg.startsWith("--asteroids=")) asteroids = Integer.parseInt(arg.substring("--asteroids=".length()));
+            else if (arg.equals("--endless")) endless = true;
+            else if (arg.startsWith("--sector-cache=")) sectorCacheBytes = Long.parseLong(arg.substring("--sector-cache=".length())) * 1024;
+            else if (arg.startsWith("--threads=")) parallelism = Integer.parseInt(arg.substring("--threads=".length()));
+            else if (arg.startsWith("--rewind=")) rewindSeconds = Integer.parseInt(arg.substring("--rewind=".length()));
+            else if (arg.startsWith("--connect=")) connect = arg.substring("--connect=".length());
+            else if (arg.startsWith("--capture=")) capturePath = arg.substring("--capture=".length());
+            else if (arg.startsWith("--capture-format=")) captureFormat = FrameCapture.parseFormat(arg.substring("--capture-format=".length()));
+            else if (arg.startsWith("--scores=")) scoresPath = arg.substring("--scores=".length());
+            else if (arg.startsWith("--player=")) player = arg.substring("--player=".length());
+            else if (arg.startsWith("--telemetry=")) telemetryPath = arg.substring("--telemetry=".length());
+            else if (arg.startsWith("--quality=")) quality = QualityGovernor.parseTier(arg.substring("--quality=".length()));
+        }
+
+        NetClient client = null;
+        if (connect != null) {
+            int colon = connect.lastIndexOf(':');
+            String host = colon >= 0 ? connect.substring(0, colon) : connect;
+            int port = colon >= 0 ? Integer.parseInt(connect.substring(colon + 1)) : NetProtocol.DEFAULT_PORT;
+            try {
+                client = NetClient.connect(new java.net.InetSocketAddress(host, port), 5000);
+            } catch (java.io.IOException e) {
+                System.err.println("Could not join " + connect + ": " + e.getMessage());
+                System.exit(1);
+            }
+            tickRate = client.world().getTickRate();
+        }
+
+        ScoreStore scores = null;
+        if (client == null && !scoresPath.equals("off")) {
+            try {
+                scores = ScoreStore.open(java.nio.file.Paths.get(scoresPath));
+                ScoreStore store = scores;
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        store.close();
+                    } catch (java.io.IOException e) {
+                        System.err.println("Could not close score store: " + e);
+                    }
+                }));
+            } catch (java.io.IOException e) {
+                System.err.println("Could not open score store, scores will not be saved: " + e);
+            }
+        }
+
+        int finalTickRate = tickRate;
+        int finalRenderRate = renderRate;
+        int finalPacing = pacing;
+        long worldSeed = seed != null ? seed : World.randomSeed();
+        World world = endless ? SectorStreamer.endlessWorld(worldSeed, sectorCacheBytes)
+                : new World(worldSeed, worldWidth, worldHeight);
+        if (endless && recordPath != null) {
+            System.err.println("Games in endless space cannot be recorded; not recording");
+            recordPath = null;
+        }
+        world.setTickRate(tickRate);
+        world.setParallelism(parallelism);
+        world.asteroidInitCount = asteroids;
+        String finalRecordPath = recordPath;
+        int finalRewindSeconds = rewindSeconds;
+        NetClient finalClient = client;
+        String finalCapturePath = capturePath;
+        int finalCaptureFormat = captureFormat;
+        int finalQuality = quality;
+        String finalTelemetryPath = telemetryPath;
+        ScoreStore finalScores = scores;
+        String finalPlayer = player;
+        SwingUtilities.invokeLater(() -> {
+            JFrame frame = new JFrame("Asteroid Destroyer");
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            frame.setResizable(false);
+            frame.setIgnoreRepaint(true);
+            AsteroidDestroyer game = finalClient != null ? new AsteroidDestroyer(finalClient) : new AsteroidDestroyer(world);
+            if (finalRecordPath != null && finalClient == null) {
+                try {
+                    game.startRecording(java.nio.file.Paths.get(finalRecordPath));
+                    Runtime.getRuntime().addShutdownHook(new Thread(game::stopRecording));
+                } catch (java.io.IOException e) {
+                    System.err.println("Could not start recording: " + e);
+                }
+            }
+            if (finalTelemetryPath != null && finalClient == null) {
+                try {
+                    game.startTelemetry(java.nio.file.Paths.get(finalTelemetryPath));
+                    Runtime.getRuntime().addShutdownHook(new Thread(game::stopTelemetry));
+                } catch (java.io.IOException e) {
+                    System.err.println("Could not start telemetry: " + e);
+                }
+            }
+            if (finalCapturePath != null) {
+                try {
+                    game.startCapture(java.nio.file.Paths.get(finalCapturePath), finalCaptureFormat);
+                    Runtime.getRuntime().addShutdownHook(new Thread(game::stopCapture));
+                } catch (java.io.IOException e) {
+                    System.err.println("Could not start capture: " + e);
+                }
+            }
+            game.enableRewind(finalRewindSeconds, finalTickRate);
+            game.setQuality(finalQuality);
+            if (finalScores != null) game.setScoreStore(finalScores, finalPlayer);
+            frame.add(game);
+            frame.pack();
+            frame.setLocationRelativeTo(null);
+            frame.setVisible(true);
+            game.requestFocusInWindow();
+            game.start(finalTickRate, finalRenderRate, finalPacing);
+        });
     }
 }
 
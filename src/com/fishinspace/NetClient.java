@@ -0,0 +1,271 @@
+package com.fishinspace;
+
+/**
+ * NetClient.java
+ *
+ * The client end of a {@link GameServer} connection. It keeps a local
+ * {@link World} that mirrors the server's: each state the server sends
+ * replaces it, and in between everything is carried forward on its last
+ * known velocity.
+ *
+ * The player's own ship is predicted. Each tick's inputs are sent to the
+ * server and applied locally at once; when a state arrives the ship is reset
+ * to where the server has it and the inputs the server has not applied yet
+ * are replayed on top. Only movement is predicted; shots and collisions are
+ * left to the server.
+ *
+ * Not thread-safe: {@link #poll} and {@link #advance} belong to the thread
+ * that ticks the game. The channel is non-blocking, so a client can be
+ * driven from its own loop or registered with a shared Selector.
+ */
+class NetClient implements java.io.Closeable {
+    private static final int PENDING_INPUTS = 64; // must exceed the inputs in flight
+    private static final long HELLO_RETRY_MILLIS = 250;
+
+    private final java.nio.channels.DatagramChannel channel;
+    private final World world;
+    private final int slot;
+
+    private final java.nio.ByteBuffer in = java.nio.ByteBuffer.allocate(NetProtocol.MAX_PACKET);
+    private final java.nio.ByteBuffer out = java.nio.ByteBuffer.allocate(64);
+    private final java.nio.ByteBuffer delta = java.nio.ByteBuffer.allocate(NetProtocol.MAX_PACKET);
+    private final NetProtocol.Frames frames = new NetProtocol.Frames();
+
+    private final int[] pending = new int[PENDING_INPUTS]; // inputs by sequence number
+    private int inputSeq;
+    private int appliedSeq;      // newest input the server has applied
+    private int latestTick = -1; // newest frame held
+    private boolean stateArrived;
+    private long lastHeard;
+
+    // --- Stats ---
+    private long statesReceived, bytesReceived, statesDropped;
+    private double correctionSum;
+
+    private NetClient(java.nio.channels.DatagramChannel channel, java.nio.ByteBuffer welcome) {
+        this.channel = channel;
+        slot = welcome.get() & 0xFF;
+        int tickRate = welcome.getShort();
+        int width = welcome.getInt();
+        int height = welcome.getInt();
+        int ships = welcome.get() & 0xFF;
+        world = new World(0, width, height, ships);
+        world.setTickRate(tickRate);
+        world.respawnShips = true;
+        // Nothing is shown until the first state arrives
+        world.removeShip(0);
+        world.asteroids.clear();
+        lastHeard = System.nanoTime();
+    }
+
+    /**
+     * Joins the server at {@code server}, retrying the handshake until
+     * {@code timeoutMillis} pass. Throws if the server is full or does not
+     * answer.
+     */
+    static NetClient connect(java.net.InetSocketAddress server, long timeoutMillis) throws java.io.IOException {
+        java.nio.channels.DatagramChannel channel = java.nio.channels.DatagramChannel.open();
+        try {
+            channel.connect(server);
+            channel.configureBlocking(false);
+            java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocate(64);
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            try (java.nio.channels.Selector selector = java.nio.channels.Selector.open()) {
+                channel.register(selector, java.nio.channels.SelectionKey.OP_READ);
+                while (System.currentTimeMillis() < deadline) {
+                    buffer.clear();
+                    buffer.put(NetProtocol.PACKET_HELLO).put((byte) NetProtocol.VERSION);
+                    buffer.flip();
+                    channel.write(buffer);
+                    selector.select(HELLO_RETRY_MILLIS);
+                    selector.selectedKeys().clear();
+                    buffer.clear();
+                    try {
+                        if (channel.read(buffer) <= 0) continue;
+                    } catch (java.net.PortUnreachableException e) {
+                        continue; // server not up yet
+                    }
+                    buffer.flip();
+                    byte type = buffer.get();
+                    if (type == NetProtocol.PACKET_WELCOME) {
+                        channel.keyFor(selector).cancel();
+                        selector.selectNow(); // deregister, so the channel can join another selector
+                        return new NetClient(channel, buffer);
+                    }
+                    if (type == NetProtocol.PACKET_REJECT) {
+                        throw new java.io.IOException(buffer.get() == NetProtocol.REJECT_FULL
+                                ? "server is full" : "server runs a different protocol version");
+                    }
+                }
+            }
+            throw new java.net.SocketTimeoutException("no answer from " + server);
+        } catch (java.io.IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    World world() {
+        return world;
+    }
+
+    int slot() {
+        return slot;
+    }
+
+    java.nio.channels.DatagramChannel channel() {
+        return channel;
+    }
+
+    /** {@link #poll} then {@link #advance}: one tick of a client on its own. */
+    void tick(int inputs) {
+        try {
+            poll();
+            advance(inputs);
+        } catch (java.io.IOException e) {
+            System.err.println("Connection lost: " + e);
+            world.inGame = false;
+        }
+    }
+
+    /** Reads every datagram waiting, applying the newest state. */
+    void poll() throws java.io.IOException {
+        while (true) {
+            in.clear();
+            int n;
+            try {
+                n = channel.read(in);
+            } catch (java.net.PortUnreachableException e) {
+                return; // the server went away; the timeout will notice
+            }
+            if (n <= 0) return;
+            in.flip();
+            bytesReceived += n;
+            lastHeard = System.nanoTime();
+            try {
+                byte type = in.get();
+                if (type == NetProtocol.PACKET_STATE) {
+                    state();
+                } else if (type == NetProtocol.PACKET_BYE) {
+                    world.inGame = false;
+                }
+            } catch (java.nio.BufferUnderflowException e) {
+                // truncated packet; ignore it
+            }
+        }
+    }
+
+    private void state() {
+        int tick = in.getInt();
+        int baseTick = in.getInt();
+        int ackedSeq = in.getInt();
+        if (tick <= latestTick) return; // late or duplicated
+        int baseSlot = -1;
+        if (baseTick >= 0) {
+            baseSlot = frames.find(baseTick);
+            if (baseSlot < 0) {
+                // Our base has gone; the server will move to a newer one once it sees our ack
+                statesDropped++;
+                return;
+            }
+        }
+        delta.clear();
+        delta.put(in);
+        java.nio.ByteBuffer frame = frames.claim(Snapshot.deltaTargetLength(delta));
+        int length = Snapshot.decodeDelta(delta, baseSlot >= 0 ? frames.buffer(baseSlot) : null,
+                baseSlot >= 0 ? frames.length(baseSlot) : 0, frame);
+        frames.commit(tick, length);
+        latestTick = tick;
+        if (ackedSeq > appliedSeq) appliedSeq = ackedSeq;
+        statesReceived++;
+
+        Ship me = world.ships[slot];
+        double predictedX = me.x, predictedY = me.y;
+        boolean predicted = me.active && me.alive;
+        NetProtocol.applyFrame(frame, world);
+
+        // Replay what the server has not seen yet on top of its answer
+        if (me.alive) {
+            for (int seq = Math.max(appliedSeq + 1, inputSeq - PENDING_INPUTS + 1); seq <= inputSeq; seq++) {
+                me.setInputs(pending[seq % PENDING_INPUTS]);
+                world.moveShip(me);
+            }
+            if (predicted) correctionSum += Math.hypot(me.x - predictedX, me.y - predictedY);
+        }
+        stateArrived = true;
+    }
+
+    /** Sends this tick's inputs and moves the local world forward a tick. */
+    void advance(int inputs) throws java.io.IOException {
+        inputSeq++;
+        pending[inputSeq % PENDING_INPUTS] = inputs;
+        int n = Math.min(inputSeq - appliedSeq, NetProtocol.INPUT_REDUNDANCY);
+        out.clear();
+        out.put(NetProtocol.PACKET_INPUT).putInt(latestTick).putInt(inputSeq).put((byte) n);
+        for (int seq = inputSeq - n + 1; seq <= inputSeq; seq++) {
+            out.put((byte) pending[seq % PENDING_INPUTS]);
+        }
+        out.flip();
+        try {
+            channel.write(out);
+        } catch (java.net.PortUnreachableException e) {
+            // the server went away; the timeout will notice
+        }
+
+        // Between states, everything else carries on as it was going
+        if (!stateArrived) {
+            Entities b = world.bullets;
+            for (int i = 0; i < b.count; i++) {
+                b.x[i] += b.dx[i] * world.dt;
+                b.y[i] += b.dy[i] * world.dt;
+            }
+            world.moveAsteroids(0, world.asteroids.count);
+            for (int s = 0; s < world.ships.length; s++) {
+                Ship sh = world.ships[s];
+                if (s == slot || !sh.active || !sh.alive) continue;
+                sh.savePrevious();
+                world.moveShip(sh);
+            }
+        }
+        stateArrived = false;
+
+        Ship me = world.ships[slot];
+        if (me.active && me.alive) {
+            me.savePrevious();
+            me.setInputs(inputs);
+            world.moveShip(me);
+        }
+        if (System.nanoTime() - lastHeard > NetProtocol.TIMEOUT_NANOS) world.inGame = false;
+    }
+
+    long statesReceived() {
+        return statesReceived;
+    }
+
+    long bytesReceived() {
+        return bytesReceived;
+    }
+
+    long statesDropped() {
+        return statesDropped;
+    }
+
+    /** Mean distance the own ship was moved by a correction, in world units. */
+    double meanCorrection() {
+        return statesReceived > 0 ? correctionSum / statesReceived : 0;
+    }
+
+    @Override
+    public void close() throws java.io.IOException {
+        if (!channel.isOpen()) return;
+        out.clear();
+        out.put(NetProtocol.PACKET_BYE);
+        out.flip();
+        try {
+            channel.write(out);
+        } catch (java.io.IOException e) {
+            // leaving anyway
+        }
+        channel.close();
+    }
+}
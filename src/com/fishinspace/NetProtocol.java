@@ -0,0 +1,258 @@
+package com.fishinspace;
+
+/**
+ * NetProtocol.java
+ *
+ * The wire format shared by {@link GameServer} and {@link NetClient}. Every
+ * message is one UDP datagram starting with a PACKET_* type byte; all
+ * numbers are big-endian.
+ *
+ * --- PACKETS ---
+ *   HELLO    client -> server  byte version
+ *   WELCOME  server -> client  ubyte slot, short tick rate, int width, int height,
+ *                              ubyte ship slots, byte snapshot interval (ticks)
+ *   REJECT   server -> client  byte REJECT_* reason
+ *   INPUT    client -> server  int newest state tick held, int newest input seq,
+ *                              byte n, then the last n INPUT_* masks, oldest first
+ *   STATE    server -> client  int server tick, int base tick (-1 for none),
+ *                              int newest input seq applied for this client,
+ *                              then a {@link Snapshot} delta of the frame against the base
+ *   BYE      either way        (nothing)
+ *
+ * Inputs are resent until the server acknowledges them, so a lost INPUT
+ * costs nothing as long as a later one arrives. States are deltas against
+ * the newest frame the client reported holding; if that frame is lost the
+ * next state is simply taken against an older base.
+ *
+ * --- FRAME --- (the quantized world a STATE delta rebuilds)
+ *   int     tick
+ *   byte    inGame
+ *   int     score
+ *   ubyte   ship slots, then for each slot
+ *     byte    flags: active, alive, rotatingLeft, rotatingRight, thrusting, braking
+ *     u16     x, y          position over the field plus a margin, in 1/65535ths
+ *     s16     velX, velY    in 1/1024ths of a unit per frame
+ *     u16     angle         in 1/65536ths of a turn
+ *     byte    active power-up
+ *     u16     power-up frames remaining
+ *     int     score
+ *   then bullets, asteroids and power-ups, each as
+ *   int     count
+ *   u16     x[count], y[count]
+ *   s16     dx[count], dy[count]
+ *   byte    size[count], type[count]
+ *
+ * Fields are stored column by column, as in a snapshot, so that the bytes of
+ * one frame line up with the last and the XOR delta finds long equal runs.
+ * The whole state goes to every client; there is no interest management, so
+ * a STATE must fit one datagram, which holds a few thousand entities.
+ */
+final class NetProtocol {
+    static final int VERSION = 1;
+    static final int DEFAULT_PORT = 7777;
+
+    // --- Packet Types ---
+    static final byte PACKET_HELLO = 1;
+    static final byte PACKET_WELCOME = 2;
+    static final byte PACKET_REJECT = 3;
+    static final byte PACKET_INPUT = 4;
+    static final byte PACKET_STATE = 5;
+    static final byte PACKET_BYE = 6;
+
+    static final byte REJECT_FULL = 1;
+    static final byte REJECT_VERSION = 2;
+
+    // --- Limits ---
+    static final int MAX_PACKET = 65000;       // just under the largest UDP payload
+    static final int MAX_SHIPS = 255;          // slots and slot numbers travel as unsigned bytes
+    static final int STATE_HEADER_SIZE = 1 + 3 * 4;
+    static final int INPUT_REDUNDANCY = 16;    // unacknowledged inputs repeated in each INPUT
+    static final int FRAME_HISTORY = 64;       // frames kept on each side as delta bases
+    static final long TIMEOUT_NANOS = 5_000_000_000L;
+
+    // --- Quantization ---
+    static final double POSITION_MARGIN = 64; // entities spawn and wrap a little outside the field
+    static final double VELOCITY_SCALE = 1024;
+    static final int FRAME_HEADER_SIZE = 4 + 1 + 4 + 1;
+    static final int BYTES_PER_SHIP = 1 + 5 * 2 + 1 + 2 + 4;
+    static final int BYTES_PER_ENTITY = 4 * 2 + 2;
+
+    private static final int FLAG_ACTIVE = 1;
+    private static final int FLAG_ALIVE = 1 << 1;
+    private static final int FLAG_LEFT = 1 << 2;
+    private static final int FLAG_RIGHT = 1 << 3;
+    private static final int FLAG_THRUST = 1 << 4;
+    private static final int FLAG_BRAKE = 1 << 5;
+
+    private NetProtocol() {
+    }
+
+    /** Bytes a frame of {@code world} needs right now. */
+    static int frameSize(World world) {
+        int entities = world.bullets.count + world.asteroids.count + world.powerUps.count;
+        return FRAME_HEADER_SIZE + world.ships.length * BYTES_PER_SHIP + 3 * 4 + entities * BYTES_PER_ENTITY;
+    }
+
+    /** Writes the quantized state of {@code world} at the start of {@code out}; returns the length. */
+    static int writeFrame(World world, java.nio.ByteBuffer out) {
+        out.clear();
+        out.putInt((int) world.tick)
+                .put((byte) (world.inGame ? 1 : 0))
+                .putInt(world.score)
+                .put((byte) world.ships.length);
+        for (Ship sh : world.ships) {
+            int flags = (sh.active ? FLAG_ACTIVE : 0) | (sh.alive ? FLAG_ALIVE : 0)
+                    | (sh.rotatingLeft ? FLAG_LEFT : 0) | (sh.rotatingRight ? FLAG_RIGHT : 0)
+                    | (sh.thrusting ? FLAG_THRUST : 0) | (sh.braking ? FLAG_BRAKE : 0);
+            out.put((byte) flags)
+                    .putShort((short) quantizePosition(sh.x, world.width))
+                    .putShort((short) quantizePosition(sh.y, world.height))
+                    .putShort((short) quantizeVelocity(sh.velX))
+                    .putShort((short) quantizeVelocity(sh.velY))
+                    .putShort((short) quantizeAngle(sh.angle))
+                    .put((byte) sh.activePowerUp)
+                    .putShort((short) Math.min(0xFFFF, (int) Math.ceil(sh.powerUpTimeRemaining)))
+                    .putInt(sh.score);
+        }
+        writeEntities(world.bullets, world, out);
+        writeEntities(world.asteroids, world, out);
+        writeEntities(world.powerUps, world, out);
+        return out.position();
+    }
+
+    /**
+     * Loads a frame into {@code world}. Ships keep their old position as the
+     * interpolation start, so a correction slides rather than jumps.
+     */
+    static void applyFrame(java.nio.ByteBuffer in, World world) {
+        in.clear();
+        world.tick = in.getInt();
+        world.inGame = in.get() != 0;
+        world.score = in.getInt();
+        if ((in.get() & 0xFF) != world.ships.length) {
+            throw new IllegalArgumentException("frame has a different number of ship slots");
+        }
+        for (Ship sh : world.ships) {
+            boolean appeared = !sh.active || !sh.alive;
+            int flags = in.get();
+            sh.active = (flags & FLAG_ACTIVE) != 0;
+            sh.alive = (flags & FLAG_ALIVE) != 0;
+            sh.rotatingLeft = (flags & FLAG_LEFT) != 0;
+            sh.rotatingRight = (flags & FLAG_RIGHT) != 0;
+            sh.thrusting = (flags & FLAG_THRUST) != 0;
+            sh.braking = (flags & FLAG_BRAKE) != 0;
+            sh.savePrevious();
+            sh.x = dequantizePosition(in.getShort() & 0xFFFF, world.width);
+            sh.y = dequantizePosition(in.getShort() & 0xFFFF, world.height);
+            sh.velX = dequantizeVelocity(in.getShort());
+            sh.velY = dequantizeVelocity(in.getShort());
+            sh.angle = dequantizeAngle(in.getShort() & 0xFFFF, sh.angle);
+            sh.activePowerUp = in.get();
+            sh.powerUpTimeRemaining = in.getShort() & 0xFFFF;
+            sh.score = in.getInt();
+            // A ship that was not on screen has nothing to slide from
+            if (appeared) sh.savePrevious();
+        }
+        readEntities(in, world.bullets, world);
+        readEntities(in, world.asteroids, world);
+        readEntities(in, world.powerUps, world);
+        world.stateReplaced();
+    }
+
+    static int quantizePosition(double v, int extent) {
+        long q = Math.round((v + POSITION_MARGIN) * 0xFFFF / (extent + 2 * POSITION_MARGIN));
+        return (int) Math.max(0, Math.min(0xFFFF, q));
+    }
+
+    static double dequantizePosition(int q, int extent) {
+        return q * (extent + 2 * POSITION_MARGIN) / 0xFFFF - POSITION_MARGIN;
+    }
+
+    static int quantizeVelocity(double v) {
+        long q = Math.round(v * VELOCITY_SCALE);
+        return (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, q));
+    }
+
+    static double dequantizeVelocity(int q) {
+        return q / VELOCITY_SCALE;
+    }
+
+    static int quantizeAngle(double angle) {
+        return (int) Math.round(angle * 0x10000 / (2 * Math.PI)) & 0xFFFF;
+    }
+
+    /** The angle for {@code q} that is nearest {@code near}, so turning never spins the long way round. */
+    static double dequantizeAngle(int q, double near) {
+        double angle = q * (2 * Math.PI) / 0x10000;
+        return angle + 2 * Math.PI * Math.rint((near - angle) / (2 * Math.PI));
+    }
+
+    private static void writeEntities(Entities e, World world, java.nio.ByteBuffer out) {
+        int n = e.count;
+        out.putInt(n);
+        for (int i = 0; i < n; i++) out.putShort((short) quantizePosition(e.x[i], world.width));
+        for (int i = 0; i < n; i++) out.putShort((short) quantizePosition(e.y[i], world.height));
+        for (int i = 0; i < n; i++) out.putShort((short) quantizeVelocity(e.dx[i]));
+        for (int i = 0; i < n; i++) out.putShort((short) quantizeVelocity(e.dy[i]));
+        for (int i = 0; i < n; i++) out.put((byte) e.size[i]);
+        for (int i = 0; i < n; i++) out.put((byte) e.type[i]);
+    }
+
+    private static void readEntities(java.nio.ByteBuffer in, Entities e, World world) {
+        int n = in.getInt();
+        e.setCount(n);
+        for (int i = 0; i < n; i++) e.x[i] = dequantizePosition(in.getShort() & 0xFFFF, world.width);
+        for (int i = 0; i < n; i++) e.y[i] = dequantizePosition(in.getShort() & 0xFFFF, world.height);
+        for (int i = 0; i < n; i++) e.dx[i] = dequantizeVelocity(in.getShort());
+        for (int i = 0; i < n; i++) e.dy[i] = dequantizeVelocity(in.getShort());
+        for (int i = 0; i < n; i++) e.size[i] = in.get() & 0xFF;
+        for (int i = 0; i < n; i++) e.type[i] = in.get() & 0xFF;
+    }
+
+    /**
+     * The last {@link #FRAME_HISTORY} frames, by tick, as delta bases. The
+     * slot the next frame will be written into is never handed out as a
+     * base, so a frame can be decoded against any base that {@link #find}
+     * returns.
+     */
+    static final class Frames {
+        private final java.nio.ByteBuffer[] buffers = new java.nio.ByteBuffer[FRAME_HISTORY];
+        private final int[] lengths = new int[FRAME_HISTORY];
+        private final int[] ticks = new int[FRAME_HISTORY];
+        private final boolean[] filled = new boolean[FRAME_HISTORY];
+        private int next;
+
+        /** The buffer the next frame goes into, holding at least {@code bytes}. */
+        java.nio.ByteBuffer claim(int bytes) {
+            buffers[next] = Snapshot.ensureCapacity(buffers[next], bytes);
+            filled[next] = false;
+            return buffers[next];
+        }
+
+        /** Keeps the claimed buffer as the frame for {@code tick}; returns its slot. */
+        int commit(int tick, int length) {
+            int slot = next;
+            ticks[slot] = tick;
+            lengths[slot] = length;
+            filled[slot] = true;
+            next = (next + 1) % FRAME_HISTORY;
+            return slot;
+        }
+
+        /** Slot of the frame for {@code tick}, or -1 if it is not held. */
+        int find(int tick) {
+            for (int slot = 0; slot < FRAME_HISTORY; slot++) {
+                if (filled[slot] && ticks[slot] == tick && slot != next) return slot;
+            }
+            return -1;
+        }
+
+        java.nio.ByteBuffer buffer(int slot) {
+            return buffers[slot];
+        }
+
+        int length(int slot) {
+            return lengths[slot];
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.fishinspace;
+
+/**
+ * Observation.java
+ *
+ * Packs what an {@link Agent} sees of a world into SIZE floats: the ship's own
+ * state, then the NEAREST_ASTEROIDS closest asteroids and the
+ * NEAREST_POWERUPS closest power-ups within SENSOR_RANGE, nearest first.
+ * Everything is relative to the ship and measured across the wrapped field
+ * edges, the way the ship would actually reach it, and scaled to roughly
+ * [-1, 1]. Slots with nothing in them are all zeros, present included.
+ *
+ * --- LAYOUT (float offsets) ---
+ *   0  ship x / field width, y / field height
+ *   2  ship velocity x, y / VELOCITY_SCALE (per 60 Hz frame)
+ *   4  cos, sin of the ship's heading
+ *   6  1 if a bullet can be fired now
+ *   7  active power-up, one-hot over the four types
+ *  11  power-up time remaining / POWERUP_DURATION
+ *  12  asteroids, ASTEROID_FIELDS each:
+ *        present, dx, dy (/ SENSOR_RANGE), relative velocity x, y
+ *        (/ VELOCITY_SCALE), radius / large asteroid radius
+ *  60  power-ups, POWERUP_FIELDS each:
+ *        present, dx, dy (/ SENSOR_RANGE), type / POWERUP_TYPES
+ *
+ * An instance holds the scratch space for the nearest-neighbour search, so
+ * writing an observation allocates nothing; use one per thread.
+ */
+final class Observation {
+    static final int NEAREST_ASTEROIDS = 8;
+    static final int NEAREST_POWERUPS = 2;
+    static final double SENSOR_RANGE = 400;
+    static final double VELOCITY_SCALE = 10;
+    static final int POWERUP_TYPES = 4;
+    // Below this many asteroids a plain scan beats walking the grid cells in range
+    private static final int GRID_SEARCH_THRESHOLD = 256;
+
+    // --- Layout ---
+    static final int SHIP_FIELDS = 12;
+    static final int ASTEROID_FIELDS = 6;
+    static final int POWERUP_FIELDS = 4;
+    static final int ASTEROIDS_OFFSET = SHIP_FIELDS;
+    static final int POWERUPS_OFFSET = ASTEROIDS_OFFSET + NEAREST_ASTEROIDS * ASTEROID_FIELDS;
+    static final int SIZE = POWERUPS_OFFSET + NEAREST_POWERUPS * POWERUP_FIELDS;
+
+    private final SpatialGrid.Results results = new SpatialGrid.Results();
+    private double[] distances = new double[GRID_SEARCH_THRESHOLD]; // for a plain scan, grown as needed
+    // The nearest found so far, ascending by squared distance
+    private final int[] nearest = new int[NEAREST_ASTEROIDS];
+    private final double[] nearestDist = new double[NEAREST_ASTEROIDS];
+    private final double[] nearestDx = new double[NEAREST_ASTEROIDS];
+    private final double[] nearestDy = new double[NEAREST_ASTEROIDS];
+    private int found;
+
+    /** Writes ship {@code slot}'s view of {@code world} into out[offset, offset + SIZE). */
+    void write(World world, int slot, float[] out, int offset) {
+        java.util.Arrays.fill(out, offset, offset + SIZE, 0f);
+        Ship sh = world.ships[slot];
+        if (!sh.alive) return; // nothing to steer while waiting to respawn
+
+        out[offset] = (float) (sh.x / world.width);
+        out[offset + 1] = (float) (sh.y / world.height);
+        out[offset + 2] = (float) (sh.velX / VELOCITY_SCALE);
+        out[offset + 3] = (float) (sh.velY / VELOCITY_SCALE);
+        out[offset + 4] = (float) Math.cos(sh.angle);
+        out[offset + 5] = (float) Math.sin(sh.angle);
+        out[offset + 6] = sh.bulletCooldownTimer <= 0 ? 1f : 0f;
+        if (sh.activePowerUp != World.POWERUP_NONE) {
+            out[offset + 6 + sh.activePowerUp] = 1f;
+            out[offset + 11] = (float) (sh.powerUpTimeRemaining / World.POWERUP_DURATION);
+        }
+
+        Entities a = world.asteroids;
+        findNearest(world, a, sh.x, sh.y, NEAREST_ASTEROIDS, true);
+        for (int k = 0; k < found; k++) {
+            int j = nearest[k];
+            int o = offset + ASTEROIDS_OFFSET + k * ASTEROID_FIELDS;
+            out[o] = 1f;
+            out[o + 1] = (float) (nearestDx[k] / SENSOR_RANGE);
+            out[o + 2] = (float) (nearestDy[k] / SENSOR_RANGE);
+            out[o + 3] = (float) ((a.dx[j] - sh.velX) / VELOCITY_SCALE);
+            out[o + 4] = (float) ((a.dy[j] - sh.velY) / VELOCITY_SCALE);
+            out[o + 5] = (float) a.size[j] / World.ASTEROID_SIZE_LARGE;
+        }
+
+        Entities p = world.powerUps;
+        findNearest(world, p, sh.x, sh.y, NEAREST_POWERUPS, false);
+        for (int k = 0; k < found; k++) {
+            int o = offset + POWERUPS_OFFSET + k * POWERUP_FIELDS;
+            out[o] = 1f;
+            out[o + 1] = (float) (nearestDx[k] / SENSOR_RANGE);
+            out[o + 2] = (float) (nearestDy[k] / SENSOR_RANGE);
+            out[o + 3] = (float) p.type[nearest[k]] / POWERUP_TYPES;
+        }
+    }
+
+    /**
+     * Fills nearest[0, found) with up to {@code limit} entities within
+     * SENSOR_RANGE of (x, y), nearest first. In a large swarm the asteroids
+     * come from the grid the last tick built, when there is one; otherwise,
+     * and for the few power-ups, every entity is checked, with the squared
+     * distances worked out for the lot in one kernel call.
+     */
+    private void findNearest(World world, Entities e, double x, double y, int limit, boolean asteroids) {
+        found = 0;
+        int candidates = asteroids && e.count >= GRID_SEARCH_THRESHOLD
+                ? world.asteroidsNear(x, y, SENSOR_RANGE, results) : -1;
+        if (candidates < 0) {
+            if (distances.length < e.count) distances = new double[e.count * 2];
+            world.kernels().distancesSquared(x, y, e.x, e.y, 0, e.count, world.width, world.height, distances);
+            for (int i = 0; i < e.count; i++) {
+                consider(world, e, i, x, y, distances[i], limit);
+            }
+        } else {
+            int[] ids = results.ids;
+            for (int k = 0; k < candidates; k++) {
+                int i = ids[k];
+                double dx = wrap(e.x[i] - x, world.width);
+                double dy = wrap(e.y[i] - y, world.height);
+                consider(world, e, i, x, y, dx * dx + dy * dy, limit);
+            }
+        }
+    }
+
+    // d is entity i's squared distance, measured across the wrapped edges
+    private void consider(World world, Entities e, int i, double x, double y, double d, int limit) {
+        if (d > SENSOR_RANGE * SENSOR_RANGE) return;
+        if (found == limit && d >= nearestDist[limit - 1]) return;
+        double dx = wrap(e.x[i] - x, world.width);
+        double dy = wrap(e.y[i] - y, world.height);
+        // Insertion into the short sorted list, dropping the farthest when full
+        int k = found < limit ? found++ : limit - 1;
+        while (k > 0 && nearestDist[k - 1] > d) {
+            nearest[k] = nearest[k - 1];
+            nearestDist[k] = nearestDist[k - 1];
+            nearestDx[k] = nearestDx[k - 1];
+            nearestDy[k] = nearestDy[k - 1];
+            k--;
+        }
+        nearest[k] = i;
+        nearestDist[k] = d;
+        nearestDx[k] = dx;
+        nearestDy[k] = dy;
+    }
+
+    /** The shorter way round a wrapped axis of length {@code size}. */
+    private static double wrap(double delta, int size) {
+        if (delta > size / 2.0) return delta - size;
+        if (delta < -size / 2.0) return delta + size;
+        return delta;
+    }
+}
@@ -0,0 +1,65 @@
+package com.fishinspace;
+
+/**
+ * ParallelTick.java
+ *
+ * Worker threads for the parts of a {@link World} tick that scale with the
+ * number of asteroids: moving and wrapping them, and searching the asteroid
+ * grid for each bullet's target. Both only read shared state and write to
+ * slots owned by one worker, so no locking is needed; everything that changes
+ * the world (splits, score, drops, removals) stays on the thread calling
+ * {@link World#step(int)}.
+ *
+ * Work is cut into one contiguous chunk per thread by {@link ChunkedTasks},
+ * whose tasks are reused from job to job, and the jobs themselves are built
+ * once, so a parallel tick hands off to the pool without allocating.
+ */
+class ParallelTick {
+    private final World world;
+    private final ChunkedTasks tasks;
+    private final SpatialGrid.Results[] results; // per chunk
+    private int[] targets = new int[World.BULLET_POOL_SIZE];
+
+    private final ChunkedTasks.Body moveJob;
+    private final ChunkedTasks.Body targetJob;
+
+    ParallelTick(World world, int threads) {
+        this.world = world;
+        tasks = new ChunkedTasks(threads);
+        results = new SpatialGrid.Results[threads];
+        for (int c = 0; c < threads; c++) {
+            results[c] = new SpatialGrid.Results();
+        }
+        moveJob = (chunk, from, to) -> world.moveAsteroids(from, to);
+        targetJob = (chunk, from, to) -> {
+            SpatialGrid.Results scratch = results[chunk];
+            for (int i = from; i < to; i++) {
+                targets[i] = world.targetFor(i, scratch);
+            }
+        };
+    }
+
+    int threads() {
+        return tasks.parts();
+    }
+
+    /** Moves and wraps every asteroid. */
+    void moveAsteroids() {
+        tasks.run(world.asteroids.count, moveJob);
+    }
+
+    /**
+     * Finds, for each of the first {@code bulletCount} bullets, the asteroid
+     * it would hit as the sequential search does ({@link World#targetFor}).
+     * Entry i of the returned array is bullet i's target, or -1.
+     */
+    int[] findTargets(int bulletCount) {
+        if (targets.length < bulletCount) targets = new int[bulletCount * 2];
+        tasks.run(bulletCount, targetJob);
+        return targets;
+    }
+
+    void shutdown() {
+        tasks.shutdown();
+    }
+}
@@ -0,0 +1,229 @@
+package com.fishinspace;
+
+/**
+ * Particles.java
+ *
+ * Short-lived visual debris: asteroid break-ups, ship explosions and thruster
+ * exhaust. Purely cosmetic; it has its own generator, so effects never
+ * disturb the world's random sequence and replays stay exact.
+ *
+ * Particles live in fixed-capacity primitive arrays used as a ring. Each new
+ * particle takes the next slot, overwriting whatever was there, which is the
+ * oldest particle and the nearest to fading out anyway. Nothing is allocated
+ * after construction, however many effects go off.
+ *
+ * Two budgets keep the cost bounded:
+ *   - emitters shrink their bursts as the ring fills, so a chain of
+ *     explosions thins out rather than wiping out the debris of the last one;
+ *     a limit below CAPACITY (see {@link #setLimit}) makes the ring count as
+ *     full that much sooner;
+ *   - at most drawLimit particles are drawn per frame. If drawing them takes
+ *     longer than FRAME_BUDGET_NANOS the limit is halved, and it creeps back
+ *     up while frames come in under budget.
+ *
+ * Particles are updated once per simulation tick, like the world, and used
+ * from the loop thread only.
+ */
+final class Particles {
+    static final int CAPACITY = 2048;
+    static final long FRAME_BUDGET_NANOS = 1_000_000L;
+    private static final int MIN_DRAW_LIMIT = 64;
+    private static final int DRAW_LIMIT_STEP = 32; // regained per frame under budget
+    private static final double DRAG = 0.96;       // per 60 Hz frame
+
+    // --- Palettes (fade from the first colour towards black) ---
+    static final int PALETTE_ROCK = 0;
+    static final int PALETTE_FIRE = 1;
+    static final int PALETTE_SHIP = 2;
+    private static final int FADE_LEVELS = 8;
+    private static final java.awt.Color[][] COLORS = {
+        fade(new java.awt.Color(200, 200, 200)),
+        fade(new java.awt.Color(255, 170, 40)),
+        fade(java.awt.Color.CYAN),
+    };
+
+    private final double[] x = new double[CAPACITY];
+    private final double[] y = new double[CAPACITY];
+    private final double[] vx = new double[CAPACITY]; // world units per 60 Hz frame
+    private final double[] vy = new double[CAPACITY];
+    private final float[] life = new float[CAPACITY]; // frames left, <= 0 when dead
+    private final float[] maxLife = new float[CAPACITY];
+    private final byte[] palette = new byte[CAPACITY];
+    private int next;  // slot the next particle takes
+    private int alive;
+    private int limit = CAPACITY; // live particles wanted at most
+    private int drawLimit = CAPACITY;
+    private int drawn;
+    private final Rng random = new Rng(0x5EED);
+
+    private static java.awt.Color[] fade(java.awt.Color color) {
+        java.awt.Color[] levels = new java.awt.Color[FADE_LEVELS];
+        for (int i = 0; i < FADE_LEVELS; i++) {
+            float f = (i + 1f) / FADE_LEVELS;
+            levels[i] = new java.awt.Color((int) (color.getRed() * f), (int) (color.getGreen() * f), (int) (color.getBlue() * f));
+        }
+        return levels;
+    }
+
+    int alive() {
+        return alive;
+    }
+
+    int drawn() {
+        return drawn;
+    }
+
+    int drawLimit() {
+        return drawLimit;
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    /**
+     * Caps how many particles are emitted and drawn, 0..CAPACITY. Particles
+     * already alive above a lowered limit are not drawn and are left to fade.
+     */
+    void setLimit(int limit) {
+        this.limit = Math.max(0, Math.min(CAPACITY, limit));
+    }
+
+    void clear() {
+        java.util.Arrays.fill(life, 0f);
+        alive = 0;
+    }
+
+    /** How many of {@code requested} particles a burst gets with the ring as full as it is. */
+    private int budgeted(int requested) {
+        if (alive >= limit) return 0;
+        return Math.max(1, requested * (limit - alive) / limit);
+    }
+
+    /** Debris flying out in all directions from an asteroid of {@code size} breaking up. */
+    void asteroidSplit(double cx, double cy, int size) {
+        int n = budgeted(size / 2 + 4);
+        for (int i = 0; i < n; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double speed = 0.5 + random.nextDouble() * 2.5;
+            double r = random.nextDouble() * size / 3.0;
+            spawn(cx + Math.cos(angle) * r, cy + Math.sin(angle) * r, Math.cos(angle) * speed, Math.sin(angle) * speed,
+                    20 + random.nextInt(25), PALETTE_ROCK);
+        }
+    }
+
+    /** A ship blowing up: a fast burst of fire and slower pieces of hull. */
+    void shipDestroyed(double cx, double cy) {
+        int n = budgeted(60);
+        for (int i = 0; i < n; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            boolean hull = (i & 3) == 0;
+            double speed = hull ? 0.5 + random.nextDouble() * 1.5 : 1 + random.nextDouble() * 4;
+            spawn(cx, cy, Math.cos(angle) * speed, Math.sin(angle) * speed,
+                    hull ? 60 + random.nextInt(40) : 25 + random.nextInt(30), hull ? PALETTE_SHIP : PALETTE_FIRE);
+        }
+    }
+
+    /** A puff of exhaust behind a thrusting ship; called once per tick per ship. */
+    void exhaust(Ship sh, double dt) {
+        int n = dt >= 2 ? 2 : 1;
+        if (alive >= limit * 3 / 4) return; // exhaust is the first thing to go under load
+        double back = sh.angle + Math.PI;
+        double nozzleX = sh.x + Math.cos(back) * World.SHIP_SIZE / 2.0;
+        double nozzleY = sh.y + Math.sin(back) * World.SHIP_SIZE / 2.0;
+        for (int i = 0; i < n; i++) {
+            double angle = back + (random.nextDouble() - 0.5) * 0.6;
+            double speed = 1.5 + random.nextDouble() * 1.5;
+            spawn(nozzleX, nozzleY, sh.velX + Math.cos(angle) * speed, sh.velY + Math.sin(angle) * speed,
+                    8 + random.nextInt(8), PALETTE_FIRE);
+        }
+    }
+
+    private void spawn(double px, double py, double pvx, double pvy, int frames, int colors) {
+        int i = next;
+        next = (next + 1) & (CAPACITY - 1);
+        if (life[i] <= 0) alive++;
+        x[i] = px;
+        y[i] = py;
+        vx[i] = pvx;
+        vy[i] = pvy;
+        life[i] = frames;
+        maxLife[i] = frames;
+        palette[i] = (byte) colors;
+    }
+
+    /** Moves every particle by (dx, dy), for when the world is shifted under them. */
+    void translate(double dx, double dy) {
+        for (int i = 0; i < CAPACITY; i++) {
+            x[i] += dx;
+            y[i] += dy;
+        }
+    }
+
+    /** Advances every particle by one tick of {@code dt} frames. */
+    void update(double dt) {
+        if (alive == 0) return;
+        double drag = Math.pow(DRAG, dt);
+        int count = 0;
+        for (int i = 0; i < CAPACITY; i++) {
+            if (life[i] <= 0) continue;
+            life[i] -= dt;
+            if (life[i] <= 0) continue;
+            x[i] += vx[i] * dt;
+            y[i] += vy[i] * dt;
+            vx[i] *= drag;
+            vy[i] *= drag;
+            count++;
+        }
+        alive = count;
+    }
+
+    /**
+     * Draws up to drawLimit (and no more than limit) live particles, newest
+     * first, placing each with {@code view}; {@code alpha} and {@code dt}
+     * interpolate as for bullets. Only those on screen count against the
+     * limits, and towards drawn().
+     */
+    void draw(java.awt.Graphics2D g2d, View view, double alpha, double dt, double zoom) {
+        drawn = 0;
+        if (alive == 0) return;
+        long start = System.nanoTime();
+        int size = zoom >= 1.0 ? 2 : 1;
+        double back = dt * (1.0 - alpha);
+        java.awt.Color current = null;
+        int budget = Math.min(Math.min(drawLimit, limit), alive);
+        // Newest first, so a cut budget drops the particles closest to fading
+        for (int k = 1; k <= CAPACITY && drawn < budget; k++) {
+            int i = (next - k) & (CAPACITY - 1);
+            if (life[i] <= 0) continue;
+            double sx = view.screenX(x[i] - vx[i] * back);
+            double sy = view.screenY(y[i] - vy[i] * back);
+            if (sx < 0 || sy < 0 || sx >= view.width() || sy >= view.height()) continue;
+            drawn++;
+            int level = (int) (life[i] / maxLife[i] * FADE_LEVELS);
+            java.awt.Color color = COLORS[palette[i]][Math.min(level, FADE_LEVELS - 1)];
+            if (color != current) {
+                g2d.setColor(color);
+                current = color;
+            }
+            g2d.fillRect((int) sx, (int) sy, size, size);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (elapsed > FRAME_BUDGET_NANOS) {
+            drawLimit = Math.max(MIN_DRAW_LIMIT, drawn / 2);
+        } else if (drawLimit < CAPACITY) {
+            drawLimit = Math.min(CAPACITY, drawLimit + DRAW_LIMIT_STEP);
+        }
+    }
+
+    /** World to screen mapping supplied by the renderer. */
+    interface View {
+        double screenX(double worldX);
+
+        double screenY(double worldY);
+
+        int width();
+
+        int height();
+    }
+}
@@ -0,0 +1,179 @@
+package com.fishinspace;
+
+/**
+ * QualityGovernor.java
+ *
+ * Picks how much drawing each frame gets from how busy the loop thread has
+ * been, so a slow machine gives up eye candy before it gives up frames. The
+ * game loop reports the time each pass spent ticking and rendering; every
+ * WINDOW_NANOS of wall time the governor works out the load (the fraction of
+ * that time spent busy rather than waiting for the next frame) and moves one
+ * tier at a time:
+ *
+ *   - down a tier once the load has been above DOWNGRADE_LOAD for
+ *     DOWNGRADE_WINDOWS windows in a row;
+ *   - up a tier once it has been below UPGRADE_LOAD for upgradeWindows
+ *     windows in a row. The gap between the two thresholds, and the longer
+ *     wait going up, keep it from flapping; an upgrade that has to be undone
+ *     straight away doubles the wait before the next try.
+ *
+ * Tiers, each keeping what the ones below it drop:
+ *   TIER_HIGH     antialiasing, dashed aim beam, asteroid sprites, all particles
+ *   TIER_MEDIUM   no antialiasing, particles capped at 512
+ *   TIER_LOW      plain aim beam, aliased asteroid outlines, 128 particles,
+ *                 every second frame drawn
+ *   TIER_MINIMAL  square asteroid outlines, no particles, every third frame
+ *
+ * Only drawing changes; the simulation always runs at the full tick rate, so
+ * the tier never affects the game itself. Used from the loop thread only.
+ */
+final class QualityGovernor {
+    static final int TIER_HIGH = 0;
+    static final int TIER_MEDIUM = 1;
+    static final int TIER_LOW = 2;
+    static final int TIER_MINIMAL = 3;
+    static final String[] TIER_NAMES = {"high", "medium", "low", "minimal"};
+
+    private static final int[] PARTICLE_LIMITS = {Particles.CAPACITY, 512, 128, 0};
+    private static final int[] RENDER_DIVISORS = {1, 1, 2, 3};
+
+    // --- Hysteresis ---
+    static final long WINDOW_NANOS = 500_000_000L;
+    private static final double DOWNGRADE_LOAD = 0.75;
+    private static final double UPGRADE_LOAD = 0.35;
+    private static final int DOWNGRADE_WINDOWS = 2;
+    private static final int MIN_UPGRADE_WINDOWS = 6;   // three seconds
+    private static final int MAX_UPGRADE_WINDOWS = 120; // one minute
+    private static final int FAILED_UPGRADE_WINDOWS = 4; // a downgrade this soon after an upgrade undoes it
+
+    private boolean adaptive = true;
+    private int tier = TIER_HIGH;
+
+    // The current window
+    private long windowStart = -1;
+    private long busyNanos;
+    private long tickNanos;
+    private long renderNanos;
+    private int ticks;
+    private int frames;
+
+    // Results of the last complete window
+    private double load;
+    private long averageTickNanos;
+    private long averageFrameNanos;
+
+    private int overWindows;
+    private int underWindows;
+    private int upgradeWindows = MIN_UPGRADE_WINDOWS;
+    private int windowsSinceUpgrade = Integer.MAX_VALUE;
+
+    /** Pins the tier and stops adapting. */
+    void fix(int fixedTier) {
+        if (fixedTier < TIER_HIGH || fixedTier > TIER_MINIMAL) throw new IllegalArgumentException("no quality tier " + fixedTier);
+        tier = fixedTier;
+        adaptive = false;
+    }
+
+    /** "auto" for an adaptive governor, otherwise one of TIER_NAMES; returns -1 for auto. */
+    static int parseTier(String name) {
+        if (name.equals("auto")) return -1;
+        for (int t = 0; t < TIER_NAMES.length; t++) {
+            if (TIER_NAMES[t].equals(name)) return t;
+        }
+        throw new IllegalArgumentException("unknown quality: " + name + " (expected auto, high, medium, low or minimal)");
+    }
+
+    boolean isAdaptive() {
+        return adaptive;
+    }
+
+    int tier() {
+        return tier;
+    }
+
+    // --- What the current tier allows ---
+
+    boolean antialiasing() {
+        return tier == TIER_HIGH;
+    }
+
+    boolean simpleAimBeam() {
+        return tier >= TIER_LOW;
+    }
+
+    /** 0 for cached sprites, 1 for aliased ovals, 2 for squares. */
+    int asteroidOutline() {
+        return Math.max(0, tier - TIER_MEDIUM);
+    }
+
+    int particleLimit() {
+        return PARTICLE_LIMITS[tier];
+    }
+
+    /** Draw one frame out of this many at the configured render rate. */
+    int renderDivisor() {
+        return RENDER_DIVISORS[tier];
+    }
+
+    // --- Measurements ---
+
+    /** Busy fraction of the last window, 0..1 (more if the loop overran it). */
+    double load() {
+        return load;
+    }
+
+    long averageTickNanos() {
+        return averageTickNanos;
+    }
+
+    long averageFrameNanos() {
+        return averageFrameNanos;
+    }
+
+    /**
+     * One pass of the game loop finished at {@code now}: {@code tickCount}
+     * ticks took {@code tickTime} between them and drawing took
+     * {@code renderTime} (0 if no frame was drawn).
+     */
+    void record(int tickCount, long tickTime, long renderTime, long now) {
+        if (windowStart < 0) windowStart = now;
+        ticks += tickCount;
+        tickNanos += tickTime;
+        if (renderTime > 0) {
+            frames++;
+            renderNanos += renderTime;
+        }
+        busyNanos += tickTime + renderTime;
+        long elapsed = now - windowStart;
+        if (elapsed >= WINDOW_NANOS) {
+            endWindow(elapsed);
+            windowStart = now;
+        }
+    }
+
+    private void endWindow(long elapsed) {
+        load = (double) busyNanos / elapsed;
+        averageTickNanos = ticks > 0 ? tickNanos / ticks : 0;
+        averageFrameNanos = frames > 0 ? renderNanos / frames : 0;
+        busyNanos = tickNanos = renderNanos = 0;
+        ticks = frames = 0;
+        if (!adaptive) return;
+
+        if (windowsSinceUpgrade < Integer.MAX_VALUE) windowsSinceUpgrade++;
+        overWindows = load > DOWNGRADE_LOAD ? overWindows + 1 : 0;
+        underWindows = load < UPGRADE_LOAD ? underWindows + 1 : 0;
+        if (overWindows >= DOWNGRADE_WINDOWS && tier < TIER_MINIMAL) {
+            // The last upgrade did not hold: wait longer before trying it again
+            if (windowsSinceUpgrade <= DOWNGRADE_WINDOWS + FAILED_UPGRADE_WINDOWS) {
+                upgradeWindows = Math.min(MAX_UPGRADE_WINDOWS, upgradeWindows * 2);
+            }
+            tier++;
+            overWindows = underWindows = 0;
+            windowsSinceUpgrade = Integer.MAX_VALUE;
+        } else if (underWindows >= upgradeWindows && tier > TIER_HIGH) {
+            tier--;
+            overWindows = underWindows = 0;
+            windowsSinceUpgrade = 0;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.fishinspace;
+
+/**
+ * RenderCache.java
+ *
+ * Everything the renderer would otherwise rebuild on every frame: fonts,
+ * strokes, the ship outline, pre-rendered power-up and asteroid sprites, the
+ * start, pause and game-over screens as whole images, and the HUD as a
+ * translucent layer that is only redrawn when what it shows changes.
+ *
+ * Images are created compatible with the target GraphicsConfiguration so the
+ * pipeline can keep them in video memory; the cache is rebuilt when the
+ * configuration changes (e.g. the window moves to another screen).
+ */
+class RenderCache {
+
+    // --- Fonts ---
+    static final java.awt.Font TITLE_FONT = new java.awt.Font("Monospaced", java.awt.Font.BOLD, 75);
+    static final java.awt.Font MENU_FONT = new java.awt.Font("Monospaced", java.awt.Font.PLAIN, 30);
+    static final java.awt.Font MENU_BOLD_FONT = new java.awt.Font("Monospaced", java.awt.Font.BOLD, 30);
+    static final java.awt.Font PAUSED_FONT = new java.awt.Font("Monospaced", java.awt.Font.BOLD, 40);
+    static final java.awt.Font SCORE_FONT = new java.awt.Font("Monospaced", java.awt.Font.BOLD, 20);
+    static final java.awt.Font HUD_FONT = new java.awt.Font("Monospaced", java.awt.Font.PLAIN, 16);
+    static final java.awt.Font LABEL_FONT = new java.awt.Font("Monospaced", java.awt.Font.BOLD, 16);
+
+    // --- Strokes & Shapes ---
+    static final java.awt.Stroke AIM_BEAM_STROKE = new java.awt.BasicStroke(1, java.awt.BasicStroke.CAP_BUTT, java.awt.BasicStroke.JOIN_BEVEL, 0, new float[]{5}, 0);
+    static final java.awt.Stroke DEFAULT_STROKE = new java.awt.BasicStroke();
+    static final java.awt.Polygon SHIP_SHAPE = new java.awt.Polygon(
+            new int[]{World.SHIP_SIZE / 2, -World.SHIP_SIZE / 2, -World.SHIP_SIZE / 2},
+            new int[]{0, -World.SHIP_SIZE / 3, World.SHIP_SIZE / 3}, 3);
+    static final java.awt.Polygon FLAME_SHAPE = new java.awt.Polygon(
+            new int[]{-World.SHIP_SIZE / 2, -World.SHIP_SIZE, -World.SHIP_SIZE / 2},
+            new int[]{-World.SHIP_SIZE / 4, 0, World.SHIP_SIZE / 4}, 3);
+
+    // --- Power-up appearance, indexed by POWERUP_* type ---
+    private static final String[] POWERUP_LABELS = {"?", "A", "D", "B", "R"};
+    private static final java.awt.Color[] POWERUP_COLORS = {
+            java.awt.Color.WHITE, java.awt.Color.GREEN, java.awt.Color.BLUE, java.awt.Color.ORANGE, java.awt.Color.RED};
+
+    static final String CONTROLS_HINT = "P: Pause | R: Restart";
+    static final int HUD_HEIGHT = 60; // the HUD layer covers the top of the panel
+
+    private static final int[] ASTEROID_SIZES = {World.ASTEROID_SIZE_LARGE, World.ASTEROID_SIZE_MEDIUM, World.ASTEROID_SIZE_SMALL};
+    static final int ASTEROID_SPRITE_PAD = 1; // room for the antialiased outline
+
+    private final java.awt.GraphicsConfiguration config;
+    private final int width;
+    private final int height;
+    private final java.awt.image.BufferedImage[] powerUpSprites;
+    private final java.awt.image.BufferedImage[] asteroidSprites;
+    private java.awt.image.BufferedImage startScreen;
+    private java.awt.image.BufferedImage pausedOverlay;
+    private java.awt.image.BufferedImage gameOverScreen;
+    private int gameOverScore = -1;
+    private java.util.List<ScoreStore.Session> gameOverTable;
+    final int controlsHintX;
+
+    // HUD layer and the values it was last drawn with
+    private java.awt.image.BufferedImage hudLayer;
+    private int hudScore = -1;
+    private int hudPowerUp = -1;
+    private int hudSeconds = -1;
+    // Boxes around the text in the layer, as x, y, width, height; only these are blitted
+    private final int[] hudBoxes = new int[3 * 4];
+    private int hudBoxCount;
+
+    RenderCache(java.awt.GraphicsConfiguration config, int width, int height) {
+        this.config = config;
+        this.width = width;
+        this.height = height;
+
+        powerUpSprites = new java.awt.image.BufferedImage[POWERUP_LABELS.length];
+        for (int type = 0; type < powerUpSprites.length; type++) {
+            powerUpSprites[type] = renderPowerUpSprite(type);
+        }
+        asteroidSprites = new java.awt.image.BufferedImage[ASTEROID_SIZES.length];
+        for (int i = 0; i < ASTEROID_SIZES.length; i++) {
+            asteroidSprites[i] = renderAsteroidSprite(ASTEROID_SIZES[i]);
+        }
+
+        java.awt.image.BufferedImage scratch = createImage(1, 1, java.awt.Transparency.TRANSLUCENT);
+        java.awt.Graphics2D g2d = scratch.createGraphics();
+        controlsHintX = width - g2d.getFontMetrics(SCORE_FONT).stringWidth(CONTROLS_HINT) - 10;
+        g2d.dispose();
+    }
+
+    boolean isFor(java.awt.GraphicsConfiguration config) {
+        return this.config == config;
+    }
+
+    java.awt.image.BufferedImage powerUpSprite(int type) {
+        return powerUpSprites[type >= 0 && type < powerUpSprites.length ? type : World.POWERUP_NONE];
+    }
+
+    /** The outline sprite for an asteroid size, or null for a size with no sprite. */
+    java.awt.image.BufferedImage asteroidSprite(int size) {
+        for (int i = 0; i < ASTEROID_SIZES.length; i++) {
+            if (ASTEROID_SIZES[i] == size) return asteroidSprites[i];
+        }
+        return null;
+    }
+
+    /**
+     * Draws the HUD: score, controls hint and, unless {@code powerUp} is
+     * POWERUP_NONE, the active power-up with its seconds left. The layer is
+     * redrawn only when one of those values changes, and only the boxes
+     * around its text are copied to the frame.
+     */
+    void drawHud(java.awt.Graphics2D target, int score, int powerUp, int seconds) {
+        if (hudLayer == null || score != hudScore || powerUp != hudPowerUp || seconds != hudSeconds) {
+            if (hudLayer == null) {
+                hudLayer = createImage(width, HUD_HEIGHT, java.awt.Transparency.TRANSLUCENT);
+            }
+            java.awt.Graphics2D g2d = beginScreen(hudLayer, new java.awt.Color(0, 0, 0, 0));
+            g2d.setColor(java.awt.Color.WHITE);
+            hudBoxCount = 0;
+            drawHudText(g2d, "Score: " + score, SCORE_FONT, 10, 25);
+            drawHudText(g2d, CONTROLS_HINT, SCORE_FONT, controlsHintX, 25);
+            if (powerUp != World.POWERUP_NONE) {
+                drawHudText(g2d, "PowerUp: " + World.POWERUP_NAMES[powerUp] + " (" + seconds + "s)", HUD_FONT, 10, 50);
+            }
+            g2d.dispose();
+            hudScore = score;
+            hudPowerUp = powerUp;
+            hudSeconds = seconds;
+        }
+        for (int i = 0; i < hudBoxCount * 4; i += 4) {
+            int x = hudBoxes[i], y = hudBoxes[i + 1], w = hudBoxes[i + 2], h = hudBoxes[i + 3];
+            target.drawImage(hudLayer, x, y, x + w, y + h, x, y, x + w, y + h, null);
+        }
+    }
+
+    private void drawHudText(java.awt.Graphics2D g2d, String text, java.awt.Font font, int x, int y) {
+        g2d.setFont(font);
+        g2d.drawString(text, x, y);
+        // A couple of pixels spare for antialiasing and overhanging glyphs
+        java.awt.FontMetrics metrics = g2d.getFontMetrics();
+        int top = Math.max(0, y - metrics.getMaxAscent() - 2);
+        int bottom = Math.min(HUD_HEIGHT, y + metrics.getMaxDescent() + 2);
+        int left = Math.max(0, x - 2);
+        int right = Math.min(width, x + metrics.stringWidth(text) + 2);
+        int i = hudBoxCount++ * 4;
+        hudBoxes[i] = left;
+        hudBoxes[i + 1] = top;
+        hudBoxes[i + 2] = right - left;
+        hudBoxes[i + 3] = bottom - top;
+    }
+
+    // Start screen with instructions
+    java.awt.image.BufferedImage startScreen() {
+        if (startScreen == null) {
+            String title = "Space Invaders";
+            String msg = "Press ENTER to Start";
+            String controls = "Arrows: Move  |  SPACE: Shoot  |  P: Pause  |  R: Restart";
+
+            startScreen = createImage(width, height, java.awt.Transparency.OPAQUE);
+            java.awt.Graphics2D g2d = beginScreen(startScreen, java.awt.Color.BLACK);
+            g2d.setColor(java.awt.Color.WHITE);
+            drawCentered(g2d, title, TITLE_FONT, height / 2 - 40);
+            drawCentered(g2d, msg, MENU_FONT, height / 2 + 10);
+            drawCentered(g2d, controls, HUD_FONT, height / 2 + 50);
+            g2d.dispose();
+        }
+        return startScreen;
+    }
+
+    // Pause overlay, drawn over the frozen game
+    java.awt.image.BufferedImage pausedOverlay() {
+        if (pausedOverlay == null) {
+            pausedOverlay = createImage(width, height, java.awt.Transparency.TRANSLUCENT);
+            java.awt.Graphics2D g2d = beginScreen(pausedOverlay, new java.awt.Color(0, 0, 0, 150));
+            g2d.setColor(java.awt.Color.YELLOW);
+            drawCentered(g2d, "PAUSED", PAUSED_FONT, height / 2);
+            g2d.dispose();
+        }
+        return pausedOverlay;
+    }
+
+    /** {@code table} is the high score table to show under it, or null. */
+    java.awt.image.BufferedImage gameOverScreen(int score, java.util.List<ScoreStore.Session> table) {
+        if (gameOverScreen == null || score != gameOverScore || table != gameOverTable) {
+            if (gameOverScreen == null) {
+                gameOverScreen = createImage(width, height, java.awt.Transparency.OPAQUE);
+            }
+            java.awt.Graphics2D g2d = beginScreen(gameOverScreen, java.awt.Color.BLACK);
+            g2d.setColor(java.awt.Color.RED);
+            drawCentered(g2d, "Game Over", TITLE_FONT, height / 2 - 50);
+            g2d.setColor(java.awt.Color.WHITE);
+            drawCentered(g2d, "Final Score: " + score, MENU_BOLD_FONT, height / 2 + 20);
+            drawCentered(g2d, "Press 'R' to Restart", MENU_BOLD_FONT, height / 2 + 60);
+            drawCentered(g2d, "Press 'Q' to Quit", MENU_BOLD_FONT, height / 2 + 100);
+            if (table != null && !table.isEmpty()) {
+                g2d.setColor(java.awt.Color.YELLOW);
+                drawCentered(g2d, "HIGH SCORES", LABEL_FONT, height / 2 + 150);
+                g2d.setColor(java.awt.Color.WHITE);
+                for (int i = 0; i < table.size(); i++) {
+                    ScoreStore.Session s = table.get(i);
+                    String name = s.player.length() > 12 ? s.player.substring(0, 12) : s.player;
+                    drawCentered(g2d, String.format("%d. %-12s %7d", i + 1, name, s.score), HUD_FONT,
+                            height / 2 + 175 + 20 * i);
+                }
+            }
+            g2d.dispose();
+            gameOverScore = score;
+            gameOverTable = table;
+        }
+        return gameOverScreen;
+    }
+
+    private java.awt.image.BufferedImage renderPowerUpSprite(int type) {
+        int s = World.POWERUP_SIZE;
+        java.awt.image.BufferedImage sprite = createImage(s, s, java.awt.Transparency.OPAQUE);
+        java.awt.Graphics2D g2d = sprite.createGraphics();
+        g2d.setRenderingHint(java.awt.RenderingHints.KEY_ANTIALIASING, java.awt.RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setColor(POWERUP_COLORS[type]);
+        g2d.fillRect(0, 0, s, s);
+        g2d.setColor(java.awt.Color.BLACK);
+        g2d.setFont(LABEL_FONT);
+        // Same placement as the old per-frame drawString at (x - 4, y + 5)
+        g2d.drawString(POWERUP_LABELS[type], s / 2 - 4, s / 2 + 5);
+        g2d.dispose();
+        return sprite;
+    }
+
+    private java.awt.image.BufferedImage renderAsteroidSprite(int size) {
+        int extent = size + 1 + 2 * ASTEROID_SPRITE_PAD;
+        java.awt.image.BufferedImage sprite = createImage(extent, extent, java.awt.Transparency.TRANSLUCENT);
+        java.awt.Graphics2D g2d = sprite.createGraphics();
+        g2d.setRenderingHint(java.awt.RenderingHints.KEY_ANTIALIASING, java.awt.RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setColor(java.awt.Color.GRAY);
+        g2d.drawOval(ASTEROID_SPRITE_PAD, ASTEROID_SPRITE_PAD, size, size);
+        g2d.dispose();
+        return sprite;
+    }
+
+    private java.awt.Graphics2D beginScreen(java.awt.image.BufferedImage image, java.awt.Color background) {
+        java.awt.Graphics2D g2d = image.createGraphics();
+        g2d.setComposite(java.awt.AlphaComposite.Src);
+        g2d.setColor(background);
+        g2d.fillRect(0, 0, width, height);
+        g2d.setComposite(java.awt.AlphaComposite.SrcOver);
+        g2d.setRenderingHint(java.awt.RenderingHints.KEY_ANTIALIASING, java.awt.RenderingHints.VALUE_ANTIALIAS_ON);
+        return g2d;
+    }
+
+    private void drawCentered(java.awt.Graphics2D g2d, String text, java.awt.Font font, int y) {
+        g2d.setFont(font);
+        g2d.drawString(text, (width - g2d.getFontMetrics().stringWidth(text)) / 2, y);
+    }
+
+    private java.awt.image.BufferedImage createImage(int w, int h, int transparency) {
+        if (config != null) {
+            return config.createCompatibleImage(w, h, transparency);
+        }
+        int type = transparency == java.awt.Transparency.OPAQUE
+                ? java.awt.image.BufferedImage.TYPE_INT_RGB
+                : java.awt.image.BufferedImage.TYPE_INT_ARGB;
+        return new java.awt.image.BufferedImage(w, h, type);
+    }
+}
@@ -0,0 +1,201 @@
+package com.fishinspace;
+
+/**
+ * ReplayPlayer.java
+ *
+ * Plays back a file written by {@link ReplayRecorder}. The file is mapped
+ * read-only into memory, so even very long sessions are read straight from
+ * the page cache without copying. Playback is headless and runs as fast as
+ * the world can be stepped; {@link #seek(long)} fast-forwards to any tick
+ * (rewinding to the start first when the target is behind).
+ *
+ * With --frames=DIR the playback is also rendered, offscreen, into numbered
+ * image files (see {@link FrameCapture}), from the start up to the --seek
+ * tick or the end. Encoding runs on --encoders threads while the next frames
+ * are drawn; no frame is dropped, playback waits for the encoders instead.
+ * --every=N keeps one tick in N, so --every=2 turns a 60 tick/s recording
+ * into a 30 fps clip.
+ *
+ * Run: java -Djava.awt.headless=true com.fishinspace.ReplayPlayer file.rpl [--seek=tick]
+ *          [--frames=DIR] [--format=png|raw] [--every=N] [--encoders=N]
+ */
+public class ReplayPlayer {
+    private final java.nio.MappedByteBuffer data;
+    private final int tickRate;
+    private final long seed;
+    private final long rngState;
+    private final long tickCount;
+    private final int headerSize;
+    private final int width;
+    private final int height;
+    private final int asteroidInitCount;
+    private final boolean sweptCollisions;
+
+    private World world;
+    private int position;
+    private long tick;
+
+    private ReplayPlayer(java.nio.MappedByteBuffer data) throws java.io.IOException {
+        this.data = data;
+        byte[] magic = new byte[ReplayRecorder.MAGIC.length];
+        data.get(0, magic);
+        if (!java.util.Arrays.equals(magic, ReplayRecorder.MAGIC)) {
+            throw new java.io.IOException("not a replay file");
+        }
+        int version = data.getInt(8);
+        if (version < 1 || version > ReplayRecorder.VERSION) {
+            throw new java.io.IOException("unsupported replay version " + version);
+        }
+        tickRate = data.getInt(12);
+        seed = data.getLong(16);
+        rngState = data.getLong(24);
+        tickCount = data.getLong(ReplayRecorder.TICK_COUNT_OFFSET);
+        if (version == 1) {
+            headerSize = ReplayRecorder.HEADER_SIZE_V1;
+            width = World.WIDTH;
+            height = World.HEIGHT;
+            asteroidInitCount = World.ASTEROID_INIT_COUNT;
+            sweptCollisions = false;
+        } else {
+            headerSize = version == 2 ? ReplayRecorder.HEADER_SIZE_V2 : ReplayRecorder.HEADER_SIZE;
+            if (data.limit() < headerSize) {
+                throw new java.io.IOException("replay file too short");
+            }
+            width = data.getInt(40);
+            height = data.getInt(44);
+            asteroidInitCount = data.getInt(48);
+            sweptCollisions = version > 2 && (data.getInt(52) & ReplayRecorder.FLAG_SWEPT_COLLISIONS) != 0;
+        }
+        rewind();
+    }
+
+    static ReplayPlayer open(java.nio.file.Path path) throws java.io.IOException {
+        try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(path, java.nio.file.StandardOpenOption.READ)) {
+            if (channel.size() < ReplayRecorder.HEADER_SIZE_V1) {
+                throw new java.io.IOException("replay file too short");
+            }
+            // The mapping stays valid after the channel is closed
+            return new ReplayPlayer(channel.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /** Recreates the world as it was when recording began. */
+    void rewind() {
+        world = new World(seed, width, height);
+        world.setTickRate(tickRate);
+        world.asteroidInitCount = asteroidInitCount;
+        world.setSweptCollisions(sweptCollisions);
+        world.random.setState(rngState);
+        world.reset();
+        position = headerSize;
+        tick = 0;
+    }
+
+    /** Plays the next tick. Returns false at the end of the recording. */
+    boolean step() {
+        int limit = data.limit();
+        while (position < limit) {
+            int record = data.get(position++) & 0xFF;
+            if (record == ReplayRecorder.RECORD_RESET) {
+                world.reset();
+                continue;
+            }
+            world.step(record);
+            tick++;
+            return true;
+        }
+        return false;
+    }
+
+    /** Moves playback to {@code target} ticks from the start, or to the end if shorter. */
+    void seek(long target) {
+        if (target < tick) rewind();
+        while (tick < target && step()) {
+        }
+    }
+
+    World world() {
+        return world;
+    }
+
+    long tick() {
+        return tick;
+    }
+
+    /** Number of ticks in the recording, as written by the recorder. */
+    long tickCount() {
+        return tickCount;
+    }
+
+    /**
+     * Plays from the start up to {@code target}, drawing every
+     * {@code every}th tick into {@code capture}. Blocks while the capture's
+     * encoders are behind, if it does not drop frames.
+     */
+    void render(long target, int every, FrameCapture capture) {
+        rewind();
+        AsteroidDestroyer view = AsteroidDestroyer.viewOf(world);
+        view.setSize(capture.width(), capture.height());
+        while (tick < target && step()) {
+            view.updateEffects();
+            if (tick % every != 0) continue;
+            FrameCapture.Frame frame = capture.acquire();
+            if (frame == null) continue;
+            java.awt.Graphics2D g2d = frame.image.createGraphics();
+            try {
+                g2d.setColor(view.getBackground());
+                g2d.fillRect(0, 0, frame.image.getWidth(), frame.image.getHeight());
+                view.render(g2d, 1.0);
+            } finally {
+                g2d.dispose();
+            }
+            capture.submit(frame);
+        }
+    }
+
+    public static void main(String[] args) throws java.io.IOException {
+        if (args.length == 0) {
+            System.err.println("usage: ReplayPlayer file.rpl [--seek=tick] [--frames=DIR] [--format=png|raw] [--every=N] [--encoders=N]");
+            System.exit(2);
+        }
+        long target = Long.MAX_VALUE;
+        String framesPath = null;
+        int format = FrameCapture.FORMAT_PNG;
+        int every = 1;
+        int encoders = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--seek=")) target = Long.parseLong(args[i].substring("--seek=".length()));
+            else if (args[i].startsWith("--frames=")) framesPath = args[i].substring("--frames=".length());
+            else if (args[i].startsWith("--format=")) format = FrameCapture.parseFormat(args[i].substring("--format=".length()));
+            else if (args[i].startsWith("--every=")) every = Math.max(1, Integer.parseInt(args[i].substring("--every=".length())));
+            else if (args[i].startsWith("--encoders=")) encoders = Math.max(1, Integer.parseInt(args[i].substring("--encoders=".length())));
+        }
+
+        ReplayPlayer player = open(java.nio.file.Paths.get(args[0]));
+        long start = System.nanoTime();
+        FrameCapture capture = null;
+        if (framesPath == null) {
+            player.seek(target);
+        } else {
+            // The panel draws at its own size; the view follows the ship in larger worlds
+            capture = new FrameCapture(java.nio.file.Paths.get(framesPath), World.WIDTH, World.HEIGHT, format, encoders,
+                    FrameCapture.DEFAULT_QUEUE_DEPTH, false);
+            try {
+                player.render(target, every, capture);
+            } finally {
+                capture.close();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        World world = player.world();
+        System.out.printf("seed=%d tickRate=%d ticks=%d/%d score=%d gameOver=%b time=%.3fs rate=%.0f ticks/s%n",
+                world.getSeed(), world.getTickRate(), player.tick(), player.tickCount(), world.getScore(),
+                world.isGameOver(), seconds, player.tick() / Math.max(seconds, 1e-9));
+        if (capture != null) {
+            System.out.printf("frames=%d dir=%s rate=%.1f frames/s (%.1fx real time)%n", capture.written(), framesPath,
+                    capture.written() / Math.max(seconds, 1e-9),
+                    player.tick() / (double) world.getTickRate() / Math.max(seconds, 1e-9));
+        }
+    }
+}
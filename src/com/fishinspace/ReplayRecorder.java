@@ -0,0 +1,119 @@
+package com.fishinspace;
+
+/**
+ * ReplayRecorder.java
+ *
+ * Writes the inputs fed to a {@link World} to a compact binary replay file.
+ * Since the world is deterministic, the seed, the generator state and one
+ * byte of input per tick are enough to reproduce the whole session.
+ *
+ * --- FORMAT ---
+ * Header (56 bytes, big-endian):
+ *   0  8 bytes  magic "FISHRPL1"
+ *   8  int      format version
+ *  12  int      tick rate (Hz)
+ *  16  long     world seed (informational)
+ *  24  long     Rng state just before the initial reset
+ *  32  long     number of tick records (patched on close)
+ *  40  int      play field width
+ *  44  int      play field height
+ *  48  int      asteroids at the start of a game
+ *  52  int      flags: FLAG_SWEPT_COLLISIONS
+ * Version 1 files end the header at 40 bytes and use the default field;
+ * version 2 files end it at 52 and predate swept collisions.
+ * Records, one byte each:
+ *   0x00..0x1F  one tick, the byte being the INPUT_* mask
+ *   0x80        World.reset() happens here
+ */
+class ReplayRecorder implements java.io.Closeable {
+    static final byte[] MAGIC = {'F', 'I', 'S', 'H', 'R', 'P', 'L', '1'};
+    static final int VERSION = 3;
+    static final int HEADER_SIZE = 56;
+    static final int HEADER_SIZE_V1 = 40;
+    static final int HEADER_SIZE_V2 = 52;
+    static final int FLAG_SWEPT_COLLISIONS = 1;
+    static final int TICK_COUNT_OFFSET = 32;
+    static final int RECORD_RESET = 0x80;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final java.nio.channels.FileChannel channel;
+    private final java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long ticks;
+    private boolean closed;
+
+    private ReplayRecorder(java.nio.channels.FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Starts recording into {@code path}. The world is reset as part of this,
+     * so the recording begins at the start of a fresh game.
+     */
+    static ReplayRecorder start(java.nio.file.Path path, World world) throws java.io.IOException {
+        java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(path,
+                java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.WRITE,
+                java.nio.file.StandardOpenOption.TRUNCATE_EXISTING);
+        ReplayRecorder recorder = new ReplayRecorder(channel);
+        recorder.buffer.put(MAGIC)
+                .putInt(VERSION)
+                .putInt(world.getTickRate())
+                .putLong(world.getSeed())
+                .putLong(world.random.getState())
+                .putLong(0)
+                .putInt(world.width)
+                .putInt(world.height)
+                .putInt(world.asteroidInitCount)
+                .putInt(world.isSweptCollisions() ? FLAG_SWEPT_COLLISIONS : 0);
+        world.reset();
+        return recorder;
+    }
+
+    /** Records that the world was reset. Call before the reset's first tick. */
+    synchronized void reset() {
+        put(RECORD_RESET);
+    }
+
+    /** Records the inputs of one {@link World#step(int)}. */
+    synchronized void tick(int inputs) {
+        put(inputs & 0x1F);
+        ticks++;
+    }
+
+    long ticks() {
+        return ticks;
+    }
+
+    @Override
+    public synchronized void close() throws java.io.IOException {
+        if (closed) return;
+        closed = true;
+        flush();
+        java.nio.ByteBuffer count = java.nio.ByteBuffer.allocate(8).putLong(0, ticks);
+        channel.write(count, TICK_COUNT_OFFSET);
+        channel.force(true);
+        channel.close();
+    }
+
+    private void put(int record) {
+        if (closed) return;
+        if (!buffer.hasRemaining()) {
+            try {
+                flush();
+            } catch (java.io.IOException e) {
+                System.err.println("ReplayRecorder: write failed, recording stopped: " + e);
+                closed = true;
+                return;
+            }
+        }
+        buffer.put((byte) record);
+    }
+
+    private void flush() throws java.io.IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
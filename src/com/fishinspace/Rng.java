@@ -0,0 +1,57 @@
+package com.fishinspace;
+
+/**
+ * Rng.java
+ *
+ * The 48-bit linear congruential generator of java.util.Random, reproduced
+ * so that its state can be read and restored. A world seeded with N draws
+ * exactly the numbers {@code new java.util.Random(N)} would.
+ *
+ * Not thread-safe: every world owns its own instance and only the thread
+ * stepping that world touches it.
+ */
+class Rng {
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long state;
+
+    Rng(long seed) {
+        setSeed(seed);
+    }
+
+    void setSeed(long seed) {
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    /** The raw generator state, for snapshots and replays. */
+    long getState() {
+        return state;
+    }
+
+    void setState(long state) {
+        this.state = state & MASK;
+    }
+
+    private int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    int nextInt(int bound) {
+        int r = next(31);
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return (int) ((bound * (long) r) >> 31);
+        }
+        for (int u = r; u - (r = u % bound) + m < 0; u = next(31)) {
+        }
+        return r;
+    }
+
+    double nextDouble() {
+        return (((long) next(26) << 27) + next(27)) * DOUBLE_UNIT;
+    }
+}
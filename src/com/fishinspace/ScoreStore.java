@@ -0,0 +1,465 @@
+package com.fishinspace;
+
+/**
+ * ScoreStore.java
+ *
+ * Keeps every finished game on disk: an append-only log of session records
+ * (player, score, duration, power-ups collected, seed, ...) and a
+ * memory-mapped index over it for the high score table and per-player
+ * history.
+ *
+ * Games hand their sessions to {@link #submit}, which only queues them. A
+ * writer thread takes whatever has queued up, appends the lot to the log and
+ * makes it durable with a single force() (group commit), then adds the new
+ * sessions to the index and publishes a fresh high score table for
+ * {@link #top()}. The game never waits on the disk.
+ *
+ * The log is the only thing that has to survive a crash. Each record carries
+ * a CRC32C, and opening the store truncates the log after the last intact
+ * record, so a write torn by a crash or power cut loses only the sessions
+ * of the group being written. The index is derived: it remembers how much of
+ * the log it covers, is brought up to date from the log when it lags behind,
+ * and is rebuilt from scratch if it does not fit the log.
+ *
+ * --- FORMAT ---
+ * sessions.log (big-endian):
+ *   0  8 bytes  magic "FISHSCR1"
+ *   8  records: int payload length, payload, int CRC32C of length and payload
+ * Payload:
+ *   long ended at (ms since the epoch), long seed, int score, long ticks,
+ *   int tick rate, int asteroids destroyed, 4 x int power-ups collected (by
+ *   type, POWERUP_AIM_BEAM first), short name length, name (UTF-8)
+ * sessions.idx (native order, memory-mapped):
+ *   0  8 bytes  magic "FISHIDX1"
+ *   8  int      entries
+ *  12  int      reserved
+ *  16  long     log bytes covered
+ *  24  entries of 16 bytes: long log offset, int score, int player hash
+ */
+final class ScoreStore implements java.io.Closeable {
+    static final String LOG_FILE = "sessions.log";
+    static final String INDEX_FILE = "sessions.idx";
+    static final byte[] LOG_MAGIC = {'F', 'I', 'S', 'H', 'S', 'C', 'R', '1'};
+    static final byte[] INDEX_MAGIC = {'F', 'I', 'S', 'H', 'I', 'D', 'X', '1'};
+    static final int TABLE_SIZE = 5; // sessions in the published high score table
+    static final int MAX_NAME_BYTES = 64;
+
+    private static final int LOG_HEADER_SIZE = 8;
+    private static final int PAYLOAD_FIXED_SIZE = 8 + 8 + 4 + 8 + 4 + 4 + 4 * 4 + 2;
+    private static final int MAX_PAYLOAD_SIZE = PAYLOAD_FIXED_SIZE + MAX_NAME_BYTES;
+    private static final int INDEX_HEADER_SIZE = 24;
+    private static final int ENTRY_SIZE = 16;
+    private static final int INITIAL_INDEX_ENTRIES = 1024;
+    private static final int MAX_GROUP = 256; // sessions per commit
+
+    /** One finished game. */
+    static final class Session {
+        final String player;
+        final int score;
+        final long ticks;
+        final int tickRate;
+        final long seed;
+        final int asteroidsDestroyed;
+        final int[] powerUpsCollected; // by POWERUP_* type; slot 0 unused
+        final long endedAt;
+
+        Session(String player, int score, long ticks, int tickRate, long seed, int asteroidsDestroyed,
+                int[] powerUpsCollected, long endedAt) {
+            this.player = player;
+            this.score = score;
+            this.ticks = ticks;
+            this.tickRate = tickRate;
+            this.seed = seed;
+            this.asteroidsDestroyed = asteroidsDestroyed;
+            this.powerUpsCollected = powerUpsCollected;
+            this.endedAt = endedAt;
+        }
+
+        /** The session {@code world} has just finished, played by {@code player}. */
+        static Session of(World world, String player) {
+            return new Session(player, world.getScore(), world.getTick(), world.getTickRate(), world.getSeed(),
+                    world.asteroidsDestroyed, world.powerUpsCollected.clone(), System.currentTimeMillis());
+        }
+
+        double seconds() {
+            return (double) ticks / tickRate;
+        }
+    }
+
+    private final java.nio.channels.FileChannel log;
+    private final java.nio.channels.FileChannel indexChannel;
+    private java.nio.MappedByteBuffer index;
+    private int entries;
+    private long logEnd;
+
+    private final java.util.concurrent.ConcurrentLinkedQueue<Pending> pending = new java.util.concurrent.ConcurrentLinkedQueue<>(); // lock-free
+    private final Thread writer;
+    private volatile boolean closing;
+    private volatile java.util.List<Session> table = java.util.Collections.emptyList();
+    private final java.util.zip.CRC32C crc = new java.util.zip.CRC32C(); // writer thread, or under the lock when opening
+
+    private static final class Pending {
+        final Session session; // null: the writer should stop
+        final java.util.concurrent.CompletableFuture<Void> done = new java.util.concurrent.CompletableFuture<>();
+
+        Pending(Session session) {
+            this.session = session;
+        }
+    }
+
+    private ScoreStore(java.nio.channels.FileChannel log, java.nio.channels.FileChannel indexChannel) {
+        this.log = log;
+        this.indexChannel = indexChannel;
+        writer = new Thread(this::commitLoop, "score-store");
+        writer.setDaemon(true);
+    }
+
+    /**
+     * Opens the store in {@code directory}, creating it if needed, and
+     * recovers from whatever state a crash left it in. Does disk I/O; call it
+     * before the game starts, not from the loop thread.
+     */
+    static ScoreStore open(java.nio.file.Path directory) throws java.io.IOException {
+        java.nio.file.Files.createDirectories(directory);
+        java.nio.channels.FileChannel log = java.nio.channels.FileChannel.open(directory.resolve(LOG_FILE),
+                java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.READ,
+                java.nio.file.StandardOpenOption.WRITE);
+        java.nio.channels.FileChannel indexChannel;
+        try {
+            indexChannel = java.nio.channels.FileChannel.open(directory.resolve(INDEX_FILE),
+                    java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.READ,
+                    java.nio.file.StandardOpenOption.WRITE);
+        } catch (java.io.IOException e) {
+            log.close();
+            throw e;
+        }
+        ScoreStore store = new ScoreStore(log, indexChannel);
+        try {
+            synchronized (store) {
+                store.recover();
+                store.table = store.top(TABLE_SIZE);
+            }
+        } catch (java.io.IOException | RuntimeException e) {
+            log.close();
+            indexChannel.close();
+            throw e;
+        }
+        store.writer.start();
+        return store;
+    }
+
+    /**
+     * Queues a finished session for the next group commit and returns at
+     * once, without taking a lock; the future completes when it is durable
+     * and in the index.
+     */
+    java.util.concurrent.CompletableFuture<Void> submit(Session session) {
+        Pending p = new Pending(session);
+        if (closing) {
+            p.done.completeExceptionally(new IllegalStateException("score store is closed"));
+        } else {
+            pending.add(p);
+            // close() may have drained the queue between the check and the
+            // add. Whoever takes p off the queue completes it: the writer,
+            // close()'s drain, or this remove
+            if (closing && pending.remove(p)) {
+                p.done.completeExceptionally(new IllegalStateException("score store is closed"));
+            }
+            java.util.concurrent.locks.LockSupport.unpark(writer);
+        }
+        return p.done;
+    }
+
+    /** The high score table as of the last commit, best first. Never blocks. */
+    java.util.List<Session> top() {
+        return table;
+    }
+
+    /** Sessions in the store. */
+    synchronized int size() {
+        return entries;
+    }
+
+    /** The {@code n} best sessions, best first; equal scores in the order they were played. */
+    synchronized java.util.List<Session> top(int n) throws java.io.IOException {
+        if (n <= 0) return java.util.Collections.emptyList();
+        int[] bestScores = new int[n];
+        long[] bestOffsets = new long[n];
+        int found = 0;
+        // One pass over the index, keeping the n best seen in order
+        for (int i = 0; i < entries; i++) {
+            int at = INDEX_HEADER_SIZE + i * ENTRY_SIZE;
+            int score = index.getInt(at + 8);
+            if (found == n && score <= bestScores[n - 1]) continue;
+            int k = Math.min(found, n - 1);
+            while (k > 0 && bestScores[k - 1] < score) {
+                bestScores[k] = bestScores[k - 1];
+                bestOffsets[k] = bestOffsets[k - 1];
+                k--;
+            }
+            bestScores[k] = score;
+            bestOffsets[k] = index.getLong(at);
+            if (found < n) found++;
+        }
+        java.util.List<Session> result = new java.util.ArrayList<>(found);
+        for (int k = 0; k < found; k++) {
+            result.add(read(bestOffsets[k]));
+        }
+        return java.util.Collections.unmodifiableList(result);
+    }
+
+    /** Up to {@code limit} of {@code player}'s sessions, most recent first. */
+    synchronized java.util.List<Session> forPlayer(String player, int limit) throws java.io.IOException {
+        int hash = player.hashCode();
+        java.util.List<Session> result = new java.util.ArrayList<>();
+        for (int i = entries - 1; i >= 0 && result.size() < limit; i--) {
+            int at = INDEX_HEADER_SIZE + i * ENTRY_SIZE;
+            if (index.getInt(at + 12) != hash) continue;
+            Session s = read(index.getLong(at));
+            if (s.player.equals(player)) result.add(s); // not just a hash collision
+        }
+        return result;
+    }
+
+    /** Commits whatever is still queued, then closes the files. */
+    @Override
+    public void close() throws java.io.IOException {
+        if (closing) return;
+        closing = true;
+        // Not an interrupt: that would close the channels under a write
+        pending.add(new Pending(null));
+        java.util.concurrent.locks.LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything that slipped in after the stop
+        for (Pending p; (p = pending.poll()) != null; ) {
+            p.done.completeExceptionally(new IllegalStateException("score store is closed"));
+        }
+        synchronized (this) {
+            index.force();
+            log.close();
+            indexChannel.close();
+        }
+    }
+
+    // --- Writer thread ---
+
+    private void commitLoop() {
+        java.util.List<Pending> group = new java.util.ArrayList<>(MAX_GROUP);
+        java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocate(MAX_GROUP * (MAX_PAYLOAD_SIZE + 8));
+        boolean stop = false;
+        while (!stop) {
+            // Everything queued by now goes into this group, up to MAX_GROUP
+            for (Pending p; group.size() < MAX_GROUP && (p = pending.poll()) != null; ) {
+                if (p.session == null) {
+                    stop = true; // anything queued before the stop is still committed
+                } else {
+                    group.add(p);
+                }
+            }
+            if (group.isEmpty()) {
+                if (!stop) java.util.concurrent.locks.LockSupport.park(this);
+                continue;
+            }
+            try {
+                commit(group, buffer);
+                for (Pending p : group) p.done.complete(null);
+            } catch (java.io.IOException | RuntimeException e) {
+                System.err.println("ScoreStore: could not save " + group.size() + " session(s): " + e);
+                for (Pending p : group) p.done.completeExceptionally(e);
+            }
+            group.clear();
+        }
+    }
+
+    private void commit(java.util.List<Pending> group, java.nio.ByteBuffer buffer) throws java.io.IOException {
+        buffer.clear();
+        long[] offsets = new long[group.size()];
+        long at = logEnd;
+        for (int i = 0; i < group.size(); i++) {
+            offsets[i] = at + buffer.position();
+            encode(group.get(i).session, buffer);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            at += log.write(buffer, at);
+        }
+        log.force(false); // the one sync for the whole group
+
+        synchronized (this) {
+            for (int i = 0; i < group.size(); i++) {
+                Session s = group.get(i).session;
+                addEntry(offsets[i], s.score, s.player.hashCode());
+            }
+            setLogEnd(at);
+            table = top(TABLE_SIZE);
+        }
+    }
+
+    private void encode(Session s, java.nio.ByteBuffer buffer) {
+        byte[] name = nameBytes(s.player);
+        int start = buffer.position();
+        buffer.putInt(PAYLOAD_FIXED_SIZE + name.length)
+                .putLong(s.endedAt)
+                .putLong(s.seed)
+                .putInt(s.score)
+                .putLong(s.ticks)
+                .putInt(s.tickRate)
+                .putInt(s.asteroidsDestroyed);
+        for (int type = World.POWERUP_AIM_BEAM; type <= World.POWERUP_RAPID_FIRE; type++) {
+            buffer.putInt(s.powerUpsCollected[type]);
+        }
+        buffer.putShort((short) name.length).put(name);
+        crc.reset();
+        crc.update(buffer.array(), start, buffer.position() - start);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    // UTF-8, cut to MAX_NAME_BYTES without splitting a character
+    private static byte[] nameBytes(String player) {
+        byte[] bytes = player.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_NAME_BYTES) return bytes;
+        int n = MAX_NAME_BYTES;
+        while (n > 0 && (bytes[n] & 0xC0) == 0x80) n--;
+        return java.util.Arrays.copyOf(bytes, n);
+    }
+
+    // --- Reading and recovery (under the lock) ---
+
+    private Session read(long offset) throws java.io.IOException {
+        java.nio.ByteBuffer b = java.nio.ByteBuffer.allocate(4 + MAX_PAYLOAD_SIZE);
+        readFully(b, offset, 4);
+        int length = b.getInt(0);
+        b.clear();
+        readFully(b, offset + 4, length);
+        b.flip();
+        return decode(b);
+    }
+
+    // Reads log bytes [offset, offset + length) into b from its position on
+    private void readFully(java.nio.ByteBuffer b, long offset, int length) throws java.io.IOException {
+        int start = b.position();
+        b.limit(start + length);
+        while (b.hasRemaining()) {
+            if (log.read(b, offset + b.position() - start) < 0) throw new java.io.EOFException("session log ends early");
+        }
+    }
+
+    private static Session decode(java.nio.ByteBuffer b) {
+        long endedAt = b.getLong();
+        long seed = b.getLong();
+        int score = b.getInt();
+        long ticks = b.getLong();
+        int tickRate = b.getInt();
+        int asteroidsDestroyed = b.getInt();
+        int[] powerUps = new int[World.POWERUP_RAPID_FIRE + 1];
+        for (int type = World.POWERUP_AIM_BEAM; type <= World.POWERUP_RAPID_FIRE; type++) {
+            powerUps[type] = b.getInt();
+        }
+        byte[] name = new byte[b.getShort()];
+        b.get(name);
+        return new Session(new String(name, java.nio.charset.StandardCharsets.UTF_8), score, ticks, tickRate, seed,
+                asteroidsDestroyed, powerUps, endedAt);
+    }
+
+    private void recover() throws java.io.IOException {
+        long size = log.size();
+        if (size < LOG_HEADER_SIZE) {
+            log.truncate(0);
+            log.write(java.nio.ByteBuffer.wrap(LOG_MAGIC), 0);
+            log.force(true);
+            size = LOG_HEADER_SIZE;
+        } else {
+            java.nio.ByteBuffer magic = java.nio.ByteBuffer.allocate(LOG_HEADER_SIZE);
+            readFully(magic, 0, LOG_HEADER_SIZE);
+            if (!java.util.Arrays.equals(magic.array(), LOG_MAGIC)) throw new java.io.IOException("not a session log");
+        }
+
+        mapIndex(Math.max(INITIAL_INDEX_ENTRIES, (int) ((indexChannel.size() - INDEX_HEADER_SIZE) / ENTRY_SIZE)));
+        byte[] magic = new byte[INDEX_MAGIC.length];
+        index.get(0, magic);
+        entries = index.getInt(8);
+        logEnd = index.getLong(16);
+        if (!java.util.Arrays.equals(magic, INDEX_MAGIC) || !indexFits(size)) {
+            index.put(0, INDEX_MAGIC);
+            entries = 0;
+            logEnd = LOG_HEADER_SIZE;
+        }
+
+        // Index whatever it has not seen yet; the first bad record ends the log
+        java.nio.ByteBuffer b = java.nio.ByteBuffer.allocate(4 + MAX_PAYLOAD_SIZE + 4);
+        long at = logEnd;
+        while (at + 8 <= size) {
+            b.clear();
+            readFully(b, at, 4);
+            int length = b.getInt(0);
+            if (length < PAYLOAD_FIXED_SIZE || length > MAX_PAYLOAD_SIZE || at + 4 + length + 4 > size) break;
+            readFully(b, at + 4, length + 4);
+            crc.reset();
+            crc.update(b.array(), 0, 4 + length);
+            if ((int) crc.getValue() != b.getInt(4 + length)) break;
+            b.position(4).limit(4 + length);
+            Session s = decode(b);
+            addEntry(at, s.score, s.player.hashCode());
+            at += 4 + length + 4;
+        }
+        if (at < size) {
+            System.err.printf("ScoreStore: dropping %d bytes of incomplete sessions at the end of the log%n", size - at);
+            log.truncate(at);
+            log.force(true);
+        }
+        setLogEnd(at);
+    }
+
+    // The index is believable if it covers no more than the log, holds as many
+    // entries as that many bytes of records can, its entries step through the
+    // log record by record from the header, and its last entry ends where it says
+    private boolean indexFits(long logSize) throws java.io.IOException {
+        if (entries < 0 || logEnd < LOG_HEADER_SIZE || logEnd > logSize) return false;
+        if ((long) INDEX_HEADER_SIZE + (long) entries * ENTRY_SIZE > index.capacity()) return false;
+        if (entries == 0) return logEnd == LOG_HEADER_SIZE;
+        long minRecord = PAYLOAD_FIXED_SIZE + 8;
+        long maxRecord = MAX_PAYLOAD_SIZE + 8;
+        long covered = logEnd - LOG_HEADER_SIZE;
+        if (entries * minRecord > covered || entries * maxRecord < covered) return false;
+        long previous = index.getLong(INDEX_HEADER_SIZE);
+        if (previous != LOG_HEADER_SIZE) return false;
+        for (int i = 1; i < entries; i++) {
+            long offset = index.getLong(INDEX_HEADER_SIZE + i * ENTRY_SIZE);
+            if (offset - previous < minRecord || offset - previous > maxRecord) return false;
+            previous = offset;
+        }
+        long last = previous;
+        if (last + 4 > logEnd) return false;
+        java.nio.ByteBuffer b = java.nio.ByteBuffer.allocate(4);
+        readFully(b, last, 4);
+        return last + 4 + b.getInt(0) + 4 == logEnd;
+    }
+
+    private void mapIndex(int capacity) throws java.io.IOException {
+        index = indexChannel.map(java.nio.channels.FileChannel.MapMode.READ_WRITE, 0,
+                INDEX_HEADER_SIZE + (long) capacity * ENTRY_SIZE);
+        index.order(java.nio.ByteOrder.nativeOrder());
+    }
+
+    private void addEntry(long offset, int score, int playerHash) throws java.io.IOException {
+        int at = INDEX_HEADER_SIZE + entries * ENTRY_SIZE;
+        if (at + ENTRY_SIZE > index.capacity()) {
+            mapIndex((index.capacity() - INDEX_HEADER_SIZE) / ENTRY_SIZE * 2);
+        }
+        index.putLong(at, offset);
+        index.putInt(at + 8, score);
+        index.putInt(at + 12, playerHash);
+        entries++;
+    }
+
+    // Entries first, then how much of the log they cover
+    private void setLogEnd(long end) {
+        logEnd = end;
+        index.putInt(8, entries);
+        index.putLong(16, end);
+    }
+}
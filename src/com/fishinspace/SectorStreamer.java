@@ -0,0 +1,386 @@
+package com.fishinspace;
+
+/**
+ * SectorStreamer.java
+ *
+ * Endless space on a fixed-size world. Space is divided into sectors the
+ * size of the window, each generated from the world seed and its own
+ * coordinates, so the same sector always starts out the same. The
+ * {@link World} only ever holds WINDOW x WINDOW of them: the ship's sector in
+ * the middle and its neighbours, which is more than the view ever shows.
+ *
+ * When the ship leaves the middle sector (by more than a quarter of a sector,
+ * so weaving along a border does not churn) the window moves one sector that
+ * way. Everything in the row or column left behind is frozen into a compact
+ * record in the sector cache, the rest of the world is shifted back by a
+ * sector so the ship is in the middle again, and the sectors coming into
+ * range are loaded from the cache or, if they are not there, generated. An
+ * asteroid drifting off the edge of the window is handed to the sector it
+ * drifts into the same way, instead of wrapping around to the far side.
+ *
+ * Sectors out of range are not stepped at all; their asteroids keep flying
+ * only in the reduced sense that loading a record moves each one on by
+ * however long the sector was frozen, wrapping within the sector and missing
+ * every collision on the way. The cache is a least-recently-used map capped
+ * at a byte size; a sector pushed out of it forgets what happened there and is
+ * generated afresh next time. So the world, the cache and the work per tick
+ * stay the same size however far the ship flies.
+ *
+ * Asteroids carry nothing but their motion, so the only state that is lost
+ * by streaming is the precision of a float. Bullets in the row or column left
+ * behind, already far off screen, are dropped.
+ *
+ * The window and the cache are not part of a {@link Snapshot} or replay, so
+ * games in endless space cannot be recorded, rewound or quicksaved. Meant
+ * for a single ship: the window follows slot 0.
+ *
+ * --- FORMAT ---
+ * Sector record (big-endian):
+ *   0  long     tick the positions below are for
+ *   8  short    asteroid count, then per asteroid (17 bytes):
+ *                 float x, float y (from the sector's corner), float dx, float dy, byte size
+ *  10+ short    power-up count, then per power-up (9 bytes): float x, float y, byte type
+ */
+final class SectorStreamer {
+    // --- Layout ---
+    static final int WINDOW = 3; // sectors per side of the world; the ship's is the middle one
+    static final int DEFAULT_CACHE_BYTES = 1 << 20;
+
+    // --- Generation ---
+    private static final int MIN_ASTEROIDS = 2;
+    private static final int MAX_ASTEROIDS = 5;
+    private static final int POWERUP_ONE_IN = 6; // sectors with a power-up lying about
+
+    // --- Records ---
+    private static final int HEADER_BYTES = 12;
+    private static final int ASTEROID_BYTES = 17;
+    private static final int POWERUP_BYTES = 9;
+    private static final int ENTRY_OVERHEAD = 64; // map entry, key and array header, roughly
+
+    final int sectorWidth;
+    final int sectorHeight;
+    private final long seed;
+    private final long cacheBytes;
+
+    // Frozen sectors, least recently used first
+    private final java.util.LinkedHashMap<Long, byte[]> cache = new java.util.LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes;
+
+    // Sector coordinates of the window's top-left sector
+    private long originX;
+    private long originY;
+
+    // One sector's contents on their way into or out of the cache
+    private final Entities sectorAsteroids = new Entities(32);
+    private final Entities sectorPowerUps = new Entities(4);
+    private final Rng sectorRandom = new Rng(0);
+
+    // --- Statistics ---
+    private long generated;
+    private long loaded;
+    private long frozen;
+    private long forgotten;
+    private long handedOver;
+
+    /** Sectors of {@code sectorWidth} x {@code sectorHeight} generated from {@code seed}. */
+    SectorStreamer(long seed, int sectorWidth, int sectorHeight, long cacheBytes) {
+        if (cacheBytes < 0) throw new IllegalArgumentException("negative cache size");
+        this.seed = seed;
+        this.sectorWidth = sectorWidth;
+        this.sectorHeight = sectorHeight;
+        this.cacheBytes = cacheBytes;
+    }
+
+    /** A world of WINDOW x WINDOW window-sized sectors, streaming endless space from {@code seed}. */
+    static World endlessWorld(long seed, long cacheBytes) {
+        World world = new World(seed, WINDOW * World.WIDTH, WINDOW * World.HEIGHT);
+        world.setStreamer(new SectorStreamer(seed, World.WIDTH, World.HEIGHT, cacheBytes));
+        return world;
+    }
+
+    long sectorX() {
+        return originX + WINDOW / 2;
+    }
+
+    long sectorY() {
+        return originY + WINDOW / 2;
+    }
+
+    int cachedSectors() {
+        return cache.size();
+    }
+
+    long cachedBytes() {
+        return cachedBytes;
+    }
+
+    /** One line of what has been streamed, for overlays and reports. */
+    String report() {
+        return "sector " + sectorX() + "," + sectorY() + "  cached " + cache.size() + " (" + cachedBytes / 1024
+                + "KB)  generated " + generated + " loaded " + loaded + " frozen " + frozen
+                + " forgotten " + forgotten + " handed over " + handedOver;
+    }
+
+    /** Starts space over around sector (0, 0); called by {@link World#reset}. */
+    void reset(World world) {
+        cache.clear();
+        cachedBytes = 0;
+        originX = originY = -(WINDOW / 2);
+        world.asteroids.clear();
+        world.powerUps.clear();
+        for (int row = 0; row < WINDOW; row++) {
+            for (int col = 0; col < WINDOW; col++) {
+                load(world, col, row);
+            }
+        }
+        world.stateReplaced();
+    }
+
+    /**
+     * Hands asteroids that this tick would carry off the edge of the window
+     * to the sectors they drift into, before the world moves (and would wrap)
+     * them.
+     */
+    void beforeTick(World world) {
+        Entities a = world.asteroids;
+        double dt = world.dt;
+        // Walking down keeps swap-remove from moving an unvisited asteroid
+        for (int i = a.count - 1; i >= 0; i--) {
+            double x = a.x[i] + a.dx[i] * dt;
+            double y = a.y[i] + a.dy[i] * dt;
+            // Exactly where the move kernels would wrap it
+            if (x < 0 || x > world.width || y < 0 || y > world.height) {
+                handOver(world, i, x, y);
+            }
+        }
+    }
+
+    /** Moves the window once the ship is well into a neighbouring sector. */
+    void afterTick(World world) {
+        Ship sh = world.ship;
+        double marginX = sectorWidth / 4.0;
+        double marginY = sectorHeight / 4.0;
+        int middle = WINDOW / 2;
+        if (sh.x < middle * sectorWidth - marginX) shift(world, -1, 0);
+        else if (sh.x > (middle + 1) * sectorWidth + marginX) shift(world, 1, 0);
+        if (sh.y < middle * sectorHeight - marginY) shift(world, 0, -1);
+        else if (sh.y > (middle + 1) * sectorHeight + marginY) shift(world, 0, 1);
+    }
+
+    private void handOver(World world, int i, double x, double y) {
+        Entities a = world.asteroids;
+        int col = (int) Math.floor(x / sectorWidth);
+        int row = (int) Math.floor(y / sectorHeight);
+        // Its position is the one after this tick
+        long now = world.tick + 1;
+        fetch(world, originX + col, originY + row, now);
+        sectorAsteroids.add(x - col * sectorWidth, y - row * sectorHeight, a.dx[i], a.dy[i], a.size[i], 0);
+        store(originX + col, originY + row, now);
+        a.remove(i);
+        handedOver++;
+    }
+
+    // Slides the window one sector along (dx, dy); exactly one of them is non-zero
+    private void shift(World world, int dx, int dy) {
+        // Freeze the sectors left behind
+        for (int k = 0; k < WINDOW; k++) {
+            int col = dx > 0 ? 0 : dx < 0 ? WINDOW - 1 : k;
+            int row = dy > 0 ? 0 : dy < 0 ? WINDOW - 1 : k;
+            freeze(world, col, row);
+        }
+        Entities b = world.bullets;
+        for (int i = b.count - 1; i >= 0; i--) {
+            int col = (int) Math.floor(b.x[i] / sectorWidth);
+            int row = (int) Math.floor(b.y[i] / sectorHeight);
+            if ((dx > 0 && col <= 0) || (dx < 0 && col >= WINDOW - 1) || (dy > 0 && row <= 0) || (dy < 0 && row >= WINDOW - 1)) {
+                b.remove(i);
+            }
+        }
+
+        // Everything left moves back a sector, so the ship is in the middle again
+        double offsetX = -dx * sectorWidth;
+        double offsetY = -dy * sectorHeight;
+        translate(world.asteroids, offsetX, offsetY);
+        translate(world.powerUps, offsetX, offsetY);
+        translate(b, offsetX, offsetY);
+        for (Ship sh : world.ships) {
+            sh.x += offsetX;
+            sh.y += offsetY;
+            sh.prevX += offsetX;
+            sh.prevY += offsetY;
+        }
+        originX += dx;
+        originY += dy;
+
+        // ...and the sectors coming into range fill the space it left
+        for (int k = 0; k < WINDOW; k++) {
+            int col = dx > 0 ? WINDOW - 1 : dx < 0 ? 0 : k;
+            int row = dy > 0 ? WINDOW - 1 : dy < 0 ? 0 : k;
+            load(world, col, row);
+        }
+        world.stateReplaced();
+    }
+
+    private static void translate(Entities e, double offsetX, double offsetY) {
+        for (int i = 0; i < e.count; i++) {
+            e.x[i] += offsetX;
+            e.y[i] += offsetY;
+        }
+    }
+
+    // Moves what lies in window sector (col, row) out of the world into the cache
+    private void freeze(World world, int col, int row) {
+        double left = col * (double) sectorWidth;
+        double top = row * (double) sectorHeight;
+        sectorAsteroids.clear();
+        sectorPowerUps.clear();
+        Entities a = world.asteroids;
+        for (int i = a.count - 1; i >= 0; i--) {
+            if (inSector(a.x[i], a.y[i], col, row)) {
+                sectorAsteroids.add(a.x[i] - left, a.y[i] - top, a.dx[i], a.dy[i], a.size[i], 0);
+                a.remove(i);
+            }
+        }
+        Entities p = world.powerUps;
+        for (int i = p.count - 1; i >= 0; i--) {
+            if (inSector(p.x[i], p.y[i], col, row)) {
+                sectorPowerUps.add(p.x[i] - left, p.y[i] - top, 0, 0, 0, p.type[i]);
+                p.remove(i);
+            }
+        }
+        store(originX + col, originY + row, world.tick);
+        frozen++;
+    }
+
+    // The field edges belong to the outer sectors, so nothing on them is missed
+    private boolean inSector(double x, double y, int col, int row) {
+        int c = Math.max(0, Math.min(WINDOW - 1, (int) Math.floor(x / sectorWidth)));
+        int r = Math.max(0, Math.min(WINDOW - 1, (int) Math.floor(y / sectorHeight)));
+        return c == col && r == row;
+    }
+
+    // Brings the sector at window position (col, row) into the world as it is now
+    private void load(World world, int col, int row) {
+        fetch(world, originX + col, originY + row, world.tick);
+        double left = col * (double) sectorWidth;
+        double top = row * (double) sectorHeight;
+        Entities s = sectorAsteroids;
+        for (int i = 0; i < s.count; i++) {
+            world.asteroids.add(s.x[i] + left, s.y[i] + top, s.dx[i], s.dy[i], s.size[i], 0);
+        }
+        Entities p = sectorPowerUps;
+        for (int i = 0; i < p.count; i++) {
+            world.powerUps.add(p.x[i] + left, p.y[i] + top, 0, 0, 0, p.type[i]);
+        }
+    }
+
+    // --- Records ---
+
+    private static long key(long sx, long sy) {
+        return (sx << 32) ^ (sy & 0xFFFFFFFFL);
+    }
+
+    /** Fills the sector scratch with sector (sx, sy) as at tick {@code now}, taking it out of the cache. */
+    private void fetch(World world, long sx, long sy, long now) {
+        byte[] record = cache.remove(key(sx, sy));
+        if (record == null) {
+            generate(world, sx, sy);
+            return;
+        }
+        cachedBytes -= record.length + ENTRY_OVERHEAD;
+        loaded++;
+        java.nio.ByteBuffer in = java.nio.ByteBuffer.wrap(record);
+        double travel = (now - in.getLong()) * world.dt; // frames it has been frozen for
+        sectorAsteroids.clear();
+        int n = in.getShort();
+        for (int i = 0; i < n; i++) {
+            double x = in.getFloat();
+            double y = in.getFloat();
+            double dx = in.getFloat();
+            double dy = in.getFloat();
+            int size = in.get();
+            sectorAsteroids.add(wrap(x + dx * travel, sectorWidth), wrap(y + dy * travel, sectorHeight), dx, dy, size, 0);
+        }
+        sectorPowerUps.clear();
+        n = in.getShort();
+        for (int i = 0; i < n; i++) {
+            double x = in.getFloat();
+            double y = in.getFloat();
+            sectorPowerUps.add(x, y, 0, 0, 0, in.get());
+        }
+    }
+
+    private static double wrap(double v, double extent) {
+        return v - Math.floor(v / extent) * extent;
+    }
+
+    /** Writes the sector scratch into the cache as sector (sx, sy) at tick {@code now}. */
+    private void store(long sx, long sy, long now) {
+        int asteroids = Math.min(sectorAsteroids.count, Short.MAX_VALUE);
+        int powerUps = Math.min(sectorPowerUps.count, Short.MAX_VALUE);
+        java.nio.ByteBuffer out = java.nio.ByteBuffer.allocate(HEADER_BYTES + asteroids * ASTEROID_BYTES + powerUps * POWERUP_BYTES);
+        out.putLong(now);
+        out.putShort((short) asteroids);
+        for (int i = 0; i < asteroids; i++) {
+            out.putFloat((float) sectorAsteroids.x[i]).putFloat((float) sectorAsteroids.y[i])
+                    .putFloat((float) sectorAsteroids.dx[i]).putFloat((float) sectorAsteroids.dy[i])
+                    .put((byte) sectorAsteroids.size[i]);
+        }
+        out.putShort((short) powerUps);
+        for (int i = 0; i < powerUps; i++) {
+            out.putFloat((float) sectorPowerUps.x[i]).putFloat((float) sectorPowerUps.y[i]).put((byte) sectorPowerUps.type[i]);
+        }
+        byte[] record = out.array();
+        cache.put(key(sx, sy), record);
+        cachedBytes += record.length + ENTRY_OVERHEAD;
+
+        // Over the cap, the sectors visited longest ago are forgotten
+        java.util.Iterator<byte[]> eldest = cache.values().iterator();
+        while (cachedBytes > cacheBytes && eldest.hasNext()) {
+            byte[] old = eldest.next();
+            eldest.remove();
+            cachedBytes -= old.length + ENTRY_OVERHEAD;
+            forgotten++;
+        }
+    }
+
+    /** Fills the sector scratch with sector (sx, sy) as it is before anyone has been there. */
+    private void generate(World world, long sx, long sy) {
+        generated++;
+        Rng random = sectorRandom;
+        random.setSeed(sectorSeed(sx, sy));
+        sectorAsteroids.clear();
+        sectorPowerUps.clear();
+
+        // Sector (0, 0) is where every game starts; keep its middle clear
+        boolean home = sx == 0 && sy == 0;
+        double safe = Math.min(World.SWARM_SAFE_RADIUS, Math.min(sectorWidth, sectorHeight) / 4.0);
+        int n = MIN_ASTEROIDS + random.nextInt(MAX_ASTEROIDS - MIN_ASTEROIDS + 1);
+        for (int i = 0; i < n; i++) {
+            int pick = random.nextInt(10);
+            int size = pick < 6 ? World.ASTEROID_SIZE_LARGE : pick < 9 ? World.ASTEROID_SIZE_MEDIUM : World.ASTEROID_SIZE_SMALL;
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double speed = (random.nextDouble() * (world.asteroidMaxSpeed - 1)) + 1;
+            double x, y;
+            do {
+                x = random.nextDouble() * sectorWidth;
+                y = random.nextDouble() * sectorHeight;
+            } while (home && (x - sectorWidth / 2.0) * (x - sectorWidth / 2.0)
+                    + (y - sectorHeight / 2.0) * (y - sectorHeight / 2.0) < safe * safe);
+            sectorAsteroids.add(x, y, Math.cos(angle) * speed, Math.sin(angle) * speed, size, 0);
+        }
+        if (!home && random.nextInt(POWERUP_ONE_IN) == 0) {
+            int type = World.POWERUP_AIM_BEAM + random.nextInt(World.POWERUP_RAPID_FIRE);
+            sectorPowerUps.add(random.nextDouble() * sectorWidth, random.nextDouble() * sectorHeight, 0, 0, 0, type);
+        }
+    }
+
+    // The world seed and the sector's coordinates, spread over the seed space
+    // (SplitMix64 finaliser) so neighbouring sectors do not look alike
+    private long sectorSeed(long sx, long sy) {
+        long z = seed + sx * 0x9E3779B97F4A7C15L + sy * 0xC2B2AE3D27D4EB4FL;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
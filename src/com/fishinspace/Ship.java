@@ -0,0 +1,72 @@
+package com.fishinspace;
+
+/**
+ * Ship.java
+ *
+ * One player's ship and the state that belongs to that player: position
+ * and motion, the inputs latched for the current tick, the fire cooldown,
+ * the active power-up and the player's score. A {@link World} holds a fixed
+ * number of ship slots; single-player games only ever use slot 0.
+ *
+ * Timers are in 60 Hz frames, like everything else in the world.
+ */
+class Ship {
+    boolean active;   // slot in use by a player
+    boolean alive;    // false while waiting to respawn
+
+    double x, y;
+    double velX, velY;
+    double angle;
+    // State before the last step, for render interpolation
+    double prevX, prevY, prevAngle;
+
+    // --- Input Flags (latched from the last step) ---
+    boolean rotatingLeft;
+    boolean rotatingRight;
+    boolean thrusting;
+    boolean braking;
+
+    double bulletCooldownTimer;  // frames
+    int activePowerUp;
+    double powerUpTimeRemaining; // frames
+    int score;
+    double respawnTimer;         // frames until a dead ship returns
+    double graceTimer;           // frames of immunity after a respawn
+
+    /** Puts the ship at (x, y), at rest and facing up, with nothing held or active. */
+    void spawn(double x, double y) {
+        alive = true;
+        this.x = x;
+        this.y = y;
+        velX = 0;
+        velY = 0;
+        angle = -Math.PI / 2; // up
+        prevX = x;
+        prevY = y;
+        prevAngle = angle;
+        rotatingLeft = false;
+        rotatingRight = false;
+        thrusting = false;
+        braking = false;
+        bulletCooldownTimer = 0;
+        activePowerUp = World.POWERUP_NONE;
+        powerUpTimeRemaining = 0;
+        respawnTimer = 0;
+        graceTimer = 0;
+    }
+
+    /** Latches the held INPUT_* flags for this tick. */
+    void setInputs(int inputs) {
+        rotatingLeft = (inputs & World.INPUT_LEFT) != 0;
+        rotatingRight = (inputs & World.INPUT_RIGHT) != 0;
+        thrusting = (inputs & World.INPUT_THRUST) != 0;
+        braking = (inputs & World.INPUT_BRAKE) != 0;
+    }
+
+    /** Remembers the current position as the start of the next interpolation. */
+    void savePrevious() {
+        prevX = x;
+        prevY = y;
+        prevAngle = angle;
+    }
+}
@@ -0,0 +1,254 @@
+package com.fishinspace;
+
+/**
+ * Snapshot.java
+ *
+ * Binary snapshots of a {@link World}'s game state, written straight into a
+ * caller-owned ByteBuffer, and XOR delta encoding between two snapshots.
+ * Reading a snapshot back restores the world exactly, generator state
+ * included, so a restored world continues as the original would have.
+ *
+ * Only state is captured; configuration (field size, tick rate, tunables)
+ * must already match in the world being restored into.
+ *
+ * --- FORMAT --- (big-endian, at the buffer's position 0)
+ *   int     magic "FSN2"
+ *   long    tick
+ *   int     score
+ *   byte    inGame
+ *   long    Rng state
+ *   int     kills since last drop, kills until next drop
+ *   int     asteroids destroyed, power-ups dropped, power-ups collected[5]
+ *   ubyte   ship slots (at most 255), then for each slot
+ *     byte    flags: active, alive, rotatingLeft, rotatingRight, thrusting, braking
+ *     double  x, y, velX, velY, angle, prevX, prevY, prevAngle
+ *     double  bullet cooldown, power-up time remaining, respawn timer, grace timer
+ *     int     active power-up, score
+ *   then bullets, asteroids and power-ups, each as
+ *   int     count
+ *   double  x[count], y[count], dx[count], dy[count]
+ *   short   size[count], type[count]
+ *
+ * A delta is the target's length followed by runs of (varint bytes equal
+ * to the base, varint bytes that differ, the differing bytes XOR the base).
+ * Consecutive ticks share most of their high-order bytes, so deltas are a
+ * fraction of a full snapshot.
+ */
+class Snapshot {
+    static final int MAGIC = ('F' << 24) | ('S' << 16) | ('N' << 8) | '2';
+    static final int HEADER_SIZE = 4 + 8 + 4 + 1 + 8 + 2 * 4 + (2 + World.POWERUP_RAPID_FIRE + 1) * 4 + 1;
+    static final int BYTES_PER_SHIP = 1 + 12 * 8 + 2 * 4;
+    static final int BYTES_PER_ENTITY = 4 * 8 + 2 * 2;
+
+    private static final int FLAG_ACTIVE = 1;
+    private static final int FLAG_ALIVE = 1 << 1;
+    private static final int FLAG_LEFT = 1 << 2;
+    private static final int FLAG_RIGHT = 1 << 3;
+    private static final int FLAG_THRUST = 1 << 4;
+    private static final int FLAG_BRAKE = 1 << 5;
+
+    private Snapshot() {
+    }
+
+    /** Bytes a snapshot of {@code world} needs right now. */
+    static int size(World world) {
+        int entities = world.bullets.count + world.asteroids.count + world.powerUps.count;
+        return HEADER_SIZE + world.ships.length * BYTES_PER_SHIP + 3 * 4 + entities * BYTES_PER_ENTITY;
+    }
+
+    /**
+     * Returns {@code buffer} if it can hold {@code bytes}, else a new heap
+     * buffer with room to spare. Only growth allocates.
+     */
+    static java.nio.ByteBuffer ensureCapacity(java.nio.ByteBuffer buffer, int bytes) {
+        if (buffer != null && buffer.capacity() >= bytes) return buffer;
+        return java.nio.ByteBuffer.allocate(Math.max(bytes + bytes / 2, 1024));
+    }
+
+    /** Writes {@code world} at the start of {@code out}, which must hold {@link #size}; returns the length. */
+    static int write(World world, java.nio.ByteBuffer out) {
+        out.clear();
+        out.putInt(MAGIC)
+                .putLong(world.tick)
+                .putInt(world.score)
+                .put((byte) (world.inGame ? 1 : 0))
+                .putLong(world.random.getState());
+        out.putInt(world.asteroidsDestroyedSinceLastPowerUp)
+                .putInt(world.asteroidsUntilNextPowerUp)
+                .putInt(world.asteroidsDestroyed)
+                .putInt(world.powerUpsDropped);
+        for (int c : world.powerUpsCollected) out.putInt(c);
+        out.put((byte) world.ships.length);
+        for (Ship sh : world.ships) {
+            int flags = (sh.active ? FLAG_ACTIVE : 0) | (sh.alive ? FLAG_ALIVE : 0)
+                    | (sh.rotatingLeft ? FLAG_LEFT : 0) | (sh.rotatingRight ? FLAG_RIGHT : 0)
+                    | (sh.thrusting ? FLAG_THRUST : 0) | (sh.braking ? FLAG_BRAKE : 0);
+            out.put((byte) flags)
+                    .putDouble(sh.x).putDouble(sh.y)
+                    .putDouble(sh.velX).putDouble(sh.velY)
+                    .putDouble(sh.angle)
+                    .putDouble(sh.prevX).putDouble(sh.prevY).putDouble(sh.prevAngle)
+                    .putDouble(sh.bulletCooldownTimer)
+                    .putDouble(sh.powerUpTimeRemaining)
+                    .putDouble(sh.respawnTimer)
+                    .putDouble(sh.graceTimer)
+                    .putInt(sh.activePowerUp)
+                    .putInt(sh.score);
+        }
+        writeEntities(world.bullets, out);
+        writeEntities(world.asteroids, out);
+        writeEntities(world.powerUps, out);
+        return out.position();
+    }
+
+    /** Restores {@code world} from a snapshot at the start of {@code in}. */
+    static void read(java.nio.ByteBuffer in, World world) {
+        in.clear();
+        if (in.getInt() != MAGIC) {
+            throw new IllegalArgumentException("not a world snapshot");
+        }
+        world.tick = in.getLong();
+        world.score = in.getInt();
+        world.inGame = in.get() != 0;
+        world.random.setState(in.getLong());
+        world.asteroidsDestroyedSinceLastPowerUp = in.getInt();
+        world.asteroidsUntilNextPowerUp = in.getInt();
+        world.asteroidsDestroyed = in.getInt();
+        world.powerUpsDropped = in.getInt();
+        for (int i = 0; i < world.powerUpsCollected.length; i++) world.powerUpsCollected[i] = in.getInt();
+        if ((in.get() & 0xFF) != world.ships.length) {
+            throw new IllegalArgumentException("snapshot has a different number of ship slots");
+        }
+        for (Ship sh : world.ships) {
+            int flags = in.get();
+            sh.active = (flags & FLAG_ACTIVE) != 0;
+            sh.alive = (flags & FLAG_ALIVE) != 0;
+            sh.rotatingLeft = (flags & FLAG_LEFT) != 0;
+            sh.rotatingRight = (flags & FLAG_RIGHT) != 0;
+            sh.thrusting = (flags & FLAG_THRUST) != 0;
+            sh.braking = (flags & FLAG_BRAKE) != 0;
+            sh.x = in.getDouble();
+            sh.y = in.getDouble();
+            sh.velX = in.getDouble();
+            sh.velY = in.getDouble();
+            sh.angle = in.getDouble();
+            sh.prevX = in.getDouble();
+            sh.prevY = in.getDouble();
+            sh.prevAngle = in.getDouble();
+            sh.bulletCooldownTimer = in.getDouble();
+            sh.powerUpTimeRemaining = in.getDouble();
+            sh.respawnTimer = in.getDouble();
+            sh.graceTimer = in.getDouble();
+            sh.activePowerUp = in.getInt();
+            sh.score = in.getInt();
+        }
+        readEntities(in, world.bullets);
+        readEntities(in, world.asteroids);
+        readEntities(in, world.powerUps);
+        world.stateReplaced();
+    }
+
+    /** Largest encoding a delta of a {@code targetLength}-byte snapshot can take. */
+    static int maxDeltaSize(int targetLength) {
+        // Every run but the first starts with at least two matching bytes
+        return 4 + targetLength + 2 * 5 * (targetLength / 3 + 2);
+    }
+
+    /**
+     * Encodes the first {@code targetLength} bytes of {@code target} against
+     * {@code base} into {@code out}, which must hold {@link #maxDeltaSize}.
+     * Base bytes past {@code baseLength} count as zero. Returns the length.
+     */
+    static int encodeDelta(java.nio.ByteBuffer base, int baseLength, java.nio.ByteBuffer target, int targetLength,
+                           java.nio.ByteBuffer out) {
+        out.clear();
+        out.putInt(targetLength);
+        int i = 0;
+        while (i < targetLength) {
+            int same = i;
+            while (same < targetLength && target.get(same) == baseByte(base, baseLength, same)) same++;
+            int diff = same;
+            // A lone matching byte inside a changed stretch costs more as a run than as a literal
+            while (diff < targetLength && (target.get(diff) != baseByte(base, baseLength, diff)
+                    || (diff + 1 < targetLength && target.get(diff + 1) != baseByte(base, baseLength, diff + 1)))) {
+                diff++;
+            }
+            putVarint(out, same - i);
+            putVarint(out, diff - same);
+            for (int k = same; k < diff; k++) {
+                out.put((byte) (target.get(k) ^ baseByte(base, baseLength, k)));
+            }
+            i = diff;
+        }
+        return out.position();
+    }
+
+    /**
+     * Rebuilds the target of {@code delta} from {@code base} into {@code out},
+     * which must be at least as large as the target. Returns the target length.
+     */
+    static int decodeDelta(java.nio.ByteBuffer delta, java.nio.ByteBuffer base, int baseLength, java.nio.ByteBuffer out) {
+        delta.clear();
+        int targetLength = delta.getInt();
+        int i = 0;
+        while (i < targetLength) {
+            int same = getVarint(delta);
+            int diff = getVarint(delta);
+            for (int end = i + same; i < end; i++) {
+                out.put(i, baseByte(base, baseLength, i));
+            }
+            for (int end = i + diff; i < end; i++) {
+                out.put(i, (byte) (delta.get() ^ baseByte(base, baseLength, i)));
+            }
+        }
+        return targetLength;
+    }
+
+    /** Length of the snapshot a delta decodes to. */
+    static int deltaTargetLength(java.nio.ByteBuffer delta) {
+        return delta.getInt(0);
+    }
+
+    private static void writeEntities(Entities e, java.nio.ByteBuffer out) {
+        int n = e.count;
+        out.putInt(n);
+        for (int i = 0; i < n; i++) out.putDouble(e.x[i]);
+        for (int i = 0; i < n; i++) out.putDouble(e.y[i]);
+        for (int i = 0; i < n; i++) out.putDouble(e.dx[i]);
+        for (int i = 0; i < n; i++) out.putDouble(e.dy[i]);
+        for (int i = 0; i < n; i++) out.putShort((short) e.size[i]);
+        for (int i = 0; i < n; i++) out.putShort((short) e.type[i]);
+    }
+
+    private static void readEntities(java.nio.ByteBuffer in, Entities e) {
+        int n = in.getInt();
+        e.setCount(n);
+        for (int i = 0; i < n; i++) e.x[i] = in.getDouble();
+        for (int i = 0; i < n; i++) e.y[i] = in.getDouble();
+        for (int i = 0; i < n; i++) e.dx[i] = in.getDouble();
+        for (int i = 0; i < n; i++) e.dy[i] = in.getDouble();
+        for (int i = 0; i < n; i++) e.size[i] = in.getShort();
+        for (int i = 0; i < n; i++) e.type[i] = in.getShort();
+    }
+
+    private static byte baseByte(java.nio.ByteBuffer base, int baseLength, int i) {
+        return i < baseLength ? base.get(i) : 0;
+    }
+
+    private static void putVarint(java.nio.ByteBuffer out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.put((byte) v);
+    }
+
+    private static int getVarint(java.nio.ByteBuffer in) {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.get();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.fishinspace;
+
+/**
+ * SnapshotRing.java
+ *
+ * The last N states of a world, for rewinding and rollback. The newest state
+ * is kept as a full {@link Snapshot}; each older one is stored as a delta
+ * against the state after it. Stepping back one tick therefore decodes one
+ * small delta, and the oldest entry can be dropped at any time because
+ * nothing depends on it.
+ *
+ * All buffers are reused. Slots only allocate when a delta is larger than
+ * any stored in them before, so a ring that has filled once records and
+ * rewinds without allocating.
+ *
+ * Not thread-safe; used by the thread that steps the world.
+ */
+class SnapshotRing {
+    private final java.nio.ByteBuffer[] deltas; // deltas[i] rebuilds an older state from the one after it
+    private final int[] deltaLengths;
+    private int newestDelta = -1;                // slot of the delta just behind the newest state
+    private int count;                           // states held, the newest included
+
+    private java.nio.ByteBuffer current;         // the newest state, in full
+    private int currentLength;
+    private java.nio.ByteBuffer scratch;          // the next state while it is being built
+    private java.nio.ByteBuffer encoded;          // a delta before it is copied into its slot
+
+    /** A ring holding up to {@code capacity} (at least 2) states. */
+    SnapshotRing(int capacity) {
+        deltas = new java.nio.ByteBuffer[Math.max(1, capacity - 1)];
+        deltaLengths = new int[deltas.length];
+        current = Snapshot.ensureCapacity(null, Snapshot.HEADER_SIZE + 64 * Snapshot.BYTES_PER_ENTITY);
+        scratch = Snapshot.ensureCapacity(null, current.capacity());
+    }
+
+    /** Number of states held; {@link #rewind} can go back {@code size() - 1} ticks. */
+    int size() {
+        return count;
+    }
+
+    int capacity() {
+        return deltas.length + 1;
+    }
+
+    void clear() {
+        count = 0;
+        newestDelta = -1;
+    }
+
+    /** Records the world's current state as the newest entry, dropping the oldest if full. */
+    void push(World world) {
+        int length = Snapshot.size(world);
+        scratch = Snapshot.ensureCapacity(scratch, length);
+        length = Snapshot.write(world, scratch);
+
+        if (count > 0) {
+            // The old newest state becomes a delta against the new one
+            encoded = Snapshot.ensureCapacity(encoded, Snapshot.maxDeltaSize(currentLength));
+            int deltaLength = Snapshot.encodeDelta(scratch, length, current, currentLength, encoded);
+            newestDelta = (newestDelta + 1) % deltas.length;
+            java.nio.ByteBuffer slot = Snapshot.ensureCapacity(deltas[newestDelta], deltaLength);
+            slot.clear();
+            slot.put(encoded.array(), 0, deltaLength);
+            deltas[newestDelta] = slot;
+            deltaLengths[newestDelta] = deltaLength;
+        }
+        if (count < capacity()) count++;
+
+        java.nio.ByteBuffer newest = scratch;
+        scratch = current;
+        current = newest;
+        currentLength = length;
+    }
+
+    /**
+     * Rolls the world back {@code ticks} entries and forgets the newer ones,
+     * so recording continues from there. Returns false, leaving the world
+     * alone, if fewer than {@code ticks} older states are held.
+     */
+    boolean rewind(World world, int ticks) {
+        if (ticks < 0 || ticks >= count) return false;
+        for (int k = 0; k < ticks; k++) {
+            java.nio.ByteBuffer delta = deltas[newestDelta];
+            scratch = Snapshot.ensureCapacity(scratch, Snapshot.deltaTargetLength(delta));
+            int length = Snapshot.decodeDelta(delta, current, currentLength, scratch);
+            java.nio.ByteBuffer older = scratch;
+            scratch = current;
+            current = older;
+            currentLength = length;
+            newestDelta = (newestDelta - 1 + deltas.length) % deltas.length;
+            count--;
+        }
+        Snapshot.read(current, world);
+        return true;
+    }
+
+    /** Total bytes of the stored states, the newest in full and the rest as deltas. */
+    long storedBytes() {
+        long bytes = count > 0 ? currentLength : 0;
+        for (int k = 0, slot = newestDelta; k < count - 1; k++, slot = (slot - 1 + deltas.length) % deltas.length) {
+            bytes += deltaLengths[slot];
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,108 @@
+package com.fishinspace;
+
+/**
+ * SpatialGrid.java
+ *
+ * Uniform grid broad phase over the wrapped (toroidal) play field. Entities
+ * are inserted by id at their centre point; a query returns every id whose
+ * cell lies within the given radius of a point, with cell coordinates wrapped
+ * the same way the world wraps positions. Callers do the exact narrow phase.
+ *
+ * Cells are singly linked lists threaded through int arrays, so clearing and
+ * rebuilding every tick allocates nothing once the arrays have grown.
+ *
+ * Once built, the grid can be searched from several threads at once as long
+ * as each passes its own {@link Results}; the single-argument query shares
+ * one result buffer and is for the owning thread only.
+ */
+class SpatialGrid {
+
+    /** Ids found by a query; one per thread searching the grid concurrently. */
+    static final class Results {
+        int[] ids = new int[64];
+        double[] distances = new double[64]; // the narrow phase's, index for index with ids
+    }
+
+    private final double cellSize;
+    private final int cols;
+    private final int rows;
+    private final int[] heads;   // first id in each cell, -1 when empty
+    private int[] next;          // next id in the same cell, -1 at the end
+    private final Results results = new Results(); // for query(x, y, radius)
+
+    SpatialGrid(double width, double height, double cellSize) {
+        this.cellSize = cellSize;
+        this.cols = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.heads = new int[cols * rows];
+        this.next = new int[64];
+        clear();
+    }
+
+    void clear() {
+        java.util.Arrays.fill(heads, -1);
+    }
+
+    void insert(int id, double x, double y) {
+        if (id >= next.length) {
+            next = java.util.Arrays.copyOf(next, Math.max(id + 1, next.length * 2));
+        }
+        int cell = wrapRow(cellOf(y)) * cols + wrapCol(cellOf(x));
+        next[id] = heads[cell];
+        heads[cell] = id;
+    }
+
+    /**
+     * Collects the ids of all entities whose cell overlaps the square of the
+     * given radius around (x, y). Returns the number of ids, which are then
+     * available through {@link #results()}.
+     */
+    int query(double x, double y, double radius) {
+        return query(x, y, radius, results);
+    }
+
+    /** As {@link #query(double, double, double)}, collecting into {@code out.ids}. */
+    int query(double x, double y, double radius, Results out) {
+        int[] ids = out.ids;
+        int count = 0;
+        int c0 = cellOf(x - radius), c1 = cellOf(x + radius);
+        int r0 = cellOf(y - radius), r1 = cellOf(y + radius);
+        // A range wider than the grid would visit cells twice after wrapping
+        if (c1 - c0 + 1 >= cols) { c0 = 0; c1 = cols - 1; }
+        if (r1 - r0 + 1 >= rows) { r0 = 0; r1 = rows - 1; }
+        for (int r = r0; r <= r1; r++) {
+            int rowBase = wrapRow(r) * cols;
+            for (int c = c0; c <= c1; c++) {
+                for (int id = heads[rowBase + wrapCol(c)]; id != -1; id = next[id]) {
+                    if (count == ids.length) {
+                        ids = out.ids = java.util.Arrays.copyOf(ids, ids.length * 2);
+                        out.distances = new double[ids.length];
+                    }
+                    ids[count++] = id;
+                }
+            }
+        }
+        return count;
+    }
+
+    int[] results() {
+        return results.ids;
+    }
+
+    /** Scratch as long as {@link #results()}, for the narrow phase over them. */
+    double[] distances() {
+        return results.distances;
+    }
+
+    private int cellOf(double v) {
+        return (int) Math.floor(v / cellSize);
+    }
+
+    private int wrapCol(int c) {
+        return Math.floorMod(c, cols);
+    }
+
+    private int wrapRow(int r) {
+        return Math.floorMod(r, rows);
+    }
+}
@@ -0,0 +1,267 @@
+package com.fishinspace;
+
+/**
+ * Telemetry.java
+ *
+ * A gameplay log for lining stutters up with what the game was doing: every
+ * tick with how long it took, plus the world's events (splits, shots,
+ * power-ups, ship losses, game over) as compact fixed-size binary records.
+ * Unlike a {@link ReplayRecorder} file it cannot reproduce a game, but it
+ * needs no replaying to read.
+ *
+ * The loop thread encodes records into one of a few preallocated batches
+ * and hands each full batch (or one that has been open for FLUSH_NANOS) to a
+ * background writer through a lock-free single-producer/single-consumer ring;
+ * the writer appends it to the file and returns it through a second ring.
+ * Neither side ever waits on the other: if the writer falls so far behind
+ * that no batch is free, records are dropped and counted instead.
+ *
+ * --- FORMAT ---
+ * Header (32 bytes, big-endian):
+ *   0  8 bytes  magic "FISHTLM1"
+ *   8  int      format version
+ *  12  int      tick rate (Hz)
+ *  16  long     world seed
+ *  24  long     wall clock at the start, ms since the epoch
+ * Records (18 bytes each):
+ *   0  byte     type: an EventLog type, RECORD_TICK or RECORD_MISSED
+ *   1  byte     ship slot
+ *   2  int      tick
+ *   6  int      value: as EventLog for events, the step's duration in
+ *               microseconds for RECORD_TICK, events lost for RECORD_MISSED
+ *  10  float    x, or for RECORD_TICK an int: ms since the start
+ *  14  float    y, or for RECORD_TICK an int: asteroids after the step
+ * A new game shows as the tick number going back to 0.
+ */
+final class Telemetry implements java.io.Closeable {
+    static final byte[] MAGIC = {'F', 'I', 'S', 'H', 'T', 'L', 'M', '1'};
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 18;
+    static final int RECORD_TICK = 0x10;
+    static final int RECORD_MISSED = 0x11; // the event log wrapped before it was read
+
+    private static final int BATCH_SIZE = 910 * RECORD_SIZE; // about 16KB
+    private static final int BATCH_COUNT = 4;
+    private static final long FLUSH_NANOS = 1_000_000_000L;
+    private static final long WRITER_PARK_NANOS = 100_000_000L;
+    private static final long CLOSE_WAIT_NANOS = 500_000_000L; // for the loop thread to hand over its last batch
+
+    private final java.nio.channels.FileChannel channel;
+    private final Ring full = new Ring(BATCH_COUNT); // loop thread to writer
+    private final Ring free = new Ring(BATCH_COUNT); // writer to loop thread
+    private final Thread writer;
+    private final long startNanos = System.nanoTime();
+
+    // Producer side; loop thread only
+    private volatile Thread producer; // the thread feeding update(), once it has
+    private java.nio.ByteBuffer batch; // being filled, null until a free one is taken
+    private long batchStart;
+    private long eventCursor;
+
+    private volatile boolean closeRequested;
+    private volatile boolean producerDone; // the last batch has been handed over
+    private volatile boolean abandoned;    // ...or close gave up waiting for it
+    private volatile long dropped;         // single writer: the producer
+    private volatile long written;         // single writer: the writer thread
+    private boolean closed;
+
+    private Telemetry(java.nio.channels.FileChannel channel, World world) {
+        this.channel = channel;
+        for (int i = 0; i < BATCH_COUNT; i++) {
+            free.offer(java.nio.ByteBuffer.allocateDirect(BATCH_SIZE));
+        }
+        eventCursor = world.events.end();
+        writer = new Thread(this::drainToFile, "telemetry-writer");
+        writer.setDaemon(true);
+    }
+
+    /** Starts logging {@code world} into {@code path}; feed it with {@link #update} from then on. */
+    static Telemetry open(java.nio.file.Path path, World world) throws java.io.IOException {
+        java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(path,
+                java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.WRITE,
+                java.nio.file.StandardOpenOption.TRUNCATE_EXISTING);
+        java.nio.ByteBuffer header = java.nio.ByteBuffer.allocate(HEADER_SIZE)
+                .put(MAGIC)
+                .putInt(VERSION)
+                .putInt(world.getTickRate())
+                .putLong(world.getSeed())
+                .putLong(System.currentTimeMillis());
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        Telemetry telemetry = new Telemetry(channel, world);
+        telemetry.writer.start();
+        return telemetry;
+    }
+
+    /**
+     * Logs the world's new events and, if {@code stepNanos} is not negative,
+     * the step that produced them. Call after every step, and now and then
+     * without one (e.g. each pass of the loop while paused), so that batches
+     * still get flushed and {@link #close} is answered promptly.
+     */
+    void update(World world, long stepNanos) {
+        if (producerDone || abandoned) return;
+        if (producer == null) producer = Thread.currentThread();
+        long now = System.nanoTime();
+        if (closeRequested) {
+            handOver();
+            return;
+        }
+
+        // Everything new was appended by the step just taken
+        int tick = (int) (world.getTick() - 1);
+        EventLog events = world.events;
+        long end = events.end();
+        long start = events.start();
+        if (eventCursor < start) {
+            put(RECORD_MISSED, 0, tick, (int) (start - eventCursor), 0, 0, now);
+            eventCursor = start;
+        }
+        for (long e = eventCursor; e < end; e++) {
+            put(events.type(e), events.slot(e), tick, events.value(e),
+                    Float.floatToRawIntBits((float) events.x(e)), Float.floatToRawIntBits((float) events.y(e)), now);
+        }
+        eventCursor = end;
+        if (stepNanos >= 0) {
+            put(RECORD_TICK, 0, tick, (int) Math.min(Integer.MAX_VALUE, stepNanos / 1000),
+                    (int) ((now - startNanos) / 1_000_000), world.asteroids.count, now);
+        }
+
+        if (batch != null && batch.position() > 0 && now - batchStart >= FLUSH_NANOS) publish();
+    }
+
+    private void put(int type, int slot, int tick, int value, int a, int b, long now) {
+        if (batch == null || batch.remaining() < RECORD_SIZE) {
+            publish();
+            batch = (java.nio.ByteBuffer) free.poll();
+            if (batch == null) {
+                dropped = dropped + 1;
+                return;
+            }
+            batchStart = now;
+        }
+        batch.put((byte) type).put((byte) slot).putInt(tick).putInt(value).putInt(a).putInt(b);
+    }
+
+    private void publish() {
+        if (batch == null || batch.position() == 0) return;
+        batch.flip();
+        full.offer(batch); // never full: there are only BATCH_COUNT batches
+        batch = null;
+        java.util.concurrent.locks.LockSupport.unpark(writer);
+    }
+
+    private void handOver() {
+        publish();
+        producerDone = true;
+        java.util.concurrent.locks.LockSupport.unpark(writer);
+    }
+
+    /** Records logged to the file so far. */
+    long written() {
+        return written;
+    }
+
+    /** Records dropped because the writer had every batch. */
+    long dropped() {
+        return dropped;
+    }
+
+    /**
+     * Flushes what the loop thread has logged and closes the file. From the
+     * loop thread this is immediate; from any other (a shutdown hook, say) it
+     * asks the loop thread to hand over its last batch at its next update and
+     * waits up to CLOSE_WAIT_NANOS for that, never blocking the loop itself.
+     */
+    @Override
+    public synchronized void close() throws java.io.IOException {
+        if (closed) return;
+        closed = true;
+        if (producer == null || producer == Thread.currentThread()) {
+            handOver();
+        } else {
+            closeRequested = true;
+            long deadline = System.nanoTime() + CLOSE_WAIT_NANOS;
+            while (!producerDone && System.nanoTime() - deadline < 0) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            if (!producerDone) abandoned = true;
+        }
+        java.util.concurrent.locks.LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.force(true);
+        channel.close();
+    }
+
+    // Writer thread
+    private void drainToFile() {
+        boolean failed = false;
+        while (true) {
+            boolean done = producerDone || abandoned; // read first: batches published before it are drained below
+            java.nio.ByteBuffer b;
+            while ((b = (java.nio.ByteBuffer) full.poll()) != null) {
+                if (!failed) {
+                    int records = b.remaining() / RECORD_SIZE;
+                    try {
+                        while (b.hasRemaining()) {
+                            channel.write(b);
+                        }
+                        written = written + records;
+                    } catch (java.io.IOException e) {
+                        System.err.println("Telemetry: write failed, logging stopped: " + e);
+                        failed = true;
+                    }
+                }
+                b.clear();
+                free.offer(b);
+            }
+            if (done) return;
+            java.util.concurrent.locks.LockSupport.parkNanos(this, WRITER_PARK_NANOS);
+        }
+    }
+
+    /** A bounded lock-free single-producer/single-consumer ring of references, as InputQueue. */
+    private static final class Ring {
+        private final Object[] slots;
+        private final int mask;
+        private final java.util.concurrent.atomic.AtomicLong head = new java.util.concurrent.atomic.AtomicLong(); // next to read
+        private final java.util.concurrent.atomic.AtomicLong tail = new java.util.concurrent.atomic.AtomicLong(); // next to write
+
+        /** {@code capacity} must be a power of two. */
+        Ring(int capacity) {
+            slots = new Object[capacity];
+            mask = capacity - 1;
+        }
+
+        /** Producer only. Returns false if the ring is full. */
+        boolean offer(Object item) {
+            long t = tail.getPlain();
+            if (t - head.getAcquire() >= slots.length) return false;
+            slots[(int) t & mask] = item;
+            tail.setRelease(t + 1);
+            return true;
+        }
+
+        /** Consumer only. Returns null if the ring is empty. */
+        Object poll() {
+            long h = head.getPlain();
+            if (h == tail.getAcquire()) return null;
+            int i = (int) h & mask;
+            Object item = slots[i];
+            slots[i] = null;
+            head.setRelease(h + 1);
+            return item;
+        }
+    }
+}
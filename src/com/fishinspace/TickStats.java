@@ -0,0 +1,210 @@
+package com.fishinspace;
+
+/**
+ * TickStats.java
+ *
+ * Per-phase latency histograms for the simulation tick and the paint, plus
+ * the entity counts at the end of the last tick. The input phase is not a
+ * part of the tick: it is how long each key event waited between the EDT
+ * and the tick that applied it. Exposed over JMX as
+ * com.fishinspace:type=TickStats and drawn by the debug overlay (F3).
+ *
+ * Timing is off by default. When off, {@link #start()} and {@link #lap} only
+ * test a boolean, so instrumented code costs next to nothing. Histograms are
+ * log-linear (8 sub-buckets per power of two, so about 12% resolution) and
+ * are written by the loop thread only; readers may see a slightly stale view.
+ */
+public class TickStats implements TickStatsMBean {
+
+    // --- Phases ---
+    static final int PHASE_SHIP = 0;
+    static final int PHASE_BULLETS = 1;
+    static final int PHASE_ASTEROIDS = 2;
+    static final int PHASE_POWERUPS = 3;
+    static final int PHASE_COLLISIONS = 4;
+    static final int PHASE_TICK = 5;  // the whole step
+    static final int PHASE_PAINT = 6; // one rendered frame
+    static final int PHASE_INPUT = 7; // key event to the tick that applies it
+    static final int PHASE_COUNT = 8;
+    static final String[] PHASE_NAMES = {"ship", "bullets", "asteroids", "powerUps", "collisions", "tick", "paint",
+            "input"};
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) << SUB_BITS;
+
+    private volatile boolean enabled;
+    private final long[][] counts = new long[PHASE_COUNT][BUCKETS];
+    private final long[] totals = new long[PHASE_COUNT];
+    private final long[] maxima = new long[PHASE_COUNT];
+
+    // Gauges, refreshed at the end of every timed tick
+    private volatile int bulletCount;
+    private volatile int asteroidCount;
+    private volatile int powerUpCount;
+    private volatile long inputEventsDropped;
+
+    /** Returns a start timestamp, or 0 when timing is off. */
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since {@code start} against a phase and returns the
+     * current timestamp, so consecutive phases can be chained.
+     */
+    long lap(int phase, long start) {
+        if (!enabled) return 0;
+        long now = System.nanoTime();
+        record(phase, now - start);
+        return now;
+    }
+
+    void record(int phase, long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts[phase][bucketOf(nanos)]++;
+        totals[phase]++;
+        if (nanos > maxima[phase]) maxima[phase] = nanos;
+    }
+
+    void updateCounts(int bullets, int asteroids, int powerUps) {
+        bulletCount = bullets;
+        asteroidCount = asteroids;
+        powerUpCount = powerUps;
+    }
+
+    void updateInputDrops(long dropped) {
+        inputEventsDropped = dropped;
+    }
+
+    /** Latency in nanoseconds at the given quantile (0..1) of a phase. */
+    long percentile(int phase, double quantile) {
+        long total = totals[phase];
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        long[] buckets = counts[phase];
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank) return Math.min(upperBound(i), maxima[phase]);
+        }
+        return maxima[phase];
+    }
+
+    long max(int phase) {
+        return maxima[phase];
+    }
+
+    long count(int phase) {
+        return totals[phase];
+    }
+
+    /** Registers this instance with the platform MBean server; ignored if already registered. */
+    void register() {
+        try {
+            javax.management.ObjectName name = new javax.management.ObjectName("com.fishinspace:type=TickStats");
+            javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (javax.management.JMException e) {
+            System.err.println("TickStats: JMX registration failed: " + e);
+        }
+    }
+
+    // --- TickStatsMBean ---
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public String[] getPhaseNames() {
+        return PHASE_NAMES.clone();
+    }
+
+    @Override
+    public long[] getSampleCounts() {
+        return totals.clone();
+    }
+
+    @Override
+    public double[] getP50Micros() {
+        return quantileMicros(0.50);
+    }
+
+    @Override
+    public double[] getP99Micros() {
+        return quantileMicros(0.99);
+    }
+
+    @Override
+    public double[] getMaxMicros() {
+        double[] result = new double[PHASE_COUNT];
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            result[phase] = maxima[phase] / 1000.0;
+        }
+        return result;
+    }
+
+    @Override
+    public int getBulletCount() {
+        return bulletCount;
+    }
+
+    @Override
+    public int getAsteroidCount() {
+        return asteroidCount;
+    }
+
+    @Override
+    public int getPowerUpCount() {
+        return powerUpCount;
+    }
+
+    @Override
+    public long getInputEventsDropped() {
+        return inputEventsDropped;
+    }
+
+    @Override
+    public void reset() {
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            java.util.Arrays.fill(counts[phase], 0);
+            totals[phase] = 0;
+            maxima[phase] = 0;
+        }
+    }
+
+    private double[] quantileMicros(double quantile) {
+        double[] result = new double[PHASE_COUNT];
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            result[phase] = percentile(phase, quantile) / 1000.0;
+        }
+        return result;
+    }
+
+    // --- Log-linear buckets ---
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = (bucket >> SUB_BITS) - 1;
+        return (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket + 1 < BUCKETS ? lowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+    }
+}
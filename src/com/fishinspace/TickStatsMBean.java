@@ -0,0 +1,34 @@
+package com.fishinspace;
+
+/**
+ * TickStatsMBean.java
+ *
+ * JMX view of {@link TickStats}. Latency arrays are indexed like
+ * {@link #getPhaseNames()}.
+ */
+public interface TickStatsMBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    String[] getPhaseNames();
+
+    long[] getSampleCounts();
+
+    double[] getP50Micros();
+
+    double[] getP99Micros();
+
+    double[] getMaxMicros();
+
+    int getBulletCount();
+
+    int getAsteroidCount();
+
+    int getPowerUpCount();
+
+    /** Key events lost because the input queue was full. */
+    long getInputEventsDropped();
+
+    void reset();
+}
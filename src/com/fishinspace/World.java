@@ -0,0 +1,968 @@
+package com.fishinspace;
+
+/**
+ * World.java
+ *
+ * The headless simulation core of Asteroid Destroyer. All game state lives
+ * here and is advanced one tick at a time by {@link #step(int)}; nothing in
+ * this class touches Swing or AWT, so it can run on a server without a display.
+ *
+ * Input is passed as a bit mask of the INPUT_* constants. INPUT_FIRE is a
+ * request to fire this tick; the held flags (rotate, thrust, brake) apply for
+ * the duration of the tick.
+ *
+ * A world has one or more {@link Ship} slots. A single-player game uses slot
+ * 0 and ends when that ship is destroyed; a multiplayer server steps every
+ * slot with {@link #step(int[])} and sets {@link #respawnShips}, so destroyed
+ * ships come back after a delay and the game never ends. Bullets record the
+ * slot that fired them, which is credited with what they destroy.
+ *
+ * All speeds, timers and the drag factor are tuned in "frames" of the
+ * original 60 Hz game. A world stepped at another tick rate scales them by
+ * {@code dt} (frames per tick), so game speed does not depend on the rate.
+ *
+ * Every world draws from its own seeded {@link Rng}. Two worlds created with
+ * the same seed and tick rate and fed the same inputs stay identical tick for
+ * tick, which is what replays and batch runs rely on.
+ *
+ * The play field defaults to the original 800x600 window but can be any size
+ * (see {@link #World(long, int, int)}); the renderer then follows the ship
+ * with a camera. Together with a larger starting asteroid count this gives
+ * the swarm mode.
+ *
+ * Very large asteroid fields can be updated on several threads (see
+ * {@link #setParallelism(int)}). Only the searches run in parallel; their
+ * results are applied in index order on the stepping thread, so the outcome
+ * does not depend on the thread count.
+ *
+ * Bullets and asteroids are moved, wrapped and bounds-checked a whole column
+ * at a time by {@link Kernels}, on SIMD vectors when the JVM has the Vector
+ * API (see {@link #setVectorized(boolean)}); the results are the same either
+ * way.
+ *
+ * Collisions are swept by default: a bullet or the ship hits an asteroid if
+ * their paths over the tick bring them within range at any moment, not only
+ * where they end up. At 60 Hz that hardly matters, but at 10-30 Hz a bullet
+ * moves several times a small asteroid's width per tick and would otherwise
+ * pass straight through, so servers and batch runs can use low tick rates
+ * (see {@link #setSweptCollisions(boolean)}).
+ *
+ * What happens in the game (splits, shots, power-ups, the end of the game)
+ * is appended to {@link #events} for effects and telemetry, and committed as
+ * {@link FlightEvents} for Flight Recorder; neither feeds back into the state.
+ *
+ * With a {@link SectorStreamer} (see {@link #setStreamer}) the field is a
+ * window onto endless space instead: sectors are streamed in and out around
+ * the ship and nothing wraps.
+ */
+public class World {
+
+    // --- Game Constants ---
+    static final int BASE_TICK_RATE = 60; // Hz the constants below are tuned for
+    static final int WIDTH = 800;  // default play field
+    static final int HEIGHT = 600;
+    static final int SHIP_SIZE = 20;
+    static final double SHIP_TURN_SPEED = 0.05; // radians
+    static final double SHIP_THRUST_POWER = 0.1;
+    static final double SHIP_DRAG = 0.98; // friction
+    static final int BULLET_SPEED = 7;
+    static final int BULLET_COOLDOWN = 15; // frames
+    static final int ASTEROID_INIT_COUNT = 5;
+    static final int ASTEROID_MAX_SPEED = 2;
+    static final int ASTEROID_SIZE_LARGE = 60;
+    static final int ASTEROID_SIZE_MEDIUM = 30;
+    static final int ASTEROID_SIZE_SMALL = 15;
+    static final int SCORE_LARGE_ASTEROID = 20;
+    static final int SCORE_MEDIUM_ASTEROID = 50;
+    static final int SCORE_SMALL_ASTEROID = 100;
+    static final double SWARM_SAFE_RADIUS = 200; // extra starting asteroids keep this far from the ship
+    static final int SHIP_RESPAWN_DELAY = 180; // frames
+    static final int SHIP_RESPAWN_GRACE = 120; // frames a respawned ship cannot be hit
+
+    // --- PowerUp Constants ---
+    static final int POWERUP_SIZE = 20;
+    static final int POWERUP_DURATION = 1200; // 20s @ 60fps
+    static final int POWERUP_DROP_MIN = 5;
+    static final int POWERUP_DROP_MAX = 10;
+
+    // PowerUp types as int constants
+    static final int POWERUP_NONE = 0;
+    static final int POWERUP_AIM_BEAM = 1;
+    static final int POWERUP_DOUBLE_SHOT = 2;
+    static final int POWERUP_BOOSTER = 3;
+    static final int POWERUP_RAPID_FIRE = 4;
+    static final String[] POWERUP_NAMES = {"", "AIM BEAM", "DOUBLE SHOT", "BOOSTER", "RAPID FIRE"};
+    private static final int[] POWERUP_DROP_TYPES = {POWERUP_AIM_BEAM, POWERUP_DOUBLE_SHOT, POWERUP_BOOSTER, POWERUP_RAPID_FIRE};
+
+    // --- Entity Pool Sizes (slots preallocated per kind) ---
+    static final int BULLET_POOL_SIZE = 256;
+    static final int ASTEROID_POOL_SIZE = 512;
+    static final int POWERUP_POOL_SIZE = 32;
+    static final int EVENT_LOG_SIZE = 256;
+
+    // --- Broad Phase ---
+    static final int GRID_CELL_SIZE = 32;
+
+    // --- Parallel Tick ---
+    static final int PARALLEL_THRESHOLD = 4096; // asteroids below which the hand-off costs more than it saves
+
+    // --- Input Bits ---
+    public static final int INPUT_LEFT = 1;
+    public static final int INPUT_RIGHT = 1 << 1;
+    public static final int INPUT_THRUST = 1 << 2;
+    public static final int INPUT_BRAKE = 1 << 3;
+    public static final int INPUT_FIRE = 1 << 4;
+
+    // --- Game State ---
+    private final long seed;
+    final int width;
+    final int height;
+    final Rng random;
+    boolean inGame;
+    int score;
+    long tick;
+
+    Entities powerUps;
+    int asteroidsDestroyedSinceLastPowerUp;
+    int asteroidsUntilNextPowerUp;
+
+    // --- Ships ---
+    final Ship[] ships;
+    final Ship ship; // slot 0, the single-player ship
+    boolean respawnShips; // multiplayer: destroyed ships return instead of ending the game
+    private final int[] shipInputs; // step(int) feeds slot 0 through this
+
+    // --- Objects ---
+    Entities bullets;  // type is the slot of the ship that fired
+    Entities asteroids;
+
+    // --- Events (for effects and telemetry; the simulation never reads them) ---
+    final EventLog events = new EventLog(EVENT_LOG_SIZE);
+
+    // --- Timestep ---
+    int tickRate = BASE_TICK_RATE;
+    double dt = 1.0; // 60 Hz frames per tick
+    private double dragPerTick = SHIP_DRAG;
+    private double brakePerTick = 0.9;
+
+    // --- Collision Sweep ---
+    // Asteroids split at up to 1 frame-speed per axis, and spawn at up to asteroidMaxSpeed
+    private static final double SPLIT_SPEED_BOUND = Math.sqrt(2);
+    private boolean sweptCollisions = true;
+    private double asteroidStepBound; // farthest an asteroid can move in a tick, for the broad phase
+
+    // --- Tunables (default to the constants; overridden by balancing runs) ---
+    int asteroidInitCount = ASTEROID_INIT_COUNT;
+    int asteroidMaxSpeed = ASTEROID_MAX_SPEED;
+    int powerUpDropMin = POWERUP_DROP_MIN;
+    int powerUpDropMax = POWERUP_DROP_MAX;
+    int scoreLargeAsteroid = SCORE_LARGE_ASTEROID;
+    int scoreMediumAsteroid = SCORE_MEDIUM_ASTEROID;
+    int scoreSmallAsteroid = SCORE_SMALL_ASTEROID;
+
+    // --- Session Statistics ---
+    int asteroidsDestroyed;
+    int powerUpsDropped;
+    final int[] powerUpsCollected = new int[POWERUP_RAPID_FIRE + 1]; // by type
+
+    // --- Instrumentation (off unless enabled) ---
+    final TickStats stats = new TickStats();
+
+    // --- Collision Scratch ---
+    private SpatialGrid asteroidGrid;
+    private SpatialGrid powerUpGrid;
+    private boolean[] asteroidHit;
+    private boolean[] bulletHit;
+    private boolean[] bulletOutside;
+    private int bulletsOutside; // flagged in bulletOutside and not yet removed
+    private int[] asteroidHitBy; // slot credited with each hit asteroid
+    private boolean[] powerUpTaken;
+    private final SpatialGrid.Results targetResults = new SpatialGrid.Results();
+    private ParallelTick parallel; // null when single-threaded
+    private Kernels kernels = Kernels.preferred();
+    private boolean asteroidGridCurrent; // asteroidGrid indexes the asteroids where they are now
+
+    // --- Endless Space (null for a wrapping field) ---
+    private SectorStreamer streamer;
+
+    /** A world with an arbitrary seed; see {@link #getSeed()} to reproduce it. */
+    public World() {
+        this(randomSeed());
+    }
+
+    public World(long seed) {
+        this(seed, WIDTH, HEIGHT);
+    }
+
+    /** A world whose play field is {@code width} x {@code height} instead of the window size. */
+    public World(long seed, int width, int height) {
+        this(seed, width, height, 1);
+    }
+
+    /** A world with {@code shipSlots} ship slots, of which only slot 0 starts in use. */
+    public World(long seed, int width, int height, int shipSlots) {
+        this.seed = seed;
+        this.width = width;
+        this.height = height;
+        random = new Rng(seed);
+        ships = new Ship[shipSlots];
+        for (int i = 0; i < shipSlots; i++) {
+            ships[i] = new Ship();
+        }
+        ship = ships[0];
+        ship.active = true;
+        shipInputs = new int[shipSlots];
+        bullets = new Entities(BULLET_POOL_SIZE);
+        asteroids = new Entities(ASTEROID_POOL_SIZE);
+        powerUps = new Entities(POWERUP_POOL_SIZE);
+        asteroidGrid = new SpatialGrid(width, height, GRID_CELL_SIZE);
+        powerUpGrid = new SpatialGrid(width, height, GRID_CELL_SIZE);
+        asteroidHit = new boolean[ASTEROID_POOL_SIZE];
+        asteroidHitBy = new int[ASTEROID_POOL_SIZE];
+        bulletHit = new boolean[BULLET_POOL_SIZE];
+        bulletOutside = new boolean[BULLET_POOL_SIZE];
+        powerUpTaken = new boolean[POWERUP_POOL_SIZE];
+        reset();
+    }
+
+    /** Puts the world back into the state of a freshly started game. */
+    public void reset() {
+        for (int s = 0; s < ships.length; s++) {
+            if (ships[s].active) spawnShip(s);
+            ships[s].score = 0;
+        }
+
+        bullets.clear();
+        asteroids.clear();
+        powerUps.clear();
+        asteroidGridCurrent = false;
+        bulletsOutside = 0;
+
+        // The first few come in from the edges as in the original game; any more are scattered
+        int fromEdges = Math.min(ASTEROID_INIT_COUNT, asteroidInitCount);
+        for (int i = 0; i < fromEdges; i++) {
+            spawnAsteroid(ASTEROID_SIZE_LARGE);
+        }
+        for (int i = ASTEROID_INIT_COUNT; i < asteroidInitCount; i++) {
+            scatterAsteroid(ASTEROID_SIZE_LARGE);
+        }
+
+        score = 0;
+        tick = 0;
+        asteroidsDestroyed = 0;
+        powerUpsDropped = 0;
+        java.util.Arrays.fill(powerUpsCollected, 0);
+        inGame = true;
+
+        asteroidsDestroyedSinceLastPowerUp = 0;
+        asteroidsUntilNextPowerUp = powerUpDropMin + random.nextInt(powerUpDropMax - powerUpDropMin + 1);
+
+        if (streamer != null) streamer.reset(this);
+    }
+
+    /**
+     * Makes the field a window onto endless space streamed by
+     * {@code streamer} (or a wrapping field again, for null), and starts a
+     * new game. The field must be SectorStreamer.WINDOW sectors on a side.
+     */
+    void setStreamer(SectorStreamer streamer) {
+        if (streamer != null && (width != SectorStreamer.WINDOW * streamer.sectorWidth
+                || height != SectorStreamer.WINDOW * streamer.sectorHeight)) {
+            throw new IllegalArgumentException("field " + width + "x" + height + " is not " + SectorStreamer.WINDOW
+                    + "x" + SectorStreamer.WINDOW + " sectors of " + streamer.sectorWidth + "x" + streamer.sectorHeight);
+        }
+        this.streamer = streamer;
+        reset();
+    }
+
+    SectorStreamer streamer() {
+        return streamer;
+    }
+
+    /**
+     * Advances the simulation by one tick using the given INPUT_* bit mask
+     * for ship 0. Does nothing once the game is over.
+     */
+    public void step(int inputs) {
+        shipInputs[0] = inputs;
+        step(shipInputs);
+    }
+
+    /** Advances the simulation by one tick; {@code inputs[s]} drives ship slot s. */
+    public void step(int[] inputs) {
+        if (!inGame) return;
+
+        FlightEvents.Tick event = null;
+        if (FlightEvents.enabled(FlightEvents.TICK)) {
+            event = new FlightEvents.Tick();
+            event.begin();
+        }
+        for (int s = 0; s < ships.length; s++) {
+            Ship sh = ships[s];
+            if (!sh.active) continue;
+            sh.savePrevious();
+            sh.setInputs(inputs[s]);
+            if (sh.alive && (inputs[s] & INPUT_FIRE) != 0) fireBullet(s);
+        }
+
+        long start = stats.start();
+        if (streamer != null) streamer.beforeTick(this);
+        updateGame();
+        tick++;
+        if (streamer != null) streamer.afterTick(this);
+        if (start != 0) {
+            stats.lap(TickStats.PHASE_TICK, start);
+            stats.updateCounts(bullets.count, asteroids.count, powerUps.count);
+        }
+        if (event != null && event.shouldCommit()) {
+            event.tick = tick - 1;
+            event.asteroids = asteroids.count;
+            event.bullets = bullets.count;
+            event.powerUps = powerUps.count;
+            event.score = score;
+            event.commit();
+        }
+    }
+
+    public boolean isGameOver() {
+        return !inGame;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /** Puts a player in the first free ship slot; returns the slot, or -1 if all are taken. */
+    int addShip() {
+        for (int s = 0; s < ships.length; s++) {
+            if (!ships[s].active) {
+                ships[s].active = true;
+                ships[s].score = 0;
+                spawnShip(s);
+                return s;
+            }
+        }
+        return -1;
+    }
+
+    void removeShip(int slot) {
+        ships[slot].active = false;
+        ships[slot].alive = false;
+    }
+
+    // Slot 0 starts in the centre, the others on a ring around it
+    private void spawnShip(int slot) {
+        double x = width / 2.0, y = height / 2.0;
+        if (slot > 0) {
+            double a = 2 * Math.PI * slot / ships.length;
+            x += Math.cos(a) * SWARM_SAFE_RADIUS / 2;
+            y += Math.sin(a) * SWARM_SAFE_RADIUS / 2;
+        }
+        ships[slot].spawn(x, y);
+    }
+
+    /** A seed for a game nobody asked to reproduce. */
+    static long randomSeed() {
+        return System.nanoTime() ^ 0x2545F4914F6CDD1DL;
+    }
+
+    /** Sets how many times per second {@link #step(int)} will be called. */
+    public void setTickRate(int hz) {
+        tickRate = hz;
+        dt = (double) BASE_TICK_RATE / hz;
+        dragPerTick = Math.pow(SHIP_DRAG, dt);
+        brakePerTick = Math.pow(0.9, dt);
+    }
+
+    public int getTickRate() {
+        return tickRate;
+    }
+
+    /**
+     * Sets how many threads move asteroids and search for bullet hits once
+     * there are at least {@link #PARALLEL_THRESHOLD} asteroids. The default of
+     * 1 keeps the whole tick on the calling thread.
+     */
+    public void setParallelism(int threads) {
+        if (parallel != null) {
+            parallel.shutdown();
+            parallel = null;
+        }
+        if (threads > 1) parallel = new ParallelTick(this, threads);
+    }
+
+    public int getParallelism() {
+        return parallel != null ? parallel.threads() : 1;
+    }
+
+    /**
+     * Switches the batch kernels between SIMD vectors and plain loops.
+     * Returns whether vectors are now in use, which they cannot be unless the
+     * vector kernels were built (see Kernels) and the JVM was started with
+     * --add-modules jdk.incubator.vector.
+     */
+    public boolean setVectorized(boolean vectorized) {
+        Kernels vector = Kernels.vector();
+        kernels = vectorized && vector != null ? vector : Kernels.SCALAR;
+        return kernels != Kernels.SCALAR;
+    }
+
+    /** The batch kernels this world runs on; see {@link #setVectorized}. */
+    Kernels kernels() {
+        return kernels;
+    }
+
+    /** Which kernels step this world, e.g. "scalar" or "vector(4x double)". */
+    public String getKernelName() {
+        return kernels.name();
+    }
+
+    /**
+     * Chooses between swept collision tests (the default), which follow each
+     * entity's path over the tick, and the original tests at the end
+     * positions only, which miss hits at low tick rates. Replays recorded
+     * before sweeping existed play back with it off.
+     */
+    public void setSweptCollisions(boolean swept) {
+        sweptCollisions = swept;
+    }
+
+    public boolean isSweptCollisions() {
+        return sweptCollisions;
+    }
+
+    public TickStats getStats() {
+        return stats;
+    }
+
+    /** One line of pool occupancy: live/peak/capacity and grow count per kind. */
+    public String poolReport() {
+        return "bullets " + poolLine(bullets) + ", asteroids " + poolLine(asteroids) + ", powerUps " + poolLine(powerUps);
+    }
+
+    private static String poolLine(Entities e) {
+        return e.count + "/" + e.peak() + "/" + e.capacity() + " (grew " + e.grows() + "x)";
+    }
+
+    private void spawnAsteroid(int size) {
+        double x, y;
+        double angle = random.nextDouble() * 2 * Math.PI;
+        double speed = (random.nextDouble() * (asteroidMaxSpeed - 1)) + 1;
+
+        int edge = random.nextInt(4);
+        if (edge == 0) { // top
+            x = random.nextDouble() * width;
+            y = -size / 2.0;
+        } else if (edge == 1) { // right
+            x = width + size / 2.0;
+            y = random.nextDouble() * height;
+        } else if (edge == 2) { // bottom
+            x = random.nextDouble() * width;
+            y = height + size / 2.0;
+        } else { // left
+            x = -size / 2.0;
+            y = random.nextDouble() * height;
+        }
+
+        double dx = Math.cos(angle) * speed;
+        double dy = Math.sin(angle) * speed;
+        asteroids.add(x, y, dx, dy, size, 0);
+    }
+
+    // Swarm asteroids start anywhere in the field rather than at an edge,
+    // so a large world is populated from the first frame
+    private void scatterAsteroid(int size) {
+        double angle = random.nextDouble() * 2 * Math.PI;
+        double speed = (random.nextDouble() * (asteroidMaxSpeed - 1)) + 1;
+        double safe = Math.min(SWARM_SAFE_RADIUS, Math.min(width, height) / 4.0);
+        double x, y;
+        do {
+            x = random.nextDouble() * width;
+            y = random.nextDouble() * height;
+        } while ((x - ship.x) * (x - ship.x) + (y - ship.y) * (y - ship.y) < safe * safe);
+        asteroids.add(x, y, Math.cos(angle) * speed, Math.sin(angle) * speed, size, 0);
+    }
+
+    void updateGame() {
+        long t = stats.start();
+        for (Ship sh : ships) {
+            if (sh.active && sh.alive) moveShip(sh);
+        }
+        t = stats.lap(TickStats.PHASE_SHIP, t);
+        updateBullets();
+        t = stats.lap(TickStats.PHASE_BULLETS, t);
+        updateAsteroids();
+        t = stats.lap(TickStats.PHASE_ASTEROIDS, t);
+        updatePowerUps();
+        t = stats.lap(TickStats.PHASE_POWERUPS, t);
+        checkCollisions();
+        stats.lap(TickStats.PHASE_COLLISIONS, t);
+
+        // In endless space there is always somewhere else to fly to
+        if (asteroids.isEmpty() && streamer == null) {
+            spawnAsteroid(ASTEROID_SIZE_LARGE);
+            spawnAsteroid(ASTEROID_SIZE_LARGE);
+            asteroidGridCurrent = false;
+        }
+
+        for (int s = 0; s < ships.length; s++) {
+            Ship sh = ships[s];
+            if (!sh.active) continue;
+            if (!sh.alive) {
+                sh.respawnTimer -= dt;
+                if (sh.respawnTimer <= 0) {
+                    spawnShip(s);
+                    sh.graceTimer = SHIP_RESPAWN_GRACE;
+                }
+                continue;
+            }
+            if (sh.bulletCooldownTimer > 0) sh.bulletCooldownTimer -= dt;
+            if (sh.graceTimer > 0) sh.graceTimer -= dt;
+
+            if (sh.powerUpTimeRemaining > 0) {
+                sh.powerUpTimeRemaining -= dt;
+                if (sh.powerUpTimeRemaining <= 0) {
+                    powerUpEvent(EventLog.POWERUP_EXPIRED, s, sh);
+                    sh.powerUpTimeRemaining = 0;
+                    sh.activePowerUp = POWERUP_NONE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Turns, thrusts, drags and moves one ship by a tick according to its
+     * latched inputs. Also used by network clients to predict their own ship.
+     */
+    void moveShip(Ship sh) {
+        if (sh.rotatingLeft) sh.angle -= SHIP_TURN_SPEED * dt;
+        if (sh.rotatingRight) sh.angle += SHIP_TURN_SPEED * dt;
+
+        double thrustPower = SHIP_THRUST_POWER;
+        if (sh.activePowerUp == POWERUP_BOOSTER) {
+            thrustPower *= 1.5;
+        }
+        if (sh.thrusting) {
+            sh.velX += Math.cos(sh.angle) * thrustPower * dt;
+            sh.velY += Math.sin(sh.angle) * thrustPower * dt;
+        }
+        if (sh.braking && sh.activePowerUp == POWERUP_BOOSTER) {
+            sh.velX *= brakePerTick;
+            sh.velY *= brakePerTick;
+        }
+        sh.velX *= dragPerTick;
+        sh.velY *= dragPerTick;
+
+        sh.x += sh.velX * dt;
+        sh.y += sh.velY * dt;
+
+        // Wrap coordinates
+        if (sh.x < 0) sh.x = width;
+        else if (sh.x > width) sh.x = 0;
+        if (sh.y < 0) sh.y = height;
+        else if (sh.y > height) sh.y = 0;
+    }
+
+    private void updateBullets() {
+        Entities b = bullets;
+        kernels.move(b.x, b.y, b.dx, b.dy, 0, b.count, dt);
+        if (bulletOutside.length < b.count) bulletOutside = new boolean[b.count * 2];
+        bulletsOutside = kernels.flagOutside(b.x, b.y, 0, b.count, width, height, bulletOutside);
+        // A swept bullet may have hit something on its way out; checkCollisions removes it
+        if (bulletsOutside == 0 || sweptCollisions) return;
+        // Walking down keeps swap-remove from moving an unvisited bullet
+        for (int i = b.count - 1; i >= 0; i--) {
+            if (bulletOutside[i]) b.remove(i);
+        }
+        bulletsOutside = 0;
+    }
+
+    private void updateAsteroids() {
+        asteroidGridCurrent = false;
+        if (parallel != null && asteroids.count >= PARALLEL_THRESHOLD) {
+            parallel.moveAsteroids();
+        } else {
+            moveAsteroids(0, asteroids.count);
+        }
+    }
+
+    /** Moves and wraps asteroids [from, to); called from worker threads in a parallel tick. */
+    void moveAsteroids(int from, int to) {
+        Entities a = asteroids;
+        kernels.moveWrap(a.x, a.y, a.dx, a.dy, from, to, dt, width, height);
+    }
+
+    private void updatePowerUps() {
+        Entities p = powerUps;
+        if (p.isEmpty()) return;
+        if (powerUpTaken.length < p.count) powerUpTaken = new boolean[p.count * 2];
+        powerUpGrid.clear();
+        for (int i = 0; i < p.count; i++) {
+            powerUpGrid.insert(i, p.x[i], p.y[i]);
+            powerUpTaken[i] = false;
+        }
+
+        // A ship collects every power-up it touches and the lowest-indexed
+        // one becomes active; lower slots get first pick of a shared one
+        double pickupRadius = (SHIP_SIZE + POWERUP_SIZE) / 2.0;
+        boolean anyTaken = false;
+        for (int s = 0; s < ships.length; s++) {
+            Ship sh = ships[s];
+            if (!sh.active || !sh.alive) continue;
+            int found = powerUpGrid.query(sh.x, sh.y, pickupRadius);
+            if (found == 0) continue;
+            int[] ids = powerUpGrid.results();
+            java.util.Arrays.sort(ids, 0, found);
+            double[] distances = powerUpGrid.distances();
+            kernels.distancesSquared(sh.x, sh.y, p.x, p.y, ids, found, distances);
+            for (int k = found - 1; k >= 0; k--) {
+                int i = ids[k];
+                if (powerUpTaken[i]) continue;
+                if (distances[k] < pickupRadius * pickupRadius) {
+                    sh.activePowerUp = p.type[i];
+                    powerUpsCollected[sh.activePowerUp]++;
+                    sh.powerUpTimeRemaining = POWERUP_DURATION;
+                    powerUpEvent(EventLog.POWERUP_COLLECTED, s, sh);
+                    powerUpTaken[i] = true;
+                    anyTaken = true;
+                }
+            }
+        }
+
+        // Swap-remove from the highest index down so the lower indices stay valid
+        if (anyTaken) {
+            for (int i = p.count - 1; i >= 0; i--) {
+                if (powerUpTaken[i]) p.remove(i);
+            }
+        }
+    }
+
+    private void powerUpEvent(int type, int slot, Ship sh) {
+        events.add(type, slot, sh.x, sh.y, sh.activePowerUp);
+        if (FlightEvents.enabled(FlightEvents.POWER_UP)) {
+            FlightEvents.PowerUp event = new FlightEvents.PowerUp();
+            event.tick = tick;
+            event.slot = slot;
+            event.powerUp = POWERUP_NAMES[sh.activePowerUp];
+            event.collected = type == EventLog.POWERUP_COLLECTED;
+            event.commit();
+        }
+    }
+
+    private void fireBullet(int slot) {
+        Ship sh = ships[slot];
+        double cooldown = BULLET_COOLDOWN;
+        if (sh.activePowerUp == POWERUP_RAPID_FIRE) {
+            cooldown = (int) (BULLET_COOLDOWN / 1.5);
+        }
+        if (sh.bulletCooldownTimer <= 0) {
+            double dx = Math.cos(sh.angle) * BULLET_SPEED;
+            double dy = Math.sin(sh.angle) * BULLET_SPEED;
+            int shot = sh.activePowerUp == POWERUP_DOUBLE_SHOT ? 2 : 1;
+            if (shot == 2) {
+                double offsetAngle = Math.PI / 16;
+                double leftAngle = sh.angle - offsetAngle;
+                double rightAngle = sh.angle + offsetAngle;
+                bullets.add(sh.x, sh.y, Math.cos(leftAngle) * BULLET_SPEED, Math.sin(leftAngle) * BULLET_SPEED, 0, slot);
+                bullets.add(sh.x, sh.y, Math.cos(rightAngle) * BULLET_SPEED, Math.sin(rightAngle) * BULLET_SPEED, 0, slot);
+            } else {
+                bullets.add(sh.x, sh.y, dx, dy, 0, slot);
+            }
+            sh.bulletCooldownTimer = cooldown;
+            events.add(EventLog.BULLET_FIRED, slot, sh.x, sh.y, shot);
+            if (FlightEvents.enabled(FlightEvents.BULLET_FIRED)) {
+                FlightEvents.BulletFired event = new FlightEvents.BulletFired();
+                event.tick = tick;
+                event.slot = slot;
+                event.bullets = shot;
+                event.commit();
+            }
+        }
+    }
+
+    void checkCollisions() {
+        Entities a = asteroids;
+        Entities b = bullets;
+        int asteroidCount = a.count;
+        int bulletCount = b.count;
+        if (asteroidHit.length < asteroidCount) {
+            asteroidHit = new boolean[asteroidCount * 2];
+            asteroidHitBy = new int[asteroidCount * 2];
+        }
+        if (bulletHit.length < bulletCount) bulletHit = new boolean[bulletCount * 2];
+        asteroidStepBound = Math.max(asteroidMaxSpeed, SPLIT_SPEED_BOUND) * dt;
+
+        asteroidGrid.clear();
+        for (int j = 0; j < asteroidCount; j++) {
+            asteroidGrid.insert(j, a.x[j], a.y[j]);
+            asteroidHit[j] = false;
+        }
+
+        // With many asteroids the workers search for every bullet's target
+        // up front, before any asteroid is marked hit
+        int[] candidates = null;
+        if (parallel != null && asteroidCount >= PARALLEL_THRESHOLD && bulletCount > 1) {
+            candidates = parallel.findTargets(bulletCount);
+        }
+
+        // Each bullet takes out at most one asteroid, and each asteroid is
+        // split at most once per tick. Hits are resolved after the scan so
+        // removals cannot move the entities the grid indexes.
+        boolean anyHit = false;
+        for (int i = bulletCount - 1; i >= 0; i--) {
+            bulletHit[i] = false;
+            int target;
+            if (candidates == null) {
+                target = targetFor(i, targetResults);
+            } else {
+                target = candidates[i];
+                // Taken by a bullet earlier in the scan: search again past it,
+                // exactly as the sequential scan would have
+                if (target >= 0 && asteroidHit[target]) target = targetFor(i, targetResults);
+            }
+            if (target >= 0) {
+                asteroidHit[target] = true;
+                asteroidHitBy[target] = b.type[i];
+                bulletHit[i] = true;
+                anyHit = true;
+            }
+        }
+
+        if (anyHit || bulletsOutside > 0) {
+            // Walking down keeps swap-remove from moving an unvisited entity;
+            // bullets that left the field go now too (see updateBullets)
+            boolean outside = bulletsOutside > 0;
+            for (int i = bulletCount - 1; i >= 0; i--) {
+                if (bulletHit[i] || (outside && bulletOutside[i])) b.remove(i);
+            }
+            bulletsOutside = 0;
+        }
+        if (anyHit) {
+            for (int j = asteroidCount - 1; j >= 0; j--) {
+                if (asteroidHit[j]) splitAsteroid(j, asteroidHitBy[j]);
+            }
+
+            // Ship against the asteroids that survived (or were spawned by) the splits
+            asteroidGrid.clear();
+            for (int j = 0; j < a.count; j++) {
+                asteroidGrid.insert(j, a.x[j], a.y[j]);
+            }
+        }
+
+        for (int s = 0; s < ships.length; s++) {
+            Ship sh = ships[s];
+            if (!sh.active || !sh.alive || sh.graceTimer > 0) continue;
+            if (sweptCollisions ? shipHitSwept(sh) : shipHit(sh)) destroyShip(s);
+        }
+        asteroidGridCurrent = true;
+    }
+
+    private boolean shipHit(Ship sh) {
+        Entities a = asteroids;
+        int found = asteroidGrid.query(sh.x, sh.y, (ASTEROID_SIZE_LARGE + SHIP_SIZE) / 2.0);
+        int[] ids = asteroidGrid.results();
+        double[] distances = asteroidGrid.distances();
+        kernels.distancesSquared(sh.x, sh.y, a.x, a.y, ids, found, distances);
+        for (int k = 0; k < found; k++) {
+            double r = (a.size[ids[k]] / 2.0) + (SHIP_SIZE / 2.0);
+            if (distances[k] < r * r) return true;
+        }
+        return false;
+    }
+
+    /** Circle against circle along both paths over the tick; see {@link #contactTime}. */
+    private boolean shipHitSwept(Ship sh) {
+        Entities a = asteroids;
+        double stepX = sh.velX * dt;
+        double stepY = sh.velY * dt;
+        double reach = (ASTEROID_SIZE_LARGE + SHIP_SIZE) / 2.0 + Math.sqrt(stepX * stepX + stepY * stepY) / 2
+                + asteroidStepBound;
+        int found = asteroidGrid.query(sh.x - stepX / 2, sh.y - stepY / 2, reach);
+        int[] ids = asteroidGrid.results();
+        double[] distances = asteroidGrid.distances();
+        kernels.distancesSquared(sh.x, sh.y, a.x, a.y, ids, found, distances);
+        for (int k = 0; k < found; k++) {
+            int j = ids[k];
+            double r = (a.size[j] / 2.0) + (SHIP_SIZE / 2.0);
+            if (contactTime(sh.x - a.x[j], sh.y - a.y[j], distances[k], stepX - a.dx[j] * dt, stepY - a.dy[j] * dt, r) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * When, as a fraction of the tick, two bodies first came closer than
+     * {@code r}, given where one is relative to the other now (px, py) and
+     * how far it moved relative to the other this tick (dx, dy); -1 if they
+     * did not. 1 means only now, matching the end-position test.
+     *
+     * Both are taken to have moved in straight lines, so the gap at time t is
+     * |p - (1 - t) d|. With s = 1 - t that is a quadratic in s; the bodies
+     * were in range between its roots, and it is the larger root, the one
+     * further back in the tick, that is the first contact.
+     */
+    static double contactTime(double px, double py, double dx, double dy, double r) {
+        return contactTime(px, py, px * px + py * py, dx, dy, r);
+    }
+
+    /** As above, with px * px + py * py already worked out (e.g. by {@link Kernels#distancesSquared}). */
+    static double contactTime(double px, double py, double distanceSquared, double dx, double dy, double r) {
+        double c = distanceSquared - r * r; // negative when in range now
+        double a = dx * dx + dy * dy;
+        if (a == 0) return c < 0 ? 0 : -1; // no relative motion all tick
+        double b = px * dx + py * dy;
+        double discriminant = b * b - a * c;
+        if (discriminant <= 0) return -1;
+        double root = Math.sqrt(discriminant);
+        double enter = (b + root) / a;
+        double exit = (b - root) / a;
+        if (enter <= 0 || exit >= 1) return -1; // only in range after now, or before the tick
+        return 1 - Math.min(enter, 1);
+    }
+
+    private void destroyShip(int slot) {
+        Ship sh = ships[slot];
+        events.add(EventLog.SHIP_DESTROYED, slot, sh.x, sh.y, 0);
+        if (respawnShips) {
+            sh.alive = false;
+            sh.respawnTimer = SHIP_RESPAWN_DELAY;
+        } else {
+            inGame = false;
+            events.add(EventLog.GAME_OVER, slot, sh.x, sh.y, score);
+            if (FlightEvents.enabled(FlightEvents.GAME_OVER)) {
+                FlightEvents.GameOver event = new FlightEvents.GameOver();
+                event.tick = tick;
+                event.score = score;
+                event.asteroidsDestroyed = asteroidsDestroyed;
+                event.commit();
+            }
+        }
+    }
+
+    /** Drops everything derived from the state after it was overwritten, e.g. from a snapshot. */
+    void stateReplaced() {
+        asteroidGridCurrent = false;
+        bulletsOutside = 0;
+    }
+
+    /**
+     * Collects into {@code out} the asteroids whose centres may lie within
+     * {@code radius} of (x, y), by grid cell, reusing the grid the last tick
+     * built; callers still test each one. Returns -1 if the grid is not up to
+     * date (e.g. straight after a reset), in which case check every asteroid.
+     */
+    int asteroidsNear(double x, double y, double radius, SpatialGrid.Results out) {
+        if (!asteroidGridCurrent) return -1;
+        return asteroidGrid.query(x, y, radius, out);
+    }
+
+    /**
+     * The asteroid bullet i hits, or -1: of those not yet hit this tick, the
+     * one its path touched first (highest-indexed on a tie), or without
+     * sweeping the highest-indexed one containing its position. Safe to call
+     * from worker threads while the grid and hit flags are not being changed.
+     */
+    int targetFor(int bullet, SpatialGrid.Results results) {
+        Entities b = bullets;
+        double bx = b.x[bullet];
+        double by = b.y[bullet];
+        if (!sweptCollisions) return targetAt(bx, by, results);
+
+        Entities a = asteroids;
+        double stepX = b.dx[bullet] * dt;
+        double stepY = b.dy[bullet] * dt;
+        double reach = ASTEROID_SIZE_LARGE / 2.0 + Math.sqrt(stepX * stepX + stepY * stepY) / 2 + asteroidStepBound;
+        int found = asteroidGrid.query(bx - stepX / 2, by - stepY / 2, reach, results);
+        int[] ids = results.ids;
+        double[] distances = results.distances;
+        kernels.distancesSquared(bx, by, a.x, a.y, ids, found, distances);
+        int target = -1;
+        double first = 2;
+        for (int k = 0; k < found; k++) {
+            int j = ids[k];
+            if (asteroidHit[j]) continue;
+            double t = contactTime(bx - a.x[j], by - a.y[j], distances[k], stepX - a.dx[j] * dt, stepY - a.dy[j] * dt,
+                    a.size[j] / 2.0);
+            if (t < 0) continue;
+            if (t < first || (t == first && j > target)) {
+                first = t;
+                target = j;
+            }
+        }
+        return target;
+    }
+
+    private int targetAt(double bx, double by, SpatialGrid.Results results) {
+        Entities a = asteroids;
+        int found = asteroidGrid.query(bx, by, ASTEROID_SIZE_LARGE / 2.0, results);
+        int[] ids = results.ids;
+        double[] distances = results.distances;
+        kernels.distancesSquared(bx, by, a.x, a.y, ids, found, distances);
+        int target = -1;
+        for (int k = 0; k < found; k++) {
+            int j = ids[k];
+            if (asteroidHit[j] || j < target) continue;
+            double r = a.size[j] / 2.0;
+            if (distances[k] < r * r) {
+                target = j;
+            }
+        }
+        return target;
+    }
+
+    void splitAsteroid(int asteroidIndex) {
+        splitAsteroid(asteroidIndex, 0);
+    }
+
+    /** Destroys an asteroid, crediting ship slot {@code owner}. */
+    void splitAsteroid(int asteroidIndex, int owner) {
+        asteroidGridCurrent = false;
+        Entities a = asteroids;
+        double x = a.x[asteroidIndex];
+        double y = a.y[asteroidIndex];
+        int size = a.size[asteroidIndex];
+        a.remove(asteroidIndex);
+        events.add(EventLog.ASTEROID_SPLIT, owner, x, y, size);
+        if (FlightEvents.enabled(FlightEvents.ASTEROID_SPLIT)) {
+            FlightEvents.AsteroidSplit event = new FlightEvents.AsteroidSplit();
+            event.tick = tick;
+            event.size = size;
+            event.slot = owner;
+            event.x = (float) x;
+            event.y = (float) y;
+            event.commit();
+        }
+        int points;
+        if (size == ASTEROID_SIZE_LARGE) {
+            points = scoreLargeAsteroid;
+            a.add(x, y, random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1, ASTEROID_SIZE_MEDIUM, 0);
+            a.add(x, y, random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1, ASTEROID_SIZE_MEDIUM, 0);
+        } else if (size == ASTEROID_SIZE_MEDIUM) {
+            points = scoreMediumAsteroid;
+            a.add(x, y, random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1, ASTEROID_SIZE_SMALL, 0);
+            a.add(x, y, random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1, ASTEROID_SIZE_SMALL, 0);
+        } else {
+            points = scoreSmallAsteroid;
+        }
+        score += points;
+        ships[owner].score += points;
+        asteroidsDestroyed++;
+        asteroidsDestroyedSinceLastPowerUp++;
+        if (asteroidsDestroyedSinceLastPowerUp >= asteroidsUntilNextPowerUp) {
+            int randomType = POWERUP_DROP_TYPES[random.nextInt(POWERUP_DROP_TYPES.length)];
+            powerUps.add(x, y, 0, 0, 0, randomType);
+            powerUpsDropped++;
+            asteroidsDestroyedSinceLastPowerUp = 0;
+            asteroidsUntilNextPowerUp = powerUpDropMin + random.nextInt(powerUpDropMax - powerUpDropMin + 1);
+        }
+    }
+}
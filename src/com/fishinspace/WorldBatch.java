@@ -0,0 +1,147 @@
+package com.fishinspace;
+
+/**
+ * WorldBatch.java
+ *
+ * Many independent worlds stepped in lockstep for evaluating or training
+ * {@link Agent}s. Each {@link #step(int[])} advances every world by one tick
+ * with its own action and leaves, in flat arrays indexed by world, the next
+ * observations (packed {@link Observation#SIZE} floats apiece), the reward
+ * (points scored on that tick) and whether the episode ended.
+ *
+ * A world whose ship was destroyed, or which reached the episode tick limit,
+ * is reset straight away; its done flag is set and its observation is
+ * already the first of the new episode. World i is seeded as BatchSimulator
+ * seeds game i, and resets continue its generator, so a batch replays
+ * exactly given the same actions.
+ *
+ * The worlds are cut into one contiguous chunk per thread by
+ * {@link ChunkedTasks}, each with its own observation scratch. The tasks are
+ * reused from step to step, so stepping allocates nothing.
+ */
+final class WorldBatch {
+    private final World[] worlds;
+    private final float[] observations;
+    private final float[] rewards;
+    private final boolean[] dones;
+    private final int[] lastScore;
+    private final long maxEpisodeTicks;
+    private final long[] episodes;     // per world, so chunks never share a counter
+    private final long[] episodeScore; // summed over finished episodes
+    private int[] actions;
+
+    private final ChunkedTasks tasks;
+    private final Observation[] encoders; // per chunk
+    private final ChunkedTasks.Body stepJob;
+
+    /**
+     * {@code size} worlds of the default field at {@code tickRate}, cut into
+     * {@code threads} chunks; episodes end when the ship is destroyed or after
+     * {@code maxEpisodeTicks} ticks (0 for no limit).
+     */
+    WorldBatch(int size, long baseSeed, int tickRate, long maxEpisodeTicks, int threads) {
+        worlds = new World[size];
+        for (int i = 0; i < size; i++) {
+            worlds[i] = new World(BatchSimulator.gameSeed(baseSeed, i));
+            worlds[i].setTickRate(tickRate);
+        }
+        observations = new float[size * Observation.SIZE];
+        rewards = new float[size];
+        dones = new boolean[size];
+        lastScore = new int[size];
+        episodes = new long[size];
+        episodeScore = new long[size];
+        this.maxEpisodeTicks = maxEpisodeTicks;
+
+        int parts = Math.max(1, Math.min(threads, size));
+        tasks = new ChunkedTasks(parts);
+        encoders = new Observation[parts];
+        for (int c = 0; c < parts; c++) {
+            encoders[c] = new Observation();
+        }
+        stepJob = (chunk, from, to) -> stepRange(from, to, encoders[chunk]);
+        reset();
+    }
+
+    int size() {
+        return worlds.length;
+    }
+
+    World world(int i) {
+        return worlds[i];
+    }
+
+    /** Restarts every world and writes the first observations. */
+    void reset() {
+        Observation encoder = encoders[0];
+        for (int i = 0; i < worlds.length; i++) {
+            worlds[i].reset();
+            lastScore[i] = 0;
+            dones[i] = false;
+            rewards[i] = 0;
+            encoder.write(worlds[i], 0, observations, i * Observation.SIZE);
+        }
+    }
+
+    /** Steps world i with actions[i], for every world at once. */
+    void step(int[] actions) {
+        this.actions = actions;
+        tasks.run(worlds.length, stepJob);
+    }
+
+    /** Asks {@code agent} for every world's action, then steps; {@code actions} is scratch of at least size(). */
+    void step(Agent agent, int[] actions) {
+        agent.actAll(observations, worlds.length, actions);
+        step(actions);
+    }
+
+    float[] observations() {
+        return observations;
+    }
+
+    float[] rewards() {
+        return rewards;
+    }
+
+    boolean[] dones() {
+        return dones;
+    }
+
+    /** Episodes finished so far across the batch. */
+    long episodes() {
+        long n = 0;
+        for (long e : episodes) n += e;
+        return n;
+    }
+
+    /** Total score of the episodes finished so far. */
+    long episodeScore() {
+        long n = 0;
+        for (long s : episodeScore) n += s;
+        return n;
+    }
+
+    void shutdown() {
+        tasks.shutdown();
+    }
+
+    private void stepRange(int from, int to, Observation encoder) {
+        int[] actions = this.actions;
+        for (int i = from; i < to; i++) {
+            World world = worlds[i];
+            world.step(actions[i]);
+            int score = world.getScore();
+            rewards[i] = score - lastScore[i];
+            lastScore[i] = score;
+            boolean done = world.isGameOver() || (maxEpisodeTicks > 0 && world.getTick() >= maxEpisodeTicks);
+            dones[i] = done;
+            if (done) {
+                episodes[i]++;
+                episodeScore[i] += score;
+                world.reset();
+                lastScore[i] = 0;
+            }
+            encoder.write(world, 0, observations, i * Observation.SIZE);
+        }
+    }
+}